@@ -16,6 +16,7 @@
 package cz.lbenda.dataman.db;
 
 import cz.lbenda.dataman.User;
+import cz.lbenda.dataman.db.audit.AuditEvent;
 import cz.lbenda.dataman.db.audit.Auditor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,8 +27,6 @@ import java.math.BigDecimal;
 import java.net.URL;
 import java.sql.*;
 import java.sql.Date;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 /** Prepared statement which can write audit information to auditor
@@ -37,25 +36,30 @@ public class AuditPreparedStatement implements java.sql.PreparedStatement {
 
   private static final Logger LOG = LoggerFactory.getLogger(AuditPreparedStatement.class);
 
-  private static ThreadLocal<DateFormat> DATE_FORMAT = new ThreadLocal<DateFormat>() {
-    public DateFormat initialValue() {
-      return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
-    }
-  };
+  private static final Object[] NO_PARAMETERS = new Object[0];
 
   /**
-   * All paramters for one row which is add by batch
+   * Parameters of every row which is add by batch
+   */
+  private List<Object[]> batchParameters = new ArrayList<>();
+  /**
+   * Current parameters, the parameter with index i is on position i - 1. The values are hold as given, they are
+   * formatted only when the auditor write the text of audit.
+   */
+  private Object[] parameterValues = new Object[8];
+  /**
+   * Highest index of set parameter
    */
-  private List<Map<Integer, String>> batchParameters = new ArrayList<>();
+  private int parameterCount;
   /**
-   * All stored paramters
+   * SQL commands which are add to batch without parameters
    */
-  private Map<Integer, String> parameterValues = new HashMap<>();
+  private List<String> batchSqls = new ArrayList<>();
 
   /**
    * SQL template which is shown
    */
-  private List<String> sqlTemplate = new ArrayList<>();
+  private String sqlTemplate;
 
   /**
    * Wrapped statement on which is call delegated
@@ -79,10 +83,7 @@ public class AuditPreparedStatement implements java.sql.PreparedStatement {
   private AuditPreparedStatement(User user, Auditor auditor, PreparedStatement wrappedStatement, String sql) {
     this.wrappedStatement = wrappedStatement;
     this.user = user;
-    sqlTemplate.clear();
-    sqlTemplate.add(sql);
-    parameterValues.clear();
-    batchParameters.clear();
+    this.sqlTemplate = sql;
     this.auditor = auditor;
   }
 
@@ -92,6 +93,13 @@ public class AuditPreparedStatement implements java.sql.PreparedStatement {
     return new AuditPreparedStatement(user, auditor, wraped, sql);
   }
 
+  /** Use this method instead of {@see Connection#prepareStatement(String)} */
+  public static AuditPreparedStatement prepareStatement(User user, Auditor auditor, Connection connection,
+                                                        String sql) throws SQLException {
+    PreparedStatement wraped = connection.prepareStatement(sql);
+    return new AuditPreparedStatement(user, auditor, wraped, sql);
+  }
+
   /** Use this method instead of {@see Connection#prepareStatement(String, int)} */
   public static AuditPreparedStatement prepareStatement(User user, Auditor auditor, Connection connection,
                                                               String sql, int autoGeneratedKeys) throws SQLException {
@@ -99,42 +107,36 @@ public class AuditPreparedStatement implements java.sql.PreparedStatement {
     return new AuditPreparedStatement(user, auditor, wraped, sql);
   }
 
-  private void writeAudit(int[] affectedRows) {
-    StringBuilder sb = new StringBuilder();
-    if (sqlTemplate.size() > 1) {
-      int i = 0;
-      for (String sql : sqlTemplate) {
-        sb.append(sql).append("\n");
-        sb.append("Affected rows: ").append(affectedRows[i]).append("\n");
-        i++;
-      }
+  /** Remember value of parameter for audit, the mutable values are copied, see {@link AuditEvent#captureValue(Object)} */
+  private void setParameter(int parameterIndex, Object value) {
+    if (!auditor.isEnabled()) { return; }
+    if (parameterIndex > parameterValues.length) {
+      parameterValues = Arrays.copyOf(parameterValues, Math.max(parameterIndex, parameterValues.length * 2));
     }
-    else if (sqlTemplate.size() == 1) {
-      sb.append(sqlTemplate.get(0)).append("\n");
-      if (!this.batchParameters.contains(this.parameterValues)) { this.batchParameters.add(this.parameterValues); }
-      int j = 0;
-      for (Map<Integer, String> parameters : this.batchParameters) {
-        if (parameters != null && !parameters.isEmpty()) {
-          sb.append("[");
-
-          // For every index will be generate one field even if aren't in map
-          List<Integer> list = new ArrayList<>();
-          list.addAll(parameters.keySet());
-          Collections.sort(list);
-          int max = list.get(list.size() - 1);
-          for (int i = 1; i <= max; i++) { // JDBC start from 1
-            if (i > 1) { sb.append(", "); }
-            sb.append(parameters.get(i));
-          }
-
-          sb.append("]\n");
-          sb.append("Affected rows: ").append(affectedRows[j]).append("\n");
-          j++;
-        }
-      }
-      if (j == 0) { sb.append("Affected rows: ").append(affectedRows[j]).append("\n"); } // No affected row was writen
-    } else { LOG.error("No SQL was set, nothing for logging"); }
-    auditor.writePlainTextAudit(user.getUsername(), sb.toString());
+    parameterValues[parameterIndex - 1] = AuditEvent.captureValue(value);
+    if (parameterIndex > parameterCount) { parameterCount = parameterIndex; }
+  }
+
+  /** Return copy of current parameters */
+  private Object[] currentParameters() {
+    return parameterCount == 0 ? NO_PARAMETERS : Arrays.copyOf(parameterValues, parameterCount);
+  }
+
+  /** Write audit of execution of prepared statement with current parameters */
+  private void writeAudit(int[] affectedRows) {
+    if (!auditor.isEnabled()) { return; }
+    writeAudit(Collections.singletonList(sqlTemplate), Collections.singletonList(currentParameters()), affectedRows);
+  }
+
+  /** Write audit of execution of given SQL command without parameters */
+  private void writeAudit(String sql, int[] affectedRows) {
+    if (!auditor.isEnabled()) { return; }
+    writeAudit(Collections.singletonList(sql), Collections.emptyList(), affectedRows);
+  }
+
+  private void writeAudit(List<String> sqls, List<Object[]> parameters, int[] affectedRows) {
+    if (sqls.get(0) == null) { LOG.error("No SQL was set, nothing for logging"); return; }
+    auditor.writeAudit(new AuditEvent(user.getUsername(), System.currentTimeMillis(), sqls, parameters, affectedRows));
   }
 
   @Override public ResultSet executeQuery() throws SQLException {
@@ -145,34 +147,35 @@ public class AuditPreparedStatement implements java.sql.PreparedStatement {
   }
   @Override public int[] executeBatch() throws SQLException {
     int[] result = wrappedStatement.executeBatch();
-    this.writeAudit(result);
+    if (auditor.isEnabled()) {
+      if (!batchSqls.isEmpty()) { writeAudit(batchSqls, Collections.emptyList(), result); }
+      else { writeAudit(Collections.singletonList(sqlTemplate), batchParameters, result); }
+    }
+    this.batchParameters = new ArrayList<>(); // Every execution is audited only once
+    this.batchSqls = new ArrayList<>();
     return result;
   }
   @Override public int executeUpdate(String sql, String[] columnNames) throws SQLException {
     int result = wrappedStatement.executeUpdate(sql, columnNames);
-    this.sqlTemplate.add(sql);
-    this.writeAudit(new int[] { result });
+    this.writeAudit(sql, new int[] { result });
     return result;
   }
   @Override public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
     boolean result = wrappedStatement.execute(sql, autoGeneratedKeys);
-    this.sqlTemplate.add(sql);
-    if (result) { this.writeAudit(new int[] { 1 }); }
-    else { this.writeAudit(new int[] { wrappedStatement.getUpdateCount() }); }
+    if (result) { this.writeAudit(sql, new int[] { 1 }); }
+    else { this.writeAudit(sql, new int[] { wrappedStatement.getUpdateCount() }); }
     return result;
   }
   @Override public boolean execute(String sql, int[] columnIndexes) throws SQLException {
     boolean result = wrappedStatement.execute(sql, columnIndexes);
-    this.sqlTemplate.add(sql);
-    if (result) { this.writeAudit(new int[] { 1 }); }
-    else { this.writeAudit(new int[] { wrappedStatement.getUpdateCount() }); }
+    if (result) { this.writeAudit(sql, new int[] { 1 }); }
+    else { this.writeAudit(sql, new int[] { wrappedStatement.getUpdateCount() }); }
     return result;
   }
   @Override public boolean execute(String sql, String[] columnNames) throws SQLException {
     boolean result = wrappedStatement.execute(sql, columnNames);
-    this.sqlTemplate.add(sql);
-    if (result) { this.writeAudit(new int[] { 1 }); }
-    else { this.writeAudit(new int[] { wrappedStatement.getUpdateCount() }); }
+    if (result) { this.writeAudit(sql, new int[] { 1 }); }
+    else { this.writeAudit(sql, new int[] { wrappedStatement.getUpdateCount() }); }
     return result;
   }
   @Override
@@ -189,104 +192,100 @@ public class AuditPreparedStatement implements java.sql.PreparedStatement {
   @Override
   public int executeUpdate(String sql) throws SQLException {
     int result = wrappedStatement.executeUpdate(sql);
-    this.sqlTemplate.add(sql);
-    this.writeAudit(new int[] { result });
+    this.writeAudit(sql, new int[] { result });
     return result;
   }
   @Override
   public boolean execute(String sql) throws SQLException {
     boolean result = wrappedStatement.execute(sql);
-    this.sqlTemplate.add(sql);
-    if (result) { this.writeAudit(new int[] { 1 }); }
-    else { this.writeAudit(new int[] { wrappedStatement.getUpdateCount() }); }
+    if (result) { this.writeAudit(sql, new int[] { 1 }); }
+    else { this.writeAudit(sql, new int[] { wrappedStatement.getUpdateCount() }); }
     return result;
   }
   @Override
   public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
     int result = wrappedStatement.executeUpdate(sql, autoGeneratedKeys);
-    this.sqlTemplate.add(sql);
-    this.writeAudit(new int[] { result });
+    this.writeAudit(sql, new int[] { result });
     return result;
   }
   @Override
   public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
     int result = wrappedStatement.executeUpdate(sql, columnIndexes);
-    this.sqlTemplate.add(sql);
-    this.writeAudit(new int[] { result });
+    this.writeAudit(sql, new int[] { result });
     return result;
   }
 
 
   @Override
   public void setNull(int parameterIndex, int sqlType) throws SQLException {
-    this.parameterValues.put(parameterIndex, null);
+    this.setParameter(parameterIndex, null);
     this.wrappedStatement.setNull(parameterIndex, sqlType);
   }
   @Override
   public void setBoolean(int parameterIndex, boolean x) throws SQLException {
-    this.parameterValues.put(parameterIndex, Boolean.toString(x));
+    this.setParameter(parameterIndex, x);
     this.wrappedStatement.setBoolean(parameterIndex, x);
   }
   @Override
   public void setByte(int parameterIndex, byte x) throws SQLException {
-    this.parameterValues.put(parameterIndex, Byte.toString(x));
+    this.setParameter(parameterIndex, x);
     this.wrappedStatement.setByte(parameterIndex, x);
   }
   @Override
   public void setShort(int parameterIndex, short x) throws SQLException {
-    this.parameterValues.put(parameterIndex, Short.toString(x));
+    this.setParameter(parameterIndex, x);
     this.wrappedStatement.setShort(parameterIndex, x);
   }
   @Override
   public void setInt(int parameterIndex, int x) throws SQLException {
-    this.parameterValues.put(parameterIndex, Integer.toString(x));
+    this.setParameter(parameterIndex, x);
     this.wrappedStatement.setInt(parameterIndex, x);
   }
   @Override
   public void setLong(int parameterIndex, long x) throws SQLException {
-    this.parameterValues.put(parameterIndex, Long.toString(x));
+    this.setParameter(parameterIndex, x);
     this.wrappedStatement.setLong(parameterIndex, x);
   }
   @Override
   public void setFloat(int parameterIndex, float x) throws SQLException {
-    this.parameterValues.put(parameterIndex, Float.toString(x));
+    this.setParameter(parameterIndex, x);
     this.wrappedStatement.setFloat(parameterIndex, x);
   }
 
   @Override
   public void setDouble(int parameterIndex, double x) throws SQLException {
-    this.parameterValues.put(parameterIndex, Double.toString(x));
+    this.setParameter(parameterIndex, x);
     this.wrappedStatement.setDouble(parameterIndex, x);
   }
 
   @Override
   public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
-    this.parameterValues.put(parameterIndex, String.valueOf(x));
+    this.setParameter(parameterIndex, x);
     this.wrappedStatement.setBigDecimal(parameterIndex, x);
   }
   @Override
   public void setString(int parameterIndex, String x) throws SQLException {
-    this.parameterValues.put(parameterIndex, x);
+    this.setParameter(parameterIndex, x);
     this.wrappedStatement.setString(parameterIndex, x);
   }
   @Override
   public void setBytes(int parameterIndex, byte[] x) throws SQLException {
-    this.parameterValues.put(parameterIndex, Arrays.toString(x));
+    this.setParameter(parameterIndex, x);
     this.wrappedStatement.setBytes(parameterIndex, x);
   }
   @Override
   public void setDate(int parameterIndex, Date x) throws SQLException {
-    this.parameterValues.put(parameterIndex, DATE_FORMAT.get().format(x));
+    this.setParameter(parameterIndex, x);
     this.wrappedStatement.setDate(parameterIndex, x);
   }
   @Override
   public void setTime(int parameterIndex, Time x) throws SQLException {
-    this.parameterValues.put(parameterIndex, DATE_FORMAT.get().format(x));
+    this.setParameter(parameterIndex, x);
     this.wrappedStatement.setTime(parameterIndex, x);
   }
   @Override
   public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
-    this.parameterValues.put(parameterIndex, DATE_FORMAT.get().format(x));
+    this.setParameter(parameterIndex, x);
     this.wrappedStatement.setTimestamp(parameterIndex, x);
   }
   @Override
@@ -307,20 +306,13 @@ public class AuditPreparedStatement implements java.sql.PreparedStatement {
   }
   @Override
   public void setObject(int parameterIndex, Object x) throws SQLException {
-    if (x instanceof java.util.Date) {
-      this.parameterValues.put(parameterIndex, DATE_FORMAT.get().format((java.util.Date) x));
-    } else  if (x != null && x.getClass().isArray()) {
-      this.parameterValues.put(parameterIndex, Arrays.toString((Object[]) x));
-    } else {
-      this.parameterValues.put(parameterIndex, String.valueOf(x));
-    }
+    this.setParameter(parameterIndex, x);
     this.wrappedStatement.setObject(parameterIndex, x);
   }
 
   @Override
   public void addBatch() throws SQLException {
-    this.batchParameters.add(this.parameterValues);
-    this.parameterValues = new HashMap<>();
+    if (auditor.isEnabled()) { this.batchParameters.add(currentParameters()); }
     this.wrappedStatement.addBatch();
   }
 
@@ -364,12 +356,12 @@ public class AuditPreparedStatement implements java.sql.PreparedStatement {
   }
   @Override
   public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
-    this.parameterValues.put(parameterIndex, null);
+    this.setParameter(parameterIndex, null);
     this.wrappedStatement.setNull(parameterIndex, sqlType, typeName);
   }
   @Override
   public void setURL(int parameterIndex, URL x) throws SQLException {
-    this.parameterValues.put(parameterIndex, String.valueOf(x));
+    this.setParameter(parameterIndex, x);
     this.wrappedStatement.setURL(parameterIndex, x);
   }
   @Override
@@ -378,12 +370,12 @@ public class AuditPreparedStatement implements java.sql.PreparedStatement {
   }
   @Override
   public void setRowId(int parameterIndex, RowId x) throws SQLException {
-    this.parameterValues.put(parameterIndex, String.valueOf(x));
+    this.setParameter(parameterIndex, x);
     this.wrappedStatement.setRowId(parameterIndex, x);
   }
   @Override
   public void setNString(int parameterIndex, String value) throws SQLException {
-    this.parameterValues.put(parameterIndex, value);
+    this.setParameter(parameterIndex, value);
     this.wrappedStatement.setNString(parameterIndex, value);
   }
   @Override
@@ -445,12 +437,12 @@ public class AuditPreparedStatement implements java.sql.PreparedStatement {
   @Override
   public void setClob(int parameterIndex, Reader reader) throws SQLException {
     this.wrappedStatement.setClob(parameterIndex, reader);
-    this.parameterValues.put(parameterIndex, reader == null ? "NULL" : "<READER>");
+    this.setParameter(parameterIndex, reader == null ? "NULL" : "<READER>");
   }
   @Override
   public void setBlob(int parameterIndex, InputStream inputStream) throws SQLException {
     this.wrappedStatement.setBlob(parameterIndex, inputStream);
-    this.parameterValues.put(parameterIndex, inputStream == null ? "NULL" : "<INPUT STREAM>");
+    this.setParameter(parameterIndex, inputStream == null ? "NULL" : "<INPUT STREAM>");
   }
   @Override
   public void setNClob(int parameterIndex, Reader reader) throws SQLException {
@@ -562,21 +554,20 @@ public class AuditPreparedStatement implements java.sql.PreparedStatement {
 
   @Override
   public void addBatch(String sql) throws SQLException {
-    this.sqlTemplate.add(sql);
+    this.batchSqls.add(sql);
     this.wrappedStatement.addBatch(sql);
   }
 
   @Override
   public void clearParameters() throws SQLException {
-    this.parameterValues.clear();
-    this.batchParameters.clear();
+    Arrays.fill(this.parameterValues, null);
+    this.parameterCount = 0;
     this.wrappedStatement.clearParameters();
   }
   @Override
   public void clearBatch() throws SQLException {
     this.batchParameters.clear();
-    this.parameterValues.clear();
-    this.sqlTemplate.clear();
+    this.batchSqls.clear();
     this.wrappedStatement.clearBatch();
   }
 
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.*;
+import java.util.Calendar;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 26.10.15.
+ * Prepared statement from {@link PreparedStatementCache}. The close method doesn't close the statement, but return it
+ * back to cache. */
+class CachedPreparedStatement implements PreparedStatement {
+
+  private final PreparedStatementCache cache;
+  private final PreparedStatementCache.Key key;
+  private final PreparedStatement statement;
+  private final Connection connection;
+  /** Flag if statement is just used by someone */
+  private boolean inUse; boolean isInUse() { return inUse; } void setInUse(boolean inUse) { this.inUse = inUse; }
+  /** Flag if statement was removed from cache, and must be closed when it is returned */
+  private boolean evicted; boolean isEvicted() { return evicted; } void setEvicted(boolean evicted) { this.evicted = evicted; }
+  /** Flag if the configuration of statement was changed, so statement can't be reused */
+  private boolean modified; boolean isModified() { return modified; }
+
+  CachedPreparedStatement(PreparedStatementCache cache, PreparedStatementCache.Key key, PreparedStatement statement,
+                          Connection connection) {
+    this.cache = cache;
+    this.key = key;
+    this.statement = statement;
+    this.connection = connection;
+  }
+
+  PreparedStatementCache.Key getKey() { return key; }
+  PreparedStatement getStatement() { return statement; }
+
+  /** Prepare statement for next usage */
+  void reset() throws SQLException {
+    statement.clearParameters();
+    statement.clearBatch();
+    statement.clearWarnings();
+  }
+
+  @Override
+  public void close() throws SQLException { if (inUse) { cache.release(this); } }
+  @Override
+  public boolean isClosed() throws SQLException { return !inUse || statement.isClosed(); }
+  @Override
+  public Connection getConnection() throws SQLException { return connection; }
+
+  @Override
+  public ResultSet executeQuery() throws SQLException { return statement.executeQuery(); }
+  @Override
+  public int executeUpdate() throws SQLException { return statement.executeUpdate(); }
+  @Override
+  public boolean execute() throws SQLException { return statement.execute(); }
+  @Override
+  public void addBatch() throws SQLException { statement.addBatch(); }
+  @Override
+  public void clearParameters() throws SQLException { statement.clearParameters(); }
+  @Override
+  public ResultSetMetaData getMetaData() throws SQLException { return statement.getMetaData(); }
+  @Override
+  public ParameterMetaData getParameterMetaData() throws SQLException { return statement.getParameterMetaData(); }
+
+  @Override
+  public void setNull(int parameterIndex, int sqlType) throws SQLException { statement.setNull(parameterIndex, sqlType); }
+  @Override
+  public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException { statement.setNull(parameterIndex, sqlType, typeName); }
+  @Override
+  public void setBoolean(int parameterIndex, boolean x) throws SQLException { statement.setBoolean(parameterIndex, x); }
+  @Override
+  public void setByte(int parameterIndex, byte x) throws SQLException { statement.setByte(parameterIndex, x); }
+  @Override
+  public void setShort(int parameterIndex, short x) throws SQLException { statement.setShort(parameterIndex, x); }
+  @Override
+  public void setInt(int parameterIndex, int x) throws SQLException { statement.setInt(parameterIndex, x); }
+  @Override
+  public void setLong(int parameterIndex, long x) throws SQLException { statement.setLong(parameterIndex, x); }
+  @Override
+  public void setFloat(int parameterIndex, float x) throws SQLException { statement.setFloat(parameterIndex, x); }
+  @Override
+  public void setDouble(int parameterIndex, double x) throws SQLException { statement.setDouble(parameterIndex, x); }
+  @Override
+  public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException { statement.setBigDecimal(parameterIndex, x); }
+  @Override
+  public void setString(int parameterIndex, String x) throws SQLException { statement.setString(parameterIndex, x); }
+  @Override
+  public void setBytes(int parameterIndex, byte[] x) throws SQLException { statement.setBytes(parameterIndex, x); }
+  @Override
+  public void setDate(int parameterIndex, Date x) throws SQLException { statement.setDate(parameterIndex, x); }
+  @Override
+  public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException { statement.setDate(parameterIndex, x, cal); }
+  @Override
+  public void setTime(int parameterIndex, Time x) throws SQLException { statement.setTime(parameterIndex, x); }
+  @Override
+  public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException { statement.setTime(parameterIndex, x, cal); }
+  @Override
+  public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException { statement.setTimestamp(parameterIndex, x); }
+  @Override
+  public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException { statement.setTimestamp(parameterIndex, x, cal); }
+  @Override
+  public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException { statement.setAsciiStream(parameterIndex, x, length); }
+  @Override
+  public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException { statement.setAsciiStream(parameterIndex, x, length); }
+  @Override
+  public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException { statement.setAsciiStream(parameterIndex, x); }
+  @SuppressWarnings("deprecation")
+  @Override
+  public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException { statement.setUnicodeStream(parameterIndex, x, length); }
+  @Override
+  public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException { statement.setBinaryStream(parameterIndex, x, length); }
+  @Override
+  public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException { statement.setBinaryStream(parameterIndex, x, length); }
+  @Override
+  public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException { statement.setBinaryStream(parameterIndex, x); }
+  @Override
+  public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException { statement.setCharacterStream(parameterIndex, reader, length); }
+  @Override
+  public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException { statement.setCharacterStream(parameterIndex, reader, length); }
+  @Override
+  public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException { statement.setCharacterStream(parameterIndex, reader); }
+  @Override
+  public void setNCharacterStream(int parameterIndex, Reader value, long length) throws SQLException { statement.setNCharacterStream(parameterIndex, value, length); }
+  @Override
+  public void setNCharacterStream(int parameterIndex, Reader value) throws SQLException { statement.setNCharacterStream(parameterIndex, value); }
+  @Override
+  public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException { statement.setObject(parameterIndex, x, targetSqlType); }
+  @Override
+  public void setObject(int parameterIndex, Object x) throws SQLException { statement.setObject(parameterIndex, x); }
+  @Override
+  public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException { statement.setObject(parameterIndex, x, targetSqlType, scaleOrLength); }
+  @Override
+  public void setRef(int parameterIndex, Ref x) throws SQLException { statement.setRef(parameterIndex, x); }
+  @Override
+  public void setBlob(int parameterIndex, Blob x) throws SQLException { statement.setBlob(parameterIndex, x); }
+  @Override
+  public void setBlob(int parameterIndex, InputStream inputStream, long length) throws SQLException { statement.setBlob(parameterIndex, inputStream, length); }
+  @Override
+  public void setBlob(int parameterIndex, InputStream inputStream) throws SQLException { statement.setBlob(parameterIndex, inputStream); }
+  @Override
+  public void setClob(int parameterIndex, Clob x) throws SQLException { statement.setClob(parameterIndex, x); }
+  @Override
+  public void setClob(int parameterIndex, Reader reader, long length) throws SQLException { statement.setClob(parameterIndex, reader, length); }
+  @Override
+  public void setClob(int parameterIndex, Reader reader) throws SQLException { statement.setClob(parameterIndex, reader); }
+  @Override
+  public void setNClob(int parameterIndex, NClob value) throws SQLException { statement.setNClob(parameterIndex, value); }
+  @Override
+  public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException { statement.setNClob(parameterIndex, reader, length); }
+  @Override
+  public void setNClob(int parameterIndex, Reader reader) throws SQLException { statement.setNClob(parameterIndex, reader); }
+  @Override
+  public void setArray(int parameterIndex, Array x) throws SQLException { statement.setArray(parameterIndex, x); }
+  @Override
+  public void setURL(int parameterIndex, URL x) throws SQLException { statement.setURL(parameterIndex, x); }
+  @Override
+  public void setRowId(int parameterIndex, RowId x) throws SQLException { statement.setRowId(parameterIndex, x); }
+  @Override
+  public void setNString(int parameterIndex, String value) throws SQLException { statement.setNString(parameterIndex, value); }
+  @Override
+  public void setSQLXML(int parameterIndex, SQLXML xmlObject) throws SQLException { statement.setSQLXML(parameterIndex, xmlObject); }
+
+  @Override
+  public ResultSet executeQuery(String sql) throws SQLException { return statement.executeQuery(sql); }
+  @Override
+  public int executeUpdate(String sql) throws SQLException { return statement.executeUpdate(sql); }
+  @Override
+  public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException { return statement.executeUpdate(sql, autoGeneratedKeys); }
+  @Override
+  public int executeUpdate(String sql, int[] columnIndexes) throws SQLException { return statement.executeUpdate(sql, columnIndexes); }
+  @Override
+  public int executeUpdate(String sql, String[] columnNames) throws SQLException { return statement.executeUpdate(sql, columnNames); }
+  @Override
+  public boolean execute(String sql) throws SQLException { return statement.execute(sql); }
+  @Override
+  public boolean execute(String sql, int autoGeneratedKeys) throws SQLException { return statement.execute(sql, autoGeneratedKeys); }
+  @Override
+  public boolean execute(String sql, int[] columnIndexes) throws SQLException { return statement.execute(sql, columnIndexes); }
+  @Override
+  public boolean execute(String sql, String[] columnNames) throws SQLException { return statement.execute(sql, columnNames); }
+  @Override
+  public void addBatch(String sql) throws SQLException { statement.addBatch(sql); }
+  @Override
+  public void clearBatch() throws SQLException { statement.clearBatch(); }
+  @Override
+  public int[] executeBatch() throws SQLException { return statement.executeBatch(); }
+
+  @Override
+  public int getMaxFieldSize() throws SQLException { return statement.getMaxFieldSize(); }
+  @Override
+  public void setMaxFieldSize(int max) throws SQLException { modified = true; statement.setMaxFieldSize(max); }
+  @Override
+  public int getMaxRows() throws SQLException { return statement.getMaxRows(); }
+  @Override
+  public void setMaxRows(int max) throws SQLException { modified = true; statement.setMaxRows(max); }
+  @Override
+  public void setEscapeProcessing(boolean enable) throws SQLException { modified = true; statement.setEscapeProcessing(enable); }
+  @Override
+  public int getQueryTimeout() throws SQLException { return statement.getQueryTimeout(); }
+  @Override
+  public void setQueryTimeout(int seconds) throws SQLException { modified = true; statement.setQueryTimeout(seconds); }
+  @Override
+  public void cancel() throws SQLException { statement.cancel(); }
+  @Override
+  public SQLWarning getWarnings() throws SQLException { return statement.getWarnings(); }
+  @Override
+  public void clearWarnings() throws SQLException { statement.clearWarnings(); }
+  @Override
+  public void setCursorName(String name) throws SQLException { modified = true; statement.setCursorName(name); }
+  @Override
+  public ResultSet getResultSet() throws SQLException { return statement.getResultSet(); }
+  @Override
+  public int getUpdateCount() throws SQLException { return statement.getUpdateCount(); }
+  @Override
+  public boolean getMoreResults() throws SQLException { return statement.getMoreResults(); }
+  @Override
+  public boolean getMoreResults(int current) throws SQLException { return statement.getMoreResults(current); }
+  @Override
+  public void setFetchDirection(int direction) throws SQLException { modified = true; statement.setFetchDirection(direction); }
+  @Override
+  public int getFetchDirection() throws SQLException { return statement.getFetchDirection(); }
+  /** The fetch size is only hint for driver, so statement stay reusable */
+  @Override
+  public void setFetchSize(int rows) throws SQLException { statement.setFetchSize(rows); }
+  @Override
+  public int getFetchSize() throws SQLException { return statement.getFetchSize(); }
+  @Override
+  public int getResultSetConcurrency() throws SQLException { return statement.getResultSetConcurrency(); }
+  @Override
+  public int getResultSetType() throws SQLException { return statement.getResultSetType(); }
+  @Override
+  public int getResultSetHoldability() throws SQLException { return statement.getResultSetHoldability(); }
+  @Override
+  public ResultSet getGeneratedKeys() throws SQLException { return statement.getGeneratedKeys(); }
+  @Override
+  public void setPoolable(boolean poolable) throws SQLException { statement.setPoolable(poolable); }
+  @Override
+  public boolean isPoolable() throws SQLException { return statement.isPoolable(); }
+  @Override
+  public void closeOnCompletion() throws SQLException { modified = true; statement.closeOnCompletion(); }
+  @Override
+  public boolean isCloseOnCompletion() throws SQLException { return statement.isCloseOnCompletion(); }
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(statement)) { return iface.cast(statement); }
+    return statement.unwrap(iface);
+  }
+  @Override
+  public boolean isWrapperFor(Class<?> iface) throws SQLException { return iface.isInstance(statement) || statement.isWrapperFor(iface); }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import cz.lbenda.common.*;
+import cz.lbenda.dataman.db.dialect.ColumnType;
+import cz.lbenda.dataman.db.dialect.SQLDialect;
+import javafx.util.StringConverter;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Reader, writer and formatter of values of one kind of column. The codec is chosen once by type of column, dialect
+ * and class which JDBC driver report for column, so the values of cells are converted without testing of their type.
+ * When the driver report same class as is class of column type, then the value is read by typed getter of result set
+ * and isn't converted after. The codecs are shared by all columns with same key. */
+public final class ColumnCodec {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ColumnCodec.class);
+
+  /** Read value from result set */
+  @FunctionalInterface
+  public interface Reader {
+    Object read(ResultSet rs, int position) throws SQLException;
+  }
+  /** Convert value read from database to value which is hold by row */
+  @FunctionalInterface
+  public interface Decoder {
+    Object decode(ColumnDesc column, Object value);
+  }
+  /** Write not null value to prepared statement */
+  @FunctionalInterface
+  public interface Writer {
+    void write(PreparedStatement ps, int position, Object value) throws SQLException;
+  }
+  /** Format not null value as SQL literal */
+  @FunctionalInterface
+  public interface Formatter {
+    String format(Object value);
+  }
+
+  private static final Map<String, ColumnCodec> CODECS = new ConcurrentHashMap<>();
+
+  private final ColumnType type; public ColumnType getType() { return type; }
+  private final Reader reader;
+  private final Decoder repairer;
+  private final Decoder decoder;
+  private final Writer writer;
+  private final Formatter formatter;
+  /** Inform if the reader return value in class of column, so the decoder do nothing */
+  private final boolean typedReader; public boolean isTypedReader() { return typedReader; }
+
+  private ColumnCodec(ColumnType type, Reader reader, boolean typedReader, Decoder repairer, Decoder decoder,
+                      Writer writer, Formatter formatter) {
+    this.type = type;
+    this.reader = reader;
+    this.typedReader = typedReader;
+    this.repairer = repairer;
+    this.decoder = decoder;
+    this.writer = writer;
+    this.formatter = formatter;
+  }
+
+  /** Read value from result set, the value must be decoded by {@link #decode(ColumnDesc, Object)} */
+  public Object read(ResultSet rs, int position) throws SQLException { return reader.read(rs, position); }
+
+  /** Convert value read from database to value which is hold by row */
+  public Object decode(ColumnDesc column, Object value) {
+    if (value == null) { return null; }
+    return decoder.decode(column, value);
+  }
+
+  /** Convert value to class of column, e.g. the {@link LocalDate} to {@link java.sql.Date} or long to integer. The
+   * binary values aren't wrapped. */
+  public Object repair(ColumnDesc column, Object value) {
+    if (value == null) { return null; }
+    return repairer.decode(column, value);
+  }
+
+  /** Write value to prepared statement */
+  public void write(PreparedStatement ps, int position, Object value) throws SQLException {
+    if (value == null) { ps.setObject(position, null); }
+    else { writer.write(ps, position, value); }
+  }
+
+  /** Format value as SQL literal */
+  public String toSQL(Object value) {
+    if (value == null) { return "NULL"; }
+    return formatter.format(value);
+  }
+
+  /** Return codec for column
+   * @param type type of column
+   * @param dialect dialect of database, can be null
+   * @param jdbcClassName name of class which JDBC driver report for column, can be null when it isn't known
+   * @return codec which is shared by all columns with same parameters */
+  public static @Nonnull ColumnCodec of(@Nonnull ColumnType type, SQLDialect dialect, String jdbcClassName) {
+    boolean bitBoolean = dialect != null && dialect.isBooleanBitRepresent();
+    String key = type.name() + '|' + bitBoolean + '|' + jdbcClassName;
+    ColumnCodec result = CODECS.get(key);
+    if (result == null) {
+      result = create(type, bitBoolean, jdbcClassName);
+      ColumnCodec previous = CODECS.putIfAbsent(key, result);
+      if (previous != null) { result = previous; }
+    }
+    return result;
+  }
+
+  /** Return codecs for columns of result set. The class of columns which JDBC driver report is read from metadata
+   * of result set, so the codecs can use typed getters.
+   * @param columns columns which are in result set on their positions
+   * @param rsmd metadata of result set
+   * @return codecs of columns, on index position - 1 */
+  public static ColumnCodec[] forResultSet(@Nonnull List<ColumnDesc> columns, @Nonnull ResultSetMetaData rsmd)
+      throws SQLException {
+    ColumnCodec[] result = new ColumnCodec[columns.size()];
+    for (ColumnDesc column : columns) {
+      int position = column.getPosition();
+      String jdbcClassName = position <= rsmd.getColumnCount() ? rsmd.getColumnClassName(position) : null;
+      result[position - 1] = of(column.getDataType(), column.getDialect(), jdbcClassName);
+    }
+    return result;
+  }
+
+  private static ColumnCodec create(ColumnType type, boolean bitBoolean, String jdbcClassName) {
+    Reader typed = typedReader(type, jdbcClassName);
+    Reader reader = typed != null ? typed : readerFor(type);
+    Decoder repairer = repairerFor(type);
+    Decoder wrapper = wrapperFor(type);
+    Decoder decoder = wrapper == null ? repairer : wrapper;
+    return new ColumnCodec(type, reader, typed != null, repairer, decoder, writerFor(type),
+        formatterFor(type, bitBoolean));
+  }
+
+  /** Return typed getter of result set, when JDBC driver report for column the class of column type */
+  private static Reader typedReader(ColumnType type, String jdbcClassName) {
+    if (jdbcClassName == null) { return null; }
+    switch (type) {
+      case STRING: return String.class.getName().equals(jdbcClassName) ? ResultSet::getString : null;
+      case INTEGER: return Integer.class.getName().equals(jdbcClassName) ? (rs, i) -> {
+        int v = rs.getInt(i);
+        return rs.wasNull() ? null : v;
+      } : null;
+      case LONG: return Long.class.getName().equals(jdbcClassName) ? (rs, i) -> {
+        long v = rs.getLong(i);
+        return rs.wasNull() ? null : v;
+      } : null;
+      case SHORT: return Short.class.getName().equals(jdbcClassName) ? (rs, i) -> {
+        short v = rs.getShort(i);
+        return rs.wasNull() ? null : v;
+      } : null;
+      case BYTE: return Byte.class.getName().equals(jdbcClassName) ? (rs, i) -> {
+        byte v = rs.getByte(i);
+        return rs.wasNull() ? null : v;
+      } : null;
+      case FLOAT: return Float.class.getName().equals(jdbcClassName) ? (rs, i) -> {
+        float v = rs.getFloat(i);
+        return rs.wasNull() ? null : v;
+      } : null;
+      case DOUBLE: return Double.class.getName().equals(jdbcClassName) ? (rs, i) -> {
+        double v = rs.getDouble(i);
+        return rs.wasNull() ? null : v;
+      } : null;
+      case BOOLEAN: return Boolean.class.getName().equals(jdbcClassName) ? (rs, i) -> {
+        boolean v = rs.getBoolean(i);
+        return rs.wasNull() ? null : v;
+      } : null;
+      case DECIMAL: return BigDecimal.class.getName().equals(jdbcClassName) ? ResultSet::getBigDecimal : null;
+      case DATE: return java.sql.Date.class.getName().equals(jdbcClassName) ? ResultSet::getDate : null;
+      case TIME: return Time.class.getName().equals(jdbcClassName) ? ResultSet::getTime : null;
+      case TIMESTAMP: return Timestamp.class.getName().equals(jdbcClassName) ? ResultSet::getTimestamp : null;
+      default: return null;
+    }
+  }
+
+  /** Reader which is used when class of value isn't known */
+  private static Reader readerFor(ColumnType type) {
+    switch (type) {
+      case BIT: return (rs, i) -> rs.getBoolean(i) ? (byte) 1 : (byte) 0;
+      case BIT_ARRAY: return ResultSet::getBytes;
+      default: return ResultSet::getObject;
+    }
+  }
+
+  /** Decoder which wrap binary values read from database, or null when the values aren't wrapped */
+  private static Decoder wrapperFor(ColumnType type) {
+    switch (type) {
+      case BLOB: return (column, value) -> new BlobBinaryData(column.toString(), (Blob) value);
+      case CLOB: return (column, value) -> new ClobBinaryData(column.toString(), (Clob) value);
+      case BYTE_ARRAY: return (column, value) -> new ByteArrayBinaryData(column.toString(), (byte[]) value);
+      case BIT_ARRAY: return (column, value) -> new BitArrayBinaryData(column.toString(), (byte[]) value);
+      default: return null;
+    }
+  }
+
+  /** Decoder which convert value to class of column */
+  @SuppressWarnings("RedundantCast")
+  private static Decoder repairerFor(ColumnType type) {
+    final Class javaClass = type.getJavaClass();
+    switch (type) {
+      case TIME: return (column, value) -> value instanceof LocalTime ? Time.valueOf((LocalTime) value) : value;
+      case DATE: return (column, value) -> value instanceof LocalDate ? java.sql.Date.valueOf((LocalDate) value) : value;
+      case TIMESTAMP: return (column, value) -> value instanceof LocalDateTime ? Timestamp.valueOf((LocalDateTime) value) : value;
+      case INTEGER: return (column, value) -> value.getClass() == javaClass || !isIntegral(value) ? value : (Object) ((Number) value).intValue();
+      case BYTE: return (column, value) -> value.getClass() == javaClass || !isIntegral(value) ? value : (Object) ((Number) value).byteValue();
+      case SHORT: return (column, value) -> value.getClass() == javaClass || !isIntegral(value) ? value : (Object) ((Number) value).shortValue();
+      default: return (column, value) -> value;
+    }
+  }
+
+  private static boolean isIntegral(Object value) {
+    return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+  }
+
+  private static Writer writerFor(ColumnType type) {
+    switch (type) {
+      case STRING: return (ps, i, value) -> ps.setString(i, (String) value);
+      case BOOLEAN: return (ps, i, value) -> ps.setBoolean(i, (Boolean) value);
+      case TIMESTAMP: return (ps, i, value) -> ps.setTimestamp(i, (Timestamp) value);
+      case DATE: return (ps, i, value) -> ps.setDate(i, (java.sql.Date) value);
+      case TIME: return (ps, i, value) -> ps.setTime(i, (Time) value);
+      case BYTE: return (ps, i, value) -> ps.setByte(i, (Byte) value);
+      case SHORT: return (ps, i, value) -> ps.setShort(i, (Short) value);
+      case INTEGER: return (ps, i, value) -> ps.setInt(i, (Integer) value);
+      case LONG: return (ps, i, value) -> ps.setLong(i, (Long) value);
+      case FLOAT: return (ps, i, value) -> ps.setFloat(i, (Float) value);
+      case DOUBLE: return (ps, i, value) -> ps.setDouble(i, (Double) value);
+      case DECIMAL: return (ps, i, value) -> ps.setBigDecimal(i, (BigDecimal) value);
+      case UUID: return (ps, i, value) -> ps.setBytes(i, AbstractHelper.uuidToByteArray((UUID) value));
+      case ARRAY: return (ps, i, value) -> {
+        throw new UnsupportedOperationException("The saving changes in ARRAY isn't supported.");
+        // ps.setArray(position, (Array) value); break; // FIXME the value isn't in type java.sql.Array
+      };
+      case BYTE_ARRAY: return (ps, i, value) -> {
+        BinaryData bd = value instanceof BinaryData ? (BinaryData) value : null;
+        if (bd == null || bd.isNull()) { ps.setBytes(i, null); }
+        else {
+          try {
+            ps.setBytes(i, IOUtils.toByteArray(bd.getInputStream()));
+          } catch (IOException e) {
+            throw new SQLException(e);
+          }
+        }
+      };
+      case CLOB: return (ps, i, value) -> {
+        BinaryData bd = value instanceof BinaryData ? (BinaryData) value : null;
+        if (bd == null || bd.isNull()) { ps.setNull(i, Types.CLOB); }
+        else { ps.setClob(i, bd.getReader()); }
+      };
+      case BLOB: return (ps, i, value) -> {
+        BinaryData bd = value instanceof BinaryData ? (BinaryData) value : null;
+        if (bd == null || bd.isNull()) { ps.setNull(i, Types.BLOB); }
+        else { ps.setBlob(i, bd.getInputStream()); }
+      };
+      case OBJECT: return PreparedStatement::setObject;
+      default: return (ps, i, value) -> { };
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Formatter formatterFor(ColumnType type, boolean bitBoolean) {
+    final StringConverter converter = type.getConverter();
+    switch (type) {
+      case STRING:
+      case UUID:
+        return value -> "'" + converter.toString(value) + "'";
+      case DATE: return value -> "'" + StringConverters.SQL_SQL_DATE_CONVERTER.toString((java.sql.Date) value) + "'";
+      case TIME: return value -> "'" + StringConverters.SQL_SQL_TIME_CONVERTER.toString((Time) value) + "'";
+      case TIMESTAMP: return value -> "'" + StringConverters.SQL_SQL_TIMESTAMP_CONVERTER.toString((Timestamp) value) + "'";
+      case BOOLEAN:
+        if (bitBoolean) { return value -> Boolean.TRUE.equals(value) ? "1" : "0"; }
+        return converter::toString;
+      case CLOB:
+      case BLOB:
+        return value -> {
+          BinaryData data = (BinaryData) value;
+          if (data.isNull()) { return "NULL"; }
+          try {
+            return "'" + IOUtils.toString(data.getReader()) + "'";
+          } catch (IOException e) {
+            LOG.error("Error convert " + type + " to string.", e);
+            throw new RuntimeException("Error convert " + type + " to string.", e);
+          }
+        };
+      case BIT_ARRAY:
+        return value -> {
+          try {
+            if (((BitArrayBinaryData) value).isNull()) { return "NULL"; }
+            String res = IOUtils.toString(((BitArrayBinaryData) value).getReader());
+            return "0x'" + res.replaceAll(" ", "") + "'";
+          } catch (IOException e) {
+            LOG.error("Error convert bit array to string.", e);
+            throw new RuntimeException("Error convert bit array to string.", e);
+          }
+        };
+      case BYTE_ARRAY:
+        return value -> ((ByteArrayBinaryData) value).isNull() ? "NULL" : "'" + converter.toString(value) + "'";
+      default: return converter::toString;
+    }
+  }
+}
@@ -51,6 +51,10 @@ public class ColumnDesc {
   private String javaClassName;
   @SuppressWarnings("unused")
   public String getJavaClassName() { return javaClassName; }
+  /** Dialect of database from which the column is, can be null */
+  private SQLDialect dialect; public SQLDialect getDialect() { return dialect; }
+  /** Codec of values, it's created by first use */
+  private ColumnCodec codec;
 
   /** Create SQL Query by data from result set metadata
    * @param mtd Metadata which hold information about column
@@ -59,6 +63,7 @@ public class ColumnDesc {
    */
   public ColumnDesc(ResultSetMetaData mtd, int position, SQLDialect dialect) throws SQLException {
     this.position = position;
+    this.dialect = dialect;
     this.name = mtd.getColumnName(position);
     this.label = mtd.getColumnLabel(position);
     this.defaultValue = "";
@@ -90,6 +95,7 @@ public class ColumnDesc {
   public ColumnDesc(final TableDesc td, ResultSet rs, SQLDialect dialect) throws SQLException {
     this.tableDesc = td;
     this.position = -1;
+    this.dialect = dialect;
     this.catalog = td.getSchema().getCatalog().getName();
     this.schema = td.getSchema().getName();
     this.table = td.getName();
@@ -149,6 +155,12 @@ public class ColumnDesc {
     return dataType.getConverter();
   }
 
+  /** Return codec which read, write and format values of this column */
+  public @Nonnull ColumnCodec getCodec() {
+    if (codec == null) { codec = ColumnCodec.of(dataType, dialect, javaClassName); }
+    return codec;
+  }
+
   /** Return extensions which are defined for this column in tableDescriptor
    * @return if no extension is defined return empty list */
   @Nonnull
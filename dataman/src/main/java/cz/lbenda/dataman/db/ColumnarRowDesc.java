@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import java.util.Arrays;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Read only row which hold no values, the values are read from {@link ColumnarRowStore} */
+final class ColumnarRowDesc extends ReadOnlyRowDesc {
+
+  private final ColumnarRowStore store;
+  private final int index;
+
+  ColumnarRowDesc(ColumnarRowStore store, int index) {
+    super(store.getMetaData(), null);
+    this.store = store;
+    this.index = index;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> T getInitialColumnValue(ColumnDesc column) {
+    return (T) store.getValue(index, column.getPosition() - 1);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof ColumnarRowDesc)) { return false; }
+    ColumnarRowDesc row = (ColumnarRowDesc) o;
+    if (row.store == store) { return row.index == index; }
+    return Arrays.equals(store.getValues(index), row.store.getValues(row.index));
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(store.getValues(index));
+  }
+}
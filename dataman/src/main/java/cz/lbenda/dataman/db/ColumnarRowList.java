@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import javafx.collections.ObservableListBase;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Collections;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Observable list of read only rows which are stored in {@link ColumnarRowStore}. The added rows are copied to store,
+ * the rows returned by list read the values from store. The rows can be only appended or all rows cleared. */
+public class ColumnarRowList extends ObservableListBase<RowDesc> {
+
+  private ColumnarRowStore store; public ColumnarRowStore getStore() { return store; }
+
+  public ColumnarRowList(@Nonnull ColumnarRowStore store) {
+    this.store = store;
+  }
+
+  @Override
+  public RowDesc get(int index) {
+    if (index < 0 || index >= store.size()) { throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + store.size()); }
+    return store.getRow(index);
+  }
+
+  @Override
+  public int size() {
+    return store.size();
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends RowDesc> rows) {
+    if (rows.isEmpty()) { return false; }
+    int from = store.size();
+    rows.forEach(store::add);
+    beginChange();
+    nextAdd(from, store.size());
+    endChange();
+    return true;
+  }
+
+  @Override
+  public void add(int index, RowDesc row) {
+    if (index != store.size()) { throw new UnsupportedOperationException("The rows can be only appended"); }
+    addAll(Collections.singletonList(row));
+  }
+
+  @Override
+  public void clear() {
+    if (store.size() == 0) { return; }
+    ColumnarRowStore removed = store;
+    store = new ColumnarRowStore(removed.getMetaData(), removed.getSpillThreshold());
+    beginChange();
+    nextRemove(0, new ColumnarRowList(removed));
+    endChange();
+    removed.close();
+  }
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import cz.lbenda.dataman.db.dialect.ColumnType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.*;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Columnar store of read only rows. The values of numeric columns are hold in primitive arrays with bitmap of null
+ * values, the dates and times as milliseconds from epoch and the strings with low cardinality are encoded by
+ * dictionary. When column get value which can't be stored in primitive form, then the column is converted to array
+ * of objects. The rows are read by {@link ColumnarRowList}. When count of rows exceed the spill threshold, the next
+ * rows are written to {@link RowSpillFile}. The row objects are created on demand, but while some row is referenced,
+ * the store return same instance for its index, so the row can be used as key of identity maps. */
+public class ColumnarRowStore implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ColumnarRowStore.class);
+
+  /** Max count of distinct values in dictionary of string column */
+  public static final int MAX_DICTIONARY_SIZE = 4096;
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final SQLQueryMetaData metaData; public SQLQueryMetaData getMetaData() { return metaData; }
+  private final ColumnStorage[] columns;
+  /** Count of rows which are hold in memory */
+  private int heapSize; public int getHeapSize() { return heapSize; }
+  /** Count of rows which are hold in memory, the next rows are written to file. When is lower then one, then all rows
+   * are hold in memory. */
+  private final int spillThreshold; public int getSpillThreshold() { return spillThreshold; }
+  /** File with rows over spill threshold, it's created with first such row */
+  private RowSpillFile spillFile;
+  /** Inform if the store was closed, the rows which are added after aren't written to file */
+  private boolean closed;
+  /** Rows which was returned and are still referenced, by index of row */
+  private final Map<Integer, RowReference> rows = new HashMap<>();
+  /** Queue of references of rows which are no more referenced */
+  private final ReferenceQueue<ColumnarRowDesc> releasedRows = new ReferenceQueue<>();
+
+  public ColumnarRowStore(@Nonnull SQLQueryMetaData metaData) {
+    this(metaData, -1);
+  }
+
+  /** Create store
+   * @param metaData metadata of rows
+   * @param spillThreshold count of rows hold in memory, when lower then one, then all rows are hold in memory */
+  public ColumnarRowStore(@Nonnull SQLQueryMetaData metaData, int spillThreshold) {
+    this.metaData = metaData;
+    this.spillThreshold = spillThreshold;
+    columns = new ColumnStorage[metaData.getColumns().size()];
+    for (ColumnDesc columnDesc : metaData.getColumns()) {
+      columns[columnDesc.getPosition() - 1] = storageFor(columnDesc.getDataType());
+    }
+  }
+
+  /** Count of rows in store */
+  public int size() { return spillFile == null ? heapSize : heapSize + spillFile.size(); }
+
+  /** Inform if some rows are written to file */
+  public boolean isSpilled() { return spillFile != null; }
+
+  /** Append row to store, the values of row are copied */
+  public void add(@Nonnull RowDesc row) {
+    if (spillThreshold > 0 && heapSize >= spillThreshold) {
+      Object[] values = new Object[columns.length];
+      for (ColumnDesc columnDesc : metaData.getColumns()) {
+        values[columnDesc.getPosition() - 1] = row.getColumnValue(columnDesc);
+      }
+      spill(values);
+      return;
+    }
+    for (ColumnDesc columnDesc : metaData.getColumns()) {
+      set(columnDesc.getPosition() - 1, row.getColumnValue(columnDesc));
+    }
+    heapSize++;
+  }
+
+  /** Append row to store
+   * @param values values of row ordered by position of columns */
+  public void add(@Nonnull Object[] values) {
+    if (spillThreshold > 0 && heapSize >= spillThreshold) {
+      spill(values.clone());
+      return;
+    }
+    for (int i = 0; i < columns.length; i++) { set(i, values[i]); }
+    heapSize++;
+  }
+
+  private void spill(Object[] values) {
+    if (closed) { return; }
+    try {
+      if (spillFile == null) {
+        spillFile = new RowSpillFile(columns.length);
+        LOG.info(String.format("More then %s rows, the next rows are written to file", spillThreshold));
+      }
+      spillFile.add(values);
+    } catch (IOException e) {
+      LOG.error("The row can't be written to file", e);
+      throw new RuntimeException("The row can't be written to file", e);
+    }
+  }
+
+  private void set(int column, Object value) {
+    if (value == null) { columns[column].nulls.set(heapSize); }
+    else if (!columns[column].set(heapSize, value)) {
+      ColumnStorage storage = new ObjectStorage();
+      for (int r = 0; r < heapSize; r++) {
+        Object v = getValue(r, column);
+        if (v == null) { storage.nulls.set(r); }
+        else { storage.set(r, v); }
+      }
+      columns[column] = storage;
+      storage.set(heapSize, value);
+    }
+  }
+
+  /** Return value of column in given row
+   * @param row index of row
+   * @param column index of column (position - 1) */
+  public Object getValue(int row, int column) {
+    if (row >= heapSize) { return spilledValues(row)[column]; }
+    ColumnStorage storage = columns[column];
+    return storage.nulls.get(row) ? null : storage.get(row);
+  }
+
+  /** Count distinct values of column in given rows without creating of rows. The rows in memory are counted from
+   * storage of column (the strings by codes of dictionary), the spilled rows are read from file.
+   * @param column index of column (position - 1)
+   * @param from index of first counted row
+   * @param to index after last counted row
+   * @return map with value as key and count of rows as value */
+  public Map<Object, Long> distinctValues(int column, int from, int to) {
+    Map<Object, Long> result = new HashMap<>();
+    int heapTo = Math.min(to, heapSize);
+    if (from < heapTo) { columns[column].count(from, heapTo, result); }
+    for (int r = Math.max(from, heapSize); r < to; r++) { result.merge(spilledValues(r)[column], 1L, Long::sum); }
+    return result;
+  }
+
+  /** Return all values of row ordered by position of columns */
+  public Object[] getValues(int row) {
+    if (row >= heapSize) { return spilledValues(row).clone(); }
+    Object[] result = new Object[columns.length];
+    for (int i = 0; i < columns.length; i++) { result[i] = getValue(row, i); }
+    return result;
+  }
+
+  private Object[] spilledValues(int row) {
+    try {
+      return spillFile.get(row - heapSize);
+    } catch (IOException e) {
+      LOG.error("The row can't be read from file", e);
+      throw new RuntimeException("The row can't be read from file", e);
+    }
+  }
+
+  /** Remove file with rows which was written over spill threshold */
+  @Override
+  public void close() {
+    if (closed) { return; }
+    closed = true;
+    if (spillFile != null) { spillFile.close(); }
+  }
+
+  /** Return row which read values from this store, for same index is returned same instance while it's referenced */
+  public synchronized RowDesc getRow(int row) {
+    RowReference released;
+    while ((released = (RowReference) releasedRows.poll()) != null) { rows.remove(released.index, released); }
+    RowReference reference = rows.get(row);
+    ColumnarRowDesc result = reference == null ? null : reference.get();
+    if (result == null) {
+      result = new ColumnarRowDesc(this, row);
+      rows.put(row, new RowReference(result, row, releasedRows));
+    }
+    return result;
+  }
+
+  /** Inform if the column is hold in primitive or dictionary form */
+  boolean isEncoded(int column) {
+    return !(columns[column] instanceof ObjectStorage);
+  }
+
+  /** Weak reference to row which know index of row, so it can be removed from map when the row is released */
+  private static final class RowReference extends WeakReference<ColumnarRowDesc> {
+    private final int index;
+    RowReference(ColumnarRowDesc row, int index, ReferenceQueue<ColumnarRowDesc> queue) {
+      super(row, queue);
+      this.index = index;
+    }
+  }
+
+  private static ColumnStorage storageFor(ColumnType columnType) {
+    switch (columnType) {
+      case BYTE:
+      case BIT: return new IntStorage(Byte.class);
+      case SHORT: return new IntStorage(Short.class);
+      case INTEGER: return new IntStorage(Integer.class);
+      case BOOLEAN: return new IntStorage(Boolean.class);
+      case LONG: return new LongStorage(Long.class);
+      case DATE: return new LongStorage(java.sql.Date.class);
+      case TIME: return new LongStorage(Time.class);
+      case TIMESTAMP: return new LongStorage(Timestamp.class);
+      case FLOAT: return new DoubleStorage(Float.class);
+      case DOUBLE: return new DoubleStorage(Double.class);
+      case STRING: return new StringStorage();
+      default: return new ObjectStorage();
+    }
+  }
+
+  private static int grow(int length, int minLength) {
+    return Math.max(minLength, length + (length >> 1) + 1);
+  }
+
+  /** Storage of values of one column */
+  private abstract static class ColumnStorage {
+    /** Rows with null value */
+    final BitSet nulls = new BitSet();
+    /** Store not null value to given row
+     * @return false when the value can't be stored by this storage */
+    abstract boolean set(int row, Object value);
+    /** Return not null value of row */
+    abstract Object get(int row);
+    /** Add count of values of rows from given range to map */
+    void count(int from, int to, Map<Object, Long> counts) {
+      for (int r = from; r < to; r++) { counts.merge(nulls.get(r) ? null : get(r), 1L, Long::sum); }
+    }
+  }
+
+  /** Storage for byte, short, integer and boolean values */
+  private static final class IntStorage extends ColumnStorage {
+    private final Class<?> type;
+    private int[] values = new int[INITIAL_CAPACITY];
+    IntStorage(Class<?> type) { this.type = type; }
+
+    @Override
+    boolean set(int row, Object value) {
+      if (value.getClass() != type) { return false; }
+      if (row >= values.length) { values = Arrays.copyOf(values, grow(values.length, row + 1)); }
+      if (value instanceof Boolean) { values[row] = (Boolean) value ? 1 : 0; }
+      else { values[row] = ((Number) value).intValue(); }
+      return true;
+    }
+    @Override
+    Object get(int row) {
+      if (type == Byte.class) { return (byte) values[row]; }
+      if (type == Short.class) { return (short) values[row]; }
+      if (type == Boolean.class) { return values[row] != 0; }
+      return values[row];
+    }
+  }
+
+  /** Storage for long values and dates, times and timestamps as milliseconds from epoch */
+  private static final class LongStorage extends ColumnStorage {
+    private final Class<?> type;
+    private long[] values = new long[INITIAL_CAPACITY];
+    /** Nanoseconds of timestamps under one millisecond, the array is created by first such timestamp */
+    private int[] nanos;
+    LongStorage(Class<?> type) { this.type = type; }
+
+    @Override
+    boolean set(int row, Object value) {
+      if (value.getClass() != type) { return false; }
+      if (row >= values.length) { values = Arrays.copyOf(values, grow(values.length, row + 1)); }
+      if (value instanceof Long) { values[row] = (Long) value; }
+      else { values[row] = ((java.util.Date) value).getTime(); }
+      if (value instanceof Timestamp) {
+        int subMillis = ((Timestamp) value).getNanos() % 1000000;
+        if (subMillis != 0) {
+          if (nanos == null) { nanos = new int[values.length]; }
+          else if (row >= nanos.length) { nanos = Arrays.copyOf(nanos, values.length); }
+          nanos[row] = subMillis;
+        }
+      }
+      return true;
+    }
+    @Override
+    Object get(int row) {
+      if (type == Long.class) { return values[row]; }
+      if (type == java.sql.Date.class) { return new java.sql.Date(values[row]); }
+      if (type == Time.class) { return new Time(values[row]); }
+      Timestamp result = new Timestamp(values[row]);
+      if (nanos != null && row < nanos.length && nanos[row] != 0) { result.setNanos(result.getNanos() + nanos[row]); }
+      return result;
+    }
+  }
+
+  /** Storage for float and double values */
+  private static final class DoubleStorage extends ColumnStorage {
+    private final Class<?> type;
+    private double[] values = new double[INITIAL_CAPACITY];
+    DoubleStorage(Class<?> type) { this.type = type; }
+
+    @Override
+    boolean set(int row, Object value) {
+      if (value.getClass() != type) { return false; }
+      if (row >= values.length) { values = Arrays.copyOf(values, grow(values.length, row + 1)); }
+      values[row] = ((Number) value).doubleValue();
+      return true;
+    }
+    @Override
+    Object get(int row) {
+      if (type == Float.class) { return (float) values[row]; }
+      return values[row];
+    }
+  }
+
+  /** Storage for strings which are encoded by dictionary */
+  private static final class StringStorage extends ColumnStorage {
+    private int[] codes = new int[INITIAL_CAPACITY];
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> index = new HashMap<>();
+
+    @Override
+    boolean set(int row, Object value) {
+      if (!(value instanceof String)) { return false; }
+      Integer code = index.get(value);
+      if (code == null) {
+        if (dictionary.size() >= MAX_DICTIONARY_SIZE) { return false; }
+        code = dictionary.size();
+        dictionary.add((String) value);
+        index.put((String) value, code);
+      }
+      if (row >= codes.length) { codes = Arrays.copyOf(codes, grow(codes.length, row + 1)); }
+      codes[row] = code;
+      return true;
+    }
+    @Override
+    Object get(int row) { return dictionary.get(codes[row]); }
+    @Override
+    void count(int from, int to, Map<Object, Long> counts) {
+      long[] codeCounts = new long[dictionary.size()];
+      long nullCount = 0;
+      for (int r = from; r < to; r++) {
+        if (nulls.get(r)) { nullCount++; }
+        else { codeCounts[codes[r]]++; }
+      }
+      for (int code = 0; code < codeCounts.length; code++) {
+        if (codeCounts[code] > 0) { counts.merge(dictionary.get(code), codeCounts[code], Long::sum); }
+      }
+      if (nullCount > 0) { counts.merge(null, nullCount, Long::sum); }
+    }
+  }
+
+  /** Storage for values which can't be stored in primitive form */
+  private static final class ObjectStorage extends ColumnStorage {
+    private Object[] values = new Object[INITIAL_CAPACITY];
+
+    @Override
+    boolean set(int row, Object value) {
+      if (row >= values.length) { values = Arrays.copyOf(values, grow(values.length, row + 1)); }
+      values[row] = value;
+      return true;
+    }
+    @Override
+    Object get(int row) { return values[row]; }
+  }
+}
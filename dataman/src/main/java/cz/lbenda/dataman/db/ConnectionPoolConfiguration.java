@@ -0,0 +1,68 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import cz.lbenda.dataman.schema.dataman.ConnectionPoolType;
+import cz.lbenda.dataman.schema.dataman.ObjectFactory;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 25.10.15.
+ * Configuration of pool of connections to one database. All times are in milliseconds, value lower or equal to zero
+ * switch the feature off. */
+public class ConnectionPoolConfiguration {
+
+  public static final int DEFAULT_MIN_SIZE = 0;
+  public static final int DEFAULT_MAX_SIZE = 10;
+  public static final int DEFAULT_BORROW_TIMEOUT = 30000;
+  public static final int DEFAULT_VALIDATION_TIMEOUT = 5000;
+  public static final int DEFAULT_MAX_LIFETIME = 1800000;
+  public static final int DEFAULT_STATEMENT_CACHE_SIZE = 50;
+
+  private int minSize = DEFAULT_MIN_SIZE; public int getMinSize() { return minSize; } public void setMinSize(int minSize) { this.minSize = minSize; }
+  private int maxSize = DEFAULT_MAX_SIZE; public int getMaxSize() { return maxSize; } public void setMaxSize(int maxSize) { this.maxSize = maxSize; }
+  private int borrowTimeout = DEFAULT_BORROW_TIMEOUT; public int getBorrowTimeout() { return borrowTimeout; } public void setBorrowTimeout(int borrowTimeout) { this.borrowTimeout = borrowTimeout; }
+  private int validationTimeout = DEFAULT_VALIDATION_TIMEOUT; public int getValidationTimeout() { return validationTimeout; } public void setValidationTimeout(int validationTimeout) { this.validationTimeout = validationTimeout; }
+  /** Idle timeout, when is lower or equal to zero then connection timeout from session is used */
+  private int idleTimeout = -1; public int getIdleTimeout() { return idleTimeout; } public void setIdleTimeout(int idleTimeout) { this.idleTimeout = idleTimeout; }
+  private int maxLifetime = DEFAULT_MAX_LIFETIME; public int getMaxLifetime() { return maxLifetime; } public void setMaxLifetime(int maxLifetime) { this.maxLifetime = maxLifetime; }
+  private int leakDetectionThreshold = -1; public int getLeakDetectionThreshold() { return leakDetectionThreshold; } public void setLeakDetectionThreshold(int leakDetectionThreshold) { this.leakDetectionThreshold = leakDetectionThreshold; }
+  /** Maximal count of prepared statements which are cached for one connection */
+  private int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE; public int getStatementCacheSize() { return statementCacheSize; } public void setStatementCacheSize(int statementCacheSize) { this.statementCacheSize = statementCacheSize; }
+
+  public final void load(ConnectionPoolType pool) {
+    setMinSize(pool.getMinSize() == null ? DEFAULT_MIN_SIZE : pool.getMinSize());
+    setMaxSize(pool.getMaxSize() == null ? DEFAULT_MAX_SIZE : pool.getMaxSize());
+    setBorrowTimeout(pool.getBorrowTimeout() == null ? DEFAULT_BORROW_TIMEOUT : pool.getBorrowTimeout());
+    setValidationTimeout(pool.getValidationTimeout() == null ? DEFAULT_VALIDATION_TIMEOUT : pool.getValidationTimeout());
+    setIdleTimeout(pool.getIdleTimeout() == null ? -1 : pool.getIdleTimeout());
+    setMaxLifetime(pool.getMaxLifetime() == null ? DEFAULT_MAX_LIFETIME : pool.getMaxLifetime());
+    setLeakDetectionThreshold(pool.getLeakDetectionThreshold() == null ? -1 : pool.getLeakDetectionThreshold());
+    setStatementCacheSize(pool.getStatementCacheSize() == null ? DEFAULT_STATEMENT_CACHE_SIZE : pool.getStatementCacheSize());
+  }
+
+  public final ConnectionPoolType storeToConnectionPoolType() {
+    ObjectFactory of = new ObjectFactory();
+    ConnectionPoolType pool = of.createConnectionPoolType();
+    pool.setMinSize(getMinSize());
+    pool.setMaxSize(getMaxSize());
+    pool.setBorrowTimeout(getBorrowTimeout());
+    pool.setValidationTimeout(getValidationTimeout());
+    if (getIdleTimeout() > 0) { pool.setIdleTimeout(getIdleTimeout()); }
+    pool.setMaxLifetime(getMaxLifetime());
+    if (getLeakDetectionThreshold() > 0) { pool.setLeakDetectionThreshold(getLeakDetectionThreshold()); }
+    pool.setStatementCacheSize(getStatementCacheSize());
+    return pool;
+  }
+}
@@ -18,6 +18,7 @@ package cz.lbenda.dataman.db;
 import cz.lbenda.common.Tuple2;
 import cz.lbenda.dataman.Constants;
 import cz.lbenda.dataman.User;
+import cz.lbenda.dataman.db.audit.SqlLogToTableAuditor;
 import cz.lbenda.dataman.db.dialect.SQLDialect;
 import cz.lbenda.rcp.action.SavableRegistry;
 import cz.lbenda.rcp.localization.Message;
@@ -49,6 +50,8 @@ public class ConnectionProvider implements SQLExecutor {
 
   private DbConfig dbConfig;
   private DatamanDataSource dataSource = null;
+  /** Data source of read only connections used for browsing of data */
+  private DatamanDataSource readDataSource = null;
   private User user; public @Nonnull User getUser() { return user; } public void setUser(User user) { this.user = user; }
   public final BooleanProperty connected = new SimpleBooleanProperty(false);
   /** Savable register for whole db config. */
@@ -75,23 +78,33 @@ public class ConnectionProvider implements SQLExecutor {
     dataSource = new DatamanDataSource(dbConfig);
   }
 
+  private void createReadDataSource() throws IllegalStateException {
+    if (!isPrepared()) {
+      throw new IllegalStateException("The DBStructureReader isn't yet prepared for create dataSource. Please check isPrepared() properties");
+    }
+    readDataSource = new DatamanDataSource(dbConfig, true);
+  }
+
   /** Close all connections */
   public void close() {
     if (this.savableRegistry != null) {
       if (!this.savableRegistry.close()) { return; }
     }
-    if (dataSource != null) {
-      try {
-        dataSource.closeAllConnections();
-        this.connected.set(false);
-      } catch (SQLException e) {
-        LOG.error("The connection isn't close.", e);
-      }
-    } else {
-      this.connected.set(false);
+    try {
+      closeAllConnections();
+    } catch (SQLException e) {
+      LOG.error("The connection isn't close.", e);
     }
   }
 
+  /** Close all connections in pool without asking for saving of changes */
+  public void closeAllConnections() throws SQLException {
+    SqlLogToTableAuditor.closeAuditors(this);
+    if (readDataSource != null) { readDataSource.closeAllConnections(); }
+    if (dataSource != null) { dataSource.closeAllConnections(); }
+    this.connected.set(false);
+  }
+
   public Connection getConnection() throws RuntimeException {
     if (dataSource == null) { createDataSource(); }
     try {
@@ -105,6 +118,21 @@ public class ConnectionProvider implements SQLExecutor {
     }
   }
 
+  /** Return read only connection which is used for browsing of data. When the read connection is configured with
+   * own URL, the connection go to this secondary database. The changes must be written by {@link #getConnection()}. */
+  public Connection getReadConnection() throws RuntimeException {
+    if (readDataSource == null) { createReadDataSource(); }
+    try {
+      Connection result = readDataSource.getConnection();
+      if (result == null) { throw new RuntimeException("The connection isn't created"); }
+      this.connected.set(!result.isClosed());
+      return result;
+    } catch (SQLException e) {
+      LOG.error("Filed to get read connection", e);
+      throw new RuntimeException(e);
+    }
+  }
+
   @Override
   public void onPreparedStatement(String sql, Consumer<Tuple2<PreparedStatement, SQLException>> consumer) {
     try (Connection connection = getConnection()) {
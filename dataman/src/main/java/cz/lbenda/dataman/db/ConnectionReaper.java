@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 25.10.15.
+ * One shared thread which periodically check all connection pools. It close idle connections, validate stale
+ * connections and report leaked connections. */
+public class ConnectionReaper {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ConnectionReaper.class);
+
+  /** Period in which are pools checked in milliseconds */
+  public static final long PERIOD = 1000;
+
+  private static ConnectionReaper instance;
+  public static synchronized ConnectionReaper getInstance() {
+    if (instance == null) { instance = new ConnectionReaper(); }
+    return instance;
+  }
+
+  private final Set<DatamanConnectionPool> pools = Collections.newSetFromMap(new WeakHashMap<>());
+  private ScheduledExecutorService executor;
+
+  private ConnectionReaper() {
+  }
+
+  /** Register pool which is checked by reaper */
+  public void register(@Nonnull DatamanConnectionPool pool) {
+    synchronized (pools) {
+      pools.add(pool);
+      if (executor == null) {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+          Thread thread = new Thread(runnable, "Dataman connection reaper");
+          thread.setDaemon(true);
+          return thread;
+        });
+        executor.scheduleWithFixedDelay(this::reap, PERIOD, PERIOD, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  /** Remove pool from reaper, when no pool is registered the thread of reaper is stopped */
+  public void unregister(@Nonnull DatamanConnectionPool pool) {
+    synchronized (pools) {
+      pools.remove(pool);
+      if (pools.isEmpty() && executor != null) {
+        executor.shutdown();
+        executor = null;
+      }
+    }
+  }
+
+  /** Count of pools which are checked by reaper */
+  public int getPoolCount() {
+    synchronized (pools) { return pools.size(); }
+  }
+
+  /** Count of connections which was opened by all registered pools */
+  public long getOpenedCount() {
+    return snapshot().stream().mapToLong(DatamanConnectionPool::getOpenedCount).sum();
+  }
+  /** Count of connections which was closed by all registered pools */
+  public long getClosedCount() {
+    return snapshot().stream().mapToLong(DatamanConnectionPool::getClosedCount).sum();
+  }
+  /** Count of connections which was closed by reaper in all registered pools */
+  public long getReapedCount() {
+    return snapshot().stream().mapToLong(DatamanConnectionPool::getReapedCount).sum();
+  }
+
+  private List<DatamanConnectionPool> snapshot() {
+    synchronized (pools) { return new ArrayList<>(pools); }
+  }
+
+  private void reap() {
+    for (DatamanConnectionPool pool : snapshot()) {
+      try {
+        pool.reap();
+      } catch (RuntimeException e) {
+        LOG.error("The reaping of connection pool failed", e);
+      }
+    }
+  }
+}
@@ -13,6 +13,7 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.NClob;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLClientInfoException;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
@@ -23,10 +24,11 @@ import java.sql.Struct;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-/** Un-closable connection
+/** Pooled connection. The close method return connection to pool, the physical connection is closed by realyClose.
  * @author Lukas Benda <lbenda at lbenda.cz>
  */
 public class DatamanConnection implements Connection {
@@ -35,20 +37,74 @@ public class DatamanConnection implements Connection {
 
   private Connection connection;
   private int connectionTimeout; public int getConnectionTimeout() { return connectionTimeout; } public void setConnectionTimeout(int connectionTimeout) { this.connectionTimeout = connectionTimeout; }
-  private static int connectionId = 0;
+  private static final AtomicInteger CONNECTION_ID = new AtomicInteger();
+  private final int connectionId = CONNECTION_ID.incrementAndGet(); public int getConnectionId() { return connectionId; }
+  /** Pool to which connection is returned when is closed, if is null the connection is closed directly */
+  private final DatamanConnectionPool pool;
+  /** Time when the physical connection was created */
+  private final long created = System.currentTimeMillis(); public long getCreated() { return created; }
+  /** Time when connection was last time borrowed or returned to pool */
+  private volatile long lastUsed = created; public long getLastUsed() { return lastUsed; } void setLastUsed(long lastUsed) { this.lastUsed = lastUsed; }
+  /** Time when connection was last time successfully validated */
+  private volatile long lastValidated = created; public long getLastValidated() { return lastValidated; } void setLastValidated(long lastValidated) { this.lastValidated = lastValidated; }
+  /** Place where connection was borrowed, filled only when leak detection is on */
+  private Exception borrowedAt; Exception getBorrowedAt() { return borrowedAt; } void setBorrowedAt(Exception borrowedAt) { this.borrowedAt = borrowedAt; }
+  /** Cache of prepared statements, statements are closed when physical connection is closed */
+  private PreparedStatementCache statementCache = new PreparedStatementCache(this, 0);
+  public PreparedStatementCache getStatementCache() { return statementCache; }
+  /** Set maximal count of cached prepared statements, the already cached statements are closed */
+  public void setStatementCacheSize(int size) {
+    statementCache.clear();
+    statementCache = new PreparedStatementCache(this, size);
+  }
+  /** Read only flag to which is connection returned when is released to pool */
+  private boolean defaultReadOnly;
+  /** Transaction isolation which connection had before first change by user */
+  private int originalTransactionIsolation;
+  private boolean transactionIsolationChanged;
+  /** Flag which is set when the connection was reported as leaked */
+  private boolean leakReported; boolean isLeakReported() { return leakReported; } void setLeakReported(boolean leakReported) { this.leakReported = leakReported; }
 
   public DatamanConnection(Connection connection) {
+    this(connection, null);
+  }
+
+  public DatamanConnection(Connection connection, DatamanConnectionPool pool) {
     this.connection = connection;
-    connectionId++;
+    this.pool = pool;
     LOG.info("New connectionID is created: " + connectionId);
   }
 
   public void realyClose() throws SQLException {
     LOG.info("realy close: " + connectionId);
+    statementCache.clear();
     connection.close();
     LOG.info("Closed after close: " + connection.isClosed());
   }
 
+  /** Configure the state of connection which is restored every time the connection is returned to pool
+   * @param readOnly read only flag of connection
+   * @param transactionIsolation transaction isolation, when is negative the default of driver is kept */
+  void configureDefaults(boolean readOnly, int transactionIsolation) throws SQLException {
+    this.defaultReadOnly = readOnly;
+    if (connection.isReadOnly() != readOnly) { connection.setReadOnly(readOnly); }
+    if (transactionIsolation >= 0) { connection.setTransactionIsolation(transactionIsolation); }
+  }
+
+  /** Return the state of connection to state in which was created. Uncommitted transaction is rolled back. */
+  void resetState() throws SQLException {
+    if (!connection.getAutoCommit()) {
+      connection.rollback();
+      connection.setAutoCommit(true);
+    }
+    if (connection.isReadOnly() != defaultReadOnly) { connection.setReadOnly(defaultReadOnly); }
+    if (transactionIsolationChanged) {
+      connection.setTransactionIsolation(originalTransactionIsolation);
+      transactionIsolationChanged = false;
+    }
+    connection.clearWarnings();
+  }
+
   @Override
   public void finalize() throws Throwable {
     try {
@@ -62,7 +118,10 @@ public class DatamanConnection implements Connection {
   @Override
   public Statement createStatement() throws SQLException { return connection.createStatement(); }
   @Override
-  public PreparedStatement prepareStatement(String sql) throws SQLException { return connection.prepareStatement(sql); }
+  public PreparedStatement prepareStatement(String sql) throws SQLException {
+    return statementCache.prepare(new PreparedStatementCache.Key(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY,
+        Statement.NO_GENERATED_KEYS), () -> connection.prepareStatement(sql));
+  }
   @Override
   public CallableStatement prepareCall(String sql) throws SQLException { return connection.prepareCall(sql); }
   @Override
@@ -78,6 +137,8 @@ public class DatamanConnection implements Connection {
   @Override
   public void close() throws SQLException {
     LOG.log(Level.FINE, "Close connection is called: " + connectionId);
+    if (pool != null) { pool.release(this); }
+    else { realyClose(); }
   }
   @Override
   public boolean isClosed() throws SQLException { return connection.isClosed(); }
@@ -92,7 +153,13 @@ public class DatamanConnection implements Connection {
   @Override
   public String getCatalog() throws SQLException { return connection.getCatalog(); }
   @Override
-  public void setTransactionIsolation(int level) throws SQLException { connection.setTransactionIsolation(level); }
+  public void setTransactionIsolation(int level) throws SQLException {
+    if (!transactionIsolationChanged) {
+      originalTransactionIsolation = connection.getTransactionIsolation();
+      transactionIsolationChanged = true;
+    }
+    connection.setTransactionIsolation(level);
+  }
   @Override
   public int getTransactionIsolation() throws SQLException { return connection.getTransactionIsolation(); }
   @Override
@@ -102,7 +169,10 @@ public class DatamanConnection implements Connection {
   @Override
   public Statement createStatement(int arg0, int arg1) throws SQLException { return connection.createStatement(arg0, arg1); }
   @Override
-  public PreparedStatement prepareStatement(String arg0, int arg1, int arg2) throws SQLException { return connection.prepareStatement(arg0, arg1, arg2); }
+  public PreparedStatement prepareStatement(String arg0, int arg1, int arg2) throws SQLException {
+    return statementCache.prepare(new PreparedStatementCache.Key(arg0, arg1, arg2, Statement.NO_GENERATED_KEYS),
+        () -> connection.prepareStatement(arg0, arg1, arg2));
+  }
   @Override
   public CallableStatement prepareCall(String arg0, int arg1, int arg2) throws SQLException { return connection.prepareCall(arg0, arg1, arg2); }
   @Override
@@ -128,7 +198,10 @@ public class DatamanConnection implements Connection {
   @Override
   public CallableStatement prepareCall(String arg0, int arg1, int arg2, int arg3) throws SQLException { return connection.prepareCall(arg0, arg1, arg2, arg3); }
   @Override
-  public PreparedStatement prepareStatement(String arg0, int arg1) throws SQLException { return connection.prepareStatement(arg0, arg1); }
+  public PreparedStatement prepareStatement(String arg0, int arg1) throws SQLException {
+    return statementCache.prepare(new PreparedStatementCache.Key(arg0, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, arg1),
+        () -> connection.prepareStatement(arg0, arg1));
+  }
   @Override
   public PreparedStatement prepareStatement(String arg0, int[] arg1) throws SQLException { return connection.prepareStatement(arg0, arg1); }
   @Override
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 25.10.15.
+ * Bounded pool of connections for one database configuration. Every borrowed connection is used exclusively by one
+ * caller, so the transaction state of one caller can't leak to another. The connection is returned to pool by
+ * calling of {@link DatamanConnection#close()}. */
+public class DatamanConnectionPool {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DatamanConnectionPool.class);
+
+  /** Factory which create new physical connection */
+  @FunctionalInterface
+  public interface PhysicalConnectionFactory {
+    Connection connect() throws SQLException;
+  }
+
+  private final DbConfig dbConfig;
+  private final ConnectionPoolConfiguration configuration;
+  private final PhysicalConnectionFactory factory;
+  /** Flag if connections of pool are read only */
+  private final boolean readOnly; public boolean isReadOnly() { return readOnly; }
+  /** Transaction isolation of connections, negative value mean default of driver */
+  private final int transactionIsolation;
+
+  /** Idle connections, the last returned is on the beginning */
+  private final Deque<DatamanConnection> idle = new ArrayDeque<>();
+  private final Set<DatamanConnection> borrowed = new HashSet<>();
+  /** Count of connections which is just now creating */
+  private int pending = 0;
+  private boolean closed = false;
+
+  /** Idle connection which wasn't used or validated longer then this time is validated by reaper */
+  public static final long STALE_TIMEOUT = 30000;
+
+  private final AtomicLong openedCount = new AtomicLong();
+  private final AtomicLong closedCount = new AtomicLong();
+  private final AtomicLong reapedCount = new AtomicLong();
+
+  public DatamanConnectionPool(@Nonnull DbConfig dbConfig, @Nonnull PhysicalConnectionFactory factory) {
+    this(dbConfig, factory, false, -1);
+  }
+
+  /** Create pool
+   * @param dbConfig configuration of database
+   * @param factory factory of physical connections
+   * @param readOnly flag if connections are read only
+   * @param transactionIsolation transaction isolation of connections, negative value mean default of driver */
+  public DatamanConnectionPool(@Nonnull DbConfig dbConfig, @Nonnull PhysicalConnectionFactory factory,
+                               boolean readOnly, int transactionIsolation) {
+    this.dbConfig = dbConfig;
+    this.configuration = dbConfig.getConnectionPoolConfiguration();
+    this.factory = factory;
+    this.readOnly = readOnly;
+    this.transactionIsolation = transactionIsolation;
+    ConnectionReaper.getInstance().register(this);
+  }
+
+  /** Configuration of this pool */
+  public ConnectionPoolConfiguration getConfiguration() { return configuration; }
+  /** Count of all opened connections (idle and borrowed) */
+  public synchronized int getSize() { return idle.size() + borrowed.size(); }
+  /** Count of idle connections */
+  public synchronized int getIdleCount() { return idle.size(); }
+  /** Count of borrowed connections */
+  public synchronized int getBorrowedCount() { return borrowed.size(); }
+  /** Inform if the pool is closed */
+  public synchronized boolean isClosed() { return closed; }
+  /** Count of physical connections which was opened by this pool */
+  public long getOpenedCount() { return openedCount.get(); }
+  /** Count of physical connections which was closed by this pool */
+  public long getClosedCount() { return closedCount.get(); }
+  /** Count of connections which was closed by reaper because they was idle, too old or invalid */
+  public long getReapedCount() { return reapedCount.get(); }
+
+  /** Time after which is idle connection closed */
+  public int getIdleTimeout() {
+    return configuration.getIdleTimeout() > 0 ? configuration.getIdleTimeout() : dbConfig.getConnectionTimeout();
+  }
+
+  private int maxSize() { return Math.max(1, configuration.getMaxSize()); }
+
+  /** Borrow connection from pool. If there isn't idle connection and pool isn't full then new one is created, else
+   * is waiting for returned connection till borrow timeout elapsed.
+   * @return connection which must be closed after use
+   * @throws SQLException when connection can't be created or no connection was free in borrow timeout */
+  public DatamanConnection borrow() throws SQLException {
+    long timeout = configuration.getBorrowTimeout();
+    long deadline = System.currentTimeMillis() + timeout;
+    while (true) {
+      DatamanConnection connection = null;
+      boolean create = false;
+      synchronized (this) {
+        if (closed) { throw new SQLException("The connection pool is closed"); }
+        while (idle.isEmpty() && idle.size() + borrowed.size() + pending >= maxSize()) {
+          long wait = deadline - System.currentTimeMillis();
+          if (timeout > 0 && wait <= 0) {
+            throw new SQLException(String.format("No free connection to database %s in %s ms, all %s connections are used.",
+                dbConfig.getId(), timeout, maxSize()));
+          }
+          try {
+            wait(timeout > 0 ? wait : 0);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("The waiting for free connection was interrupted", e);
+          }
+          if (closed) { throw new SQLException("The connection pool is closed"); }
+        }
+        if (!idle.isEmpty()) {
+          connection = idle.pollFirst();
+          borrowed.add(connection);
+        } else {
+          pending++;
+          create = true;
+        }
+      }
+
+      if (create) {
+        connection = createConnection();
+      } else if (!isUsable(connection)) {
+        discard(connection);
+        continue;
+      }
+      markBorrowed(connection);
+      return connection;
+    }
+  }
+
+  private DatamanConnection createConnection() throws SQLException {
+    DatamanConnection connection;
+    try {
+      connection = openConnection();
+    } catch (SQLException | RuntimeException e) {
+      synchronized (this) {
+        pending--;
+        notifyAll();
+      }
+      throw e;
+    }
+    synchronized (this) {
+      pending--;
+      borrowed.add(connection);
+    }
+    return connection;
+  }
+
+  /** Open new physical connection and configure it */
+  private DatamanConnection openConnection() throws SQLException {
+    DatamanConnection connection = new DatamanConnection(factory.connect(), this);
+    try {
+      connection.configureDefaults(readOnly, transactionIsolation);
+    } catch (SQLException e) {
+      connection.realyClose();
+      throw e;
+    }
+    connection.setConnectionTimeout(getIdleTimeout());
+    connection.setStatementCacheSize(configuration.getStatementCacheSize());
+    openedCount.incrementAndGet();
+    return connection;
+  }
+
+  private void markBorrowed(DatamanConnection connection) {
+    connection.setLastUsed(System.currentTimeMillis());
+    connection.setLeakReported(false);
+    if (configuration.getLeakDetectionThreshold() > 0) {
+      connection.setBorrowedAt(new Exception("Connection " + connection.getConnectionId() + " was borrowed here"));
+    }
+  }
+
+  /** Check if the connection is live and not too old */
+  private boolean isUsable(DatamanConnection connection) {
+    try {
+      if (connection.isClosed()) { return false; }
+      if (isExpired(connection, System.currentTimeMillis())) { return false; }
+      int validationTimeout = configuration.getValidationTimeout();
+      if (validationTimeout > 0) {
+        boolean valid = connection.isValid(Math.max(1, validationTimeout / 1000));
+        if (valid) { connection.setLastValidated(System.currentTimeMillis()); }
+        return valid;
+      }
+      return true;
+    } catch (SQLException e) {
+      LOG.warn("The connection validation failed", e);
+      return false;
+    }
+  }
+
+  private boolean isExpired(DatamanConnection connection, long now) {
+    return configuration.getMaxLifetime() > 0 && now - connection.getCreated() >= configuration.getMaxLifetime();
+  }
+
+  /** Return connection to pool. The uncommitted transaction is rolled back and connection state is reset. */
+  void release(@Nonnull DatamanConnection connection) throws SQLException {
+    synchronized (this) {
+      if (!borrowed.contains(connection)) {
+        LOG.debug("The connection {} isn't borrowed from pool, it's probably closed twice", connection.getConnectionId());
+        return;
+      }
+    }
+    connection.setBorrowedAt(null);
+    boolean reusable = !connection.isClosed();
+    if (reusable) {
+      try {
+        connection.resetState();
+      } catch (SQLException e) {
+        LOG.warn("The connection state can't be reset, the connection is closed", e);
+        reusable = false;
+      }
+    }
+    long now = System.currentTimeMillis();
+    connection.setLastUsed(now);
+    synchronized (this) {
+      borrowed.remove(connection);
+      notifyAll();
+      if (reusable && !closed && !isExpired(connection, now)) {
+        idle.addFirst(connection);
+        return;
+      }
+    }
+    closeQuietly(connection);
+  }
+
+  /** Close the connection which was borrowed and isn't usable */
+  private void discard(DatamanConnection connection) {
+    synchronized (this) {
+      borrowed.remove(connection);
+      notifyAll();
+    }
+    closeQuietly(connection);
+  }
+
+  private void closeQuietly(DatamanConnection connection) {
+    try {
+      if (!connection.isClosed()) {
+        connection.realyClose();
+        closedCount.incrementAndGet();
+      }
+    } catch (SQLException e) {
+      LOG.error("Failed when connection is closed", e);
+    }
+  }
+
+  /** Close idle connections which wasn't used longer then idle timeout or are older then max lifetime. The count of
+   * connections never decrease under minimal size of pool by idle timeout.
+   * @return count of closed connections */
+  public int evictIdle() {
+    long now = System.currentTimeMillis();
+    int idleTimeout = getIdleTimeout();
+    List<DatamanConnection> remove = new ArrayList<>();
+    synchronized (this) {
+      int size = idle.size() + borrowed.size();
+      // Oldest used connections are on the end of deque
+      Iterator<DatamanConnection> it = idle.descendingIterator();
+      while (it.hasNext()) {
+        DatamanConnection connection = it.next();
+        boolean idleTooLong = idleTimeout > 0 && now - connection.getLastUsed() >= idleTimeout
+            && size - remove.size() > configuration.getMinSize();
+        if (idleTooLong || isExpired(connection, now)) {
+          it.remove();
+          remove.add(connection);
+        }
+      }
+      if (!remove.isEmpty()) { notifyAll(); }
+    }
+    remove.forEach(this::closeQuietly);
+    reapedCount.addAndGet(remove.size());
+    return remove.size();
+  }
+
+  /** Validate idle connections which wasn't used or validated longer then {@link #STALE_TIMEOUT}. The invalid
+   * connections are closed.
+   * @return count of closed connections */
+  public int validateStale() {
+    long now = System.currentTimeMillis();
+    List<DatamanConnection> stale = new ArrayList<>();
+    synchronized (this) {
+      Iterator<DatamanConnection> it = idle.iterator();
+      while (it.hasNext()) {
+        DatamanConnection connection = it.next();
+        if (now - Math.max(connection.getLastUsed(), connection.getLastValidated()) >= STALE_TIMEOUT) {
+          it.remove();
+          stale.add(connection);
+        }
+      }
+      pending += stale.size(); // Validated connections are still counted to size of pool
+    }
+    int invalid = 0;
+    for (DatamanConnection connection : stale) {
+      boolean valid = isUsable(connection);
+      synchronized (this) {
+        pending--;
+        if (valid && !closed) {
+          idle.addLast(connection);
+          notifyAll();
+          continue;
+        }
+        notifyAll();
+      }
+      closeQuietly(connection);
+      invalid++;
+    }
+    reapedCount.addAndGet(invalid);
+    return invalid;
+  }
+
+  /** Open new idle connections while the pool is smaller then minimal size */
+  public void fillToMinimum() {
+    while (true) {
+      synchronized (this) {
+        if (closed || idle.size() + borrowed.size() + pending >= Math.min(configuration.getMinSize(), maxSize())) { return; }
+        pending++;
+      }
+      DatamanConnection connection = null;
+      try {
+        connection = openConnection();
+      } catch (SQLException | RuntimeException e) {
+        LOG.warn("The connection for minimal size of pool can't be created", e);
+      }
+      synchronized (this) {
+        pending--;
+        if (connection != null && !closed) {
+          idle.addLast(connection);
+          notifyAll();
+          continue;
+        }
+        notifyAll();
+      }
+      if (connection == null) { return; }
+      closeQuietly(connection);
+      return;
+    }
+  }
+
+  /** One pass of reaper: close idle and too old connections, validate stale connections, report leaked connections
+   * and open connections to minimal size of pool. */
+  void reap() {
+    evictIdle();
+    validateStale();
+    detectLeaks();
+    fillToMinimum();
+  }
+
+  /** Write warning with place where connection was borrowed for connections which are borrowed longer then leak
+   * detection threshold */
+  private synchronized void detectLeaks() {
+    int threshold = configuration.getLeakDetectionThreshold();
+    if (threshold <= 0) { return; }
+    long now = System.currentTimeMillis();
+    borrowed.stream().filter(connection -> !connection.isLeakReported() && now - connection.getLastUsed() >= threshold)
+        .forEach(connection -> {
+          connection.setLeakReported(true);
+          LOG.warn(String.format("The connection %s to database %s is borrowed longer then %s ms, it's probably leaked.",
+              connection.getConnectionId(), dbConfig.getId(), threshold), connection.getBorrowedAt());
+        });
+  }
+
+  /** Close all idle connections and the pool. Borrowed connections are closed when they are returned. */
+  public void close() {
+    ConnectionReaper.getInstance().unregister(this);
+    List<DatamanConnection> remove;
+    synchronized (this) {
+      closed = true;
+      remove = new ArrayList<>(idle);
+      idle.clear();
+      notifyAll();
+    }
+    remove.forEach(this::closeQuietly);
+  }
+}
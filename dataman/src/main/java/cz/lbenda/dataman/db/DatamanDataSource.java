@@ -21,12 +21,9 @@ import java.sql.Driver;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.WeakHashMap;
 import java.util.logging.Logger;
 import javax.sql.DataSource;
@@ -47,10 +44,21 @@ public class DatamanDataSource implements DataSource {
   }
 
   private final DbConfig dbConfig;
+  /** Flag if data source create read only connections, which can go to secondary database */
+  private final boolean readOnly; public boolean isReadOnly() { return readOnly; }
   private final List<DBAppDataSourceExceptionListener> listeners = new ArrayList<>();
 
   public DatamanDataSource(DbConfig dbConfig) {
+    this(dbConfig, false);
+  }
+
+  /** Create data source
+   * @param dbConfig configuration of database
+   * @param readOnly when true then data source create read only connections configured by
+   *                 {@link DbConfig#getReadConnectionConfiguration()} */
+  public DatamanDataSource(DbConfig dbConfig, boolean readOnly) {
     this.dbConfig = dbConfig;
+    this.readOnly = readOnly;
   }
 
   @Override
@@ -108,15 +116,37 @@ public class DatamanDataSource implements DataSource {
   }
 
   private Connection createConnection() throws SQLException, RuntimeException {
-    return createConnection(dbConfig.getJdbcConfiguration().getUsername(),
-        dbConfig.getJdbcConfiguration().getPassword());
+    return createConnection(username(), password());
   }
 
   private static final Map<DbConfig, Driver> drivers = new WeakHashMap<>();
-  private static final Map<DbConfig, DatamanConnection> connections = new WeakHashMap<>();
-  private static final Map<DatamanConnection, Date> lastConnectionUse = new WeakHashMap<>();
+  private static final Map<DbConfig, DatamanConnectionPool> pools = new WeakHashMap<>();
+  private static final Map<DbConfig, DatamanConnectionPool> readPools = new WeakHashMap<>();
+
+  /** Inform if the connections go to secondary database */
+  private boolean isSecondary() { return readOnly && dbConfig.getReadConnectionConfiguration().isSecondary(); }
+  private String url() {
+    return isSecondary() ? dbConfig.getReadConnectionConfiguration().getUrl() : dbConfig.getJdbcConfiguration().getUrl();
+  }
+  private String username() {
+    return isSecondary() && StringUtils.isNotBlank(dbConfig.getReadConnectionConfiguration().getUsername())
+        ? dbConfig.getReadConnectionConfiguration().getUsername() : dbConfig.getJdbcConfiguration().getUsername();
+  }
+  private String password() {
+    return isSecondary() && StringUtils.isNotBlank(dbConfig.getReadConnectionConfiguration().getUsername())
+        ? dbConfig.getReadConnectionConfiguration().getPassword() : dbConfig.getJdbcConfiguration().getPassword();
+  }
+  private int transactionIsolation() {
+    return readOnly ? dbConfig.getReadConnectionConfiguration().getTransactionIsolation() : -1;
+  }
 
   private Driver getDriver(DbConfig sc) throws SQLException {
+    synchronized (drivers) {
+      return loadDriver(sc);
+    }
+  }
+
+  private Driver loadDriver(DbConfig sc) throws SQLException {
     Driver driver = drivers.get(sc);
     if (driver != null) { return driver; }
 
@@ -149,28 +179,30 @@ public class DatamanDataSource implements DataSource {
     }
   }
 
-  private void scheduleUnconnect(DatamanConnection connection) {
-    lastConnectionUse.put(connection, new Date());
-    if (connection.getConnectionTimeout() > 0) {
-      (new Timer()).schedule(new timerTask(), connection.getConnectionTimeout());
+  /** Return pool of connections for db config of this data source */
+  public DatamanConnectionPool getConnectionPool() {
+    Map<DbConfig, DatamanConnectionPool> map = readOnly ? readPools : pools;
+    synchronized (map) {
+      DatamanConnectionPool pool = map.get(dbConfig);
+      if (pool == null || pool.isClosed()) {
+        pool = new DatamanConnectionPool(dbConfig, () -> connect(username(), password()), readOnly, transactionIsolation());
+        map.put(dbConfig, pool);
+      }
+      return pool;
     }
   }
 
-  private Connection createConnection(String username, String password) throws SQLException {
-    DatamanConnection connection = connections.get(dbConfig);
-    if (connection != null && !connection.isClosed()) {
-      scheduleUnconnect(connection);
-      return connection;
-    }
+  /** Create new physical connection to database */
+  private Connection connect(String username, String password) throws SQLException {
     Properties connectionProps = new Properties();
     if (!StringUtils.isEmpty(username)) { connectionProps.put("user", username); }
     if (!StringUtils.isEmpty(password)) { connectionProps.put("password", password); }
     Driver driver = getDriver(dbConfig);
     try {
-      connection = new DatamanConnection(driver.connect(dbConfig.getJdbcConfiguration().getUrl(), connectionProps));
-      connection.setConnectionTimeout(dbConfig.getConnectionTimeout());
-      connections.put(dbConfig, connection);
-      scheduleUnconnect(connection);
+      Connection connection = driver.connect(url(), connectionProps);
+      if (connection == null) {
+        throw new SQLException(String.format("The driver %s doesn't accept URL %s", driver.getClass().getName(), url()));
+      }
       return connection;
     } catch (SQLException e) {
       getLogWriter().print("Filed to create connection");
@@ -180,6 +212,22 @@ public class DatamanDataSource implements DataSource {
     }
   }
 
+  /** Connection with credentials from configuration is borrowed from pool, the connection for other user is created
+   * and closed directly */
+  private Connection createConnection(String username, String password) throws SQLException {
+    if (StringUtils.equals(username, username()) && StringUtils.equals(password, password())) {
+      return getConnectionPool().borrow();
+    }
+    DatamanConnection connection = new DatamanConnection(connect(username, password));
+    try {
+      connection.configureDefaults(readOnly, transactionIsolation());
+    } catch (SQLException e) {
+      connection.realyClose();
+      throw e;
+    }
+    return connection;
+  }
+
   public void onException(Exception e) {
     for (DBAppDataSourceExceptionListener l : listeners) {
       l.onDBAppDataSourceException(e);
@@ -197,34 +245,18 @@ public class DatamanDataSource implements DataSource {
 
   /** Close all connection in pool */
   public void closeAllConnections() throws SQLException {
-    DatamanConnection connection = connections.get(dbConfig);
-    connection.realyClose();
-  }
-
-  private class timerTask extends TimerTask {
-    @Override
-    public void run() {
-      Date now = new Date();
-      List<DatamanConnection> remove = new ArrayList<>();
-      synchronized (lastConnectionUse) {
-        for (Map.Entry<DatamanConnection, Date> entry : lastConnectionUse.entrySet()) {
-          try {
-            if (entry.getKey().getConnectionTimeout() > 0) {
-              if ((now.getTime() - entry.getValue().getTime() >= entry.getKey().getConnectionTimeout())) {
-                if (!entry.getKey().isClosed()) {
-                  entry.getKey().realyClose();
-                }
-              }
-            }
-            if (entry.getKey().isClosed()) {
-              remove.add(entry.getKey());
-            }
-          } catch (SQLException e) {
-            LOG.error("Failed when connection is closed", e);
-          }
-        }
-        remove.forEach(lastConnectionUse::remove);
+    Map<DbConfig, DatamanConnectionPool> map = readOnly ? readPools : pools;
+    DatamanConnectionPool pool;
+    synchronized (map) {
+      pool = map.remove(dbConfig);
+    }
+    if (pool != null) { pool.close(); }
+    if (!readOnly) {
+      Driver driver;
+      synchronized (drivers) {
+        driver = drivers.remove(dbConfig);
       }
+      if (driver != null) { ClassLoaderHelper.releaseClassLoader(driver.getClass().getClassLoader()); }
     }
   }
 }
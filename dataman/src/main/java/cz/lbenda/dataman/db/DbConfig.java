@@ -51,6 +51,18 @@ public class DbConfig {
     return jdbcConfiguration;
   }
   public final void setJdbcConfiguration(final JDBCConfiguration jdbcConfiguration) { this.jdbcConfiguration = jdbcConfiguration; }
+  /** Configuration of pool of connections */
+  private ConnectionPoolConfiguration connectionPoolConfiguration; public final ConnectionPoolConfiguration getConnectionPoolConfiguration() {
+    if (connectionPoolConfiguration == null) { this.connectionPoolConfiguration = new ConnectionPoolConfiguration(); }
+    return connectionPoolConfiguration;
+  }
+  public final void setConnectionPoolConfiguration(final ConnectionPoolConfiguration connectionPoolConfiguration) { this.connectionPoolConfiguration = connectionPoolConfiguration; }
+  /** Configuration of read only connections */
+  private ReadConnectionConfiguration readConnectionConfiguration; public final ReadConnectionConfiguration getReadConnectionConfiguration() {
+    if (readConnectionConfiguration == null) { this.readConnectionConfiguration = new ReadConnectionConfiguration(); }
+    return readConnectionConfiguration;
+  }
+  public final void setReadConnectionConfiguration(final ReadConnectionConfiguration readConnectionConfiguration) { this.readConnectionConfiguration = readConnectionConfiguration; }
   /** List with path to file with libraries for JDBC driver load */
   private final List<String> librariesPaths = new ArrayList<>(); public final List<String> getLibrariesPaths() { return librariesPaths; }
   /** Showed schemas */
@@ -79,6 +91,24 @@ public class DbConfig {
   public final @Nonnull
   DbStructureFactory getReader() { return reader; }
   final void setReader(@Nonnull DbStructureFactory reader) { this.reader = reader; }
+  /** Default count of rows which are read from table at once */
+  public static final int DEFAULT_PAGE_SIZE = 1000;
+  /** Count of rows which are read from table at once, when is lower then one, then whole table is read */
+  private int pageSize = DEFAULT_PAGE_SIZE; public int getPageSize() { return pageSize; } public void setPageSize(int pageSize) { this.pageSize = pageSize; }
+  /** Count of rows which JDBC driver fetch at once, when is lower then one, then default of dialect is used */
+  private int fetchSize = -1; public void setFetchSize(int fetchSize) { this.fetchSize = fetchSize; }
+  /** Count of rows which JDBC driver fetch at once */
+  public int getFetchSize() { return fetchSize > 0 ? fetchSize : getDialect().fetchSize(); }
+  /** Default count of rows of SQL query result which are hold in memory */
+  public static final int DEFAULT_SPILL_THRESHOLD = 1000000;
+  /** Count of rows of SQL query result which are hold in memory, the next rows are written to temporary file. When is
+   * lower then one, then all rows are hold in memory. */
+  private int spillThreshold = DEFAULT_SPILL_THRESHOLD; public int getSpillThreshold() { return spillThreshold; } public void setSpillThreshold(int spillThreshold) { this.spillThreshold = spillThreshold; }
+  /** Default count of changed rows which are sent to database in one batch */
+  public static final int DEFAULT_BATCH_SIZE = 500;
+  /** Count of changed rows which are sent to database in one batch, when is lower then two, then every row is sent
+   * alone */
+  private int batchSize = DEFAULT_BATCH_SIZE; public int getBatchSize() { return batchSize; } public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
   /** Timeout when unused connection will be closed */
   private int connectionTimeout;
   /** Timeout when unused connection will be closed */
@@ -101,6 +131,16 @@ public class DbConfig {
     if (jdbcConfiguration != null) {
       result.setJdbc(jdbcConfiguration.storeToJdbcType());
     }
+    if (connectionPoolConfiguration != null) {
+      result.setConnectionPool(connectionPoolConfiguration.storeToConnectionPoolType());
+    }
+    if (readConnectionConfiguration != null) {
+      result.setReadConnection(readConnectionConfiguration.storeToReadConnectionType());
+    }
+    if (pageSize != DEFAULT_PAGE_SIZE) { result.setPageSize(pageSize); }
+    if (fetchSize > 0) { result.setFetchSize(fetchSize); }
+    if (spillThreshold != DEFAULT_SPILL_THRESHOLD) { result.setSpillThreshold(spillThreshold); }
+    if (batchSize != DEFAULT_BATCH_SIZE) { result.setBatchSize(batchSize); }
     result.setLibraries(of.createLibrariesType());
     result.getLibraries().getLibrary().addAll(getLibrariesPaths());
     result.setExtendedConfig(this.extConfFactory.create());
@@ -124,6 +164,26 @@ public class DbConfig {
       this.connectionTimeout = session.getConnectionTimeout();
     } else { connectionTimeout = -1; }
     loadJdbcConfiguration(session.getJdbc());
+    if (session.getConnectionPool() != null) {
+      connectionPoolConfiguration = new ConnectionPoolConfiguration();
+      connectionPoolConfiguration.load(session.getConnectionPool());
+    } else { connectionPoolConfiguration = null; }
+    if (session.getReadConnection() != null) {
+      readConnectionConfiguration = new ReadConnectionConfiguration();
+      readConnectionConfiguration.load(session.getReadConnection());
+    } else { readConnectionConfiguration = null; }
+    if (session.getPageSize() != null) {
+      this.pageSize = session.getPageSize();
+    } else { pageSize = DEFAULT_PAGE_SIZE; }
+    if (session.getFetchSize() != null) {
+      this.fetchSize = session.getFetchSize();
+    } else { fetchSize = -1; }
+    if (session.getSpillThreshold() != null) {
+      this.spillThreshold = session.getSpillThreshold();
+    } else { spillThreshold = DEFAULT_SPILL_THRESHOLD; }
+    if (session.getBatchSize() != null) {
+      this.batchSize = session.getBatchSize();
+    } else { batchSize = DEFAULT_BATCH_SIZE; }
     this.librariesPaths.clear();
     if (session.getLibraries() != null) {
       session.getLibraries().getLibrary().forEach(this.librariesPaths::add);
@@ -155,9 +215,7 @@ public class DbConfig {
   @SuppressWarnings("unused")
   public void close() {
     try {
-      if (connectionProvider.getConnection() != null && !connectionProvider.getConnection().isClosed()) {
-        ((DatamanConnection) connectionProvider.getConnection()).realyClose();
-      }
+      connectionProvider.closeAllConnections();
     } catch (SQLException e) {
       LOG.warn("The connection can't be closed.");
     }
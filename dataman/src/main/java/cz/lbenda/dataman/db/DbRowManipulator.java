@@ -18,6 +18,7 @@ package cz.lbenda.dataman.db;
 import cz.lbenda.common.Constants;
 import cz.lbenda.dataman.db.audit.Auditor;
 import cz.lbenda.dataman.db.audit.AuditorNone;
+import cz.lbenda.dataman.db.audit.SqlLogToFileAuditor;
 import cz.lbenda.dataman.db.audit.SqlLogToLogAuditor;
 import cz.lbenda.dataman.db.audit.SqlLogToTableAuditor;
 import cz.lbenda.dataman.db.dialect.ColumnType;
@@ -31,8 +32,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.9.15.
@@ -56,34 +56,76 @@ public class DbRowManipulator {
 
   /** Save all changes inside table which is given as paramte */
   public void saveChanges(@Nonnull TableDesc td) {
-    List<RowDesc> deleteRows = td.getRows().stream().filter(row -> RowDesc.RowDescState.REMOVED.equals(row.getState())).collect(Collectors.toList());
-    List<RowDesc> updateRows = td.getRows().stream().filter(row -> RowDesc.RowDescState.CHANGED.equals(row.getState())).collect(Collectors.toList());
-    List<RowDesc> insertRows = td.getRows().stream().filter(row -> RowDesc.RowDescState.NEW.equals(row.getState())).collect(Collectors.toList());
-    if (!deleteRows.isEmpty() || !updateRows.isEmpty() || !insertRows.isEmpty()) {
-      try (Connection connection = getConnectionProvider().getConnection()) {
-        boolean autocommit = connection.getAutoCommit();
-        connection.setAutoCommit(false);
-        try {
-          insertRows(connection, td, insertRows);
-          updateRows(connection, td, updateRows);
-          deleteRows(connection, td, deleteRows);
-          connection.commit();
-          td.getRows().removeAll(deleteRows);
-          insertRows.forEach(RowDesc::savedChanges);
-          updateRows.forEach(RowDesc::savedChanges);
-        } catch (SQLException e) {
-          connection.rollback();
-          LOG.error("Problem with save inserted/update/delete row", e);
-          ExceptionMessageFrmController.showException(e);
+    saveChanges(Collections.singletonList(td));
+  }
+
+  /** Save all changes inside given tables in one transaction. The new rows are inserted to master tables of foreign
+   * keys before the slave tables, the removed rows are deleted from slave tables before the master tables. */
+  public void saveChanges(@Nonnull Collection<TableDesc> tables) {
+    List<TableDesc> changed = masterFirstOrder(tables.stream().filter(td -> td.getChangeSet().size() > 0)
+        .collect(Collectors.toList()));
+    if (changed.isEmpty()) { return; }
+    Map<TableDesc, List<RowDesc>> deleteRows = new IdentityHashMap<>();
+    Map<TableDesc, List<RowDesc>> updateRows = new IdentityHashMap<>();
+    Map<TableDesc, List<RowDesc>> insertRows = new IdentityHashMap<>();
+    for (TableDesc td : changed) {
+      deleteRows.put(td, td.getChangeSet().getRemoved());
+      updateRows.put(td, td.getChangeSet().getUpdated());
+      insertRows.put(td, td.getChangeSet().getInserted());
+    }
+    try (Connection connection = getConnectionProvider().getConnection()) {
+      boolean autocommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try {
+        for (TableDesc td : changed) { insertRows(connection, td, insertRows.get(td)); }
+        for (TableDesc td : changed) { updateRows(connection, td, updateRows.get(td)); }
+        for (int i = changed.size() - 1; i >= 0; i--) {
+          deleteRows(connection, changed.get(i), deleteRows.get(changed.get(i)));
+        }
+        connection.commit();
+        for (TableDesc td : changed) {
+          SQLQueryRows queryRows = td.getQueryRow();
+          queryRows.beginChange();
+          try {
+            Set<RowDesc> deleted = Collections.newSetFromMap(new IdentityHashMap<>());
+            deleted.addAll(deleteRows.get(td));
+            td.getRows().removeAll(deleted);
+            insertRows.get(td).forEach(queryRows::savedChanges);
+            updateRows.get(td).forEach(queryRows::savedChanges);
+          } finally {
+            queryRows.commitChange();
+          }
         }
-        connection.setAutoCommit(autocommit);
       } catch (SQLException e) {
-        LOG.error("Problem with getting and configure connection", e);
+        connection.rollback();
+        LOG.error("Problem with save inserted/update/delete row", e);
         ExceptionMessageFrmController.showException(e);
       }
+      connection.setAutoCommit(autocommit);
+    } catch (SQLException e) {
+      LOG.error("Problem with getting and configure connection", e);
+      ExceptionMessageFrmController.showException(e);
     }
   }
 
+  /** Order tables so every master table of foreign key is before its slave tables. The tables which are in cycle of
+   * foreign keys stay in given order.
+   * @param tables tables for ordering
+   * @return new list with ordered tables */
+  static List<TableDesc> masterFirstOrder(@Nonnull Collection<TableDesc> tables) {
+    List<TableDesc> remaining = new ArrayList<>(tables);
+    List<TableDesc> result = new ArrayList<>(remaining.size());
+    while (!remaining.isEmpty()) {
+      TableDesc next = remaining.stream().filter(td -> td.getForeignKeys().stream()
+          .noneMatch(fk -> fk.getSlaveTable() == td && fk.getMasterTable() != td
+              && remaining.contains(fk.getMasterTable())))
+          .findFirst().orElse(remaining.get(0));
+      remaining.remove(next);
+      result.add(next);
+    }
+    return result;
+  }
+
   private static void writeColumnsInResultSet(ResultSetMetaData rsmd) throws SQLException {
     if (Constants.IS_IN_DEVELOP_MODE) {
       for (int i = 1; i <= rsmd.getColumnCount(); i++) {
@@ -92,19 +134,82 @@ public class DbRowManipulator {
     }
   }
 
+  /** Object which set values of row to prepared statement */
+  @FunctionalInterface
+  private interface RowBinder {
+    void bind(RowDesc row, PreparedStatement ps) throws SQLException;
+  }
+
+  /** Object which is informed about rows of executed batch */
+  @FunctionalInterface
+  private interface ChunkListener {
+    void executed(List<RowDesc> rows) throws SQLException;
+  }
+
+  /** Count of rows which are sent to database in one batch */
+  private static int batchSize(TableDesc td) {
+    return td.getDbConfig() == null ? DbConfig.DEFAULT_BATCH_SIZE : td.getDbConfig().getBatchSize();
+  }
+
+  /** Split rows to runs of consecutive rows with same changed columns, so rows in one run can be written by same SQL
+   * command. Only the consecutive rows are joined, so the rows are written in order in which they are given, e.g. the
+   * parent row is inserted before child row of self referencing table. */
+  private static List<Map.Entry<List<ColumnDesc>, List<RowDesc>>> groupByChangedColumns(TableDesc td, List<RowDesc> rows) {
+    List<Map.Entry<List<ColumnDesc>, List<RowDesc>>> result = new ArrayList<>();
+    Map.Entry<List<ColumnDesc>, List<RowDesc>> last = null;
+    for (RowDesc row : rows) {
+      List<ColumnDesc> changedColumns = td.getColumns().stream().filter(col -> !col.isGenerated()
+          && row.isColumnChanged(col)).collect(Collectors.toList());
+      if (last == null || !last.getKey().equals(changedColumns)) {
+        last = new AbstractMap.SimpleImmutableEntry<>(changedColumns, new ArrayList<>());
+        result.add(last);
+      }
+      last.getValue().add(row);
+    }
+    return result;
+  }
+
+  /** Execute prepared statement for every row. The rows are sent in batches of given size, the batch with only one row
+   * is executed alone.
+   * @param ps prepared statement
+   * @param rows rows which values are bind to statement
+   * @param chunkSize max count of rows in one batch, when is lower then two, then every row is executed alone
+   * @param binder object which set values of row to statement
+   * @param afterChunk called after every executed batch with rows of batch, can be null */
+  private static void executeInBatches(PreparedStatement ps, List<RowDesc> rows, int chunkSize, RowBinder binder,
+                                       ChunkListener afterChunk) throws SQLException {
+    int size = Math.max(1, chunkSize);
+    for (int from = 0; from < rows.size(); from += size) {
+      List<RowDesc> chunk = rows.subList(from, Math.min(rows.size(), from + size));
+      if (chunk.size() == 1) {
+        binder.bind(chunk.get(0), ps);
+        ps.execute();
+      } else {
+        for (RowDesc row : chunk) {
+          binder.bind(row, ps);
+          ps.addBatch();
+        }
+        ps.executeBatch();
+      }
+      if (afterChunk != null) { afterChunk.executed(chunk); }
+    }
+  }
+
   /** Insert given rows to database */
   private void insertRows(Connection connection, TableDesc td, List<RowDesc> rows) throws SQLException {
     final List<ColumnDesc> pks = td.getPKColumns().stream().filter(col -> col.isGenerated() || col.isAutoincrement()).collect(Collectors.toList());
-    for (RowDesc row : rows) {
+    // Not every driver return generated keys of all rows of batch, so such rows are inserted one by one
+    final int chunkSize = pks.isEmpty() || getConnectionProvider().getDialect().isBatchGeneratedKeysSupported()
+        ? batchSize(td) : 1;
+    for (Map.Entry<List<ColumnDesc>, List<RowDesc>> entry : groupByChangedColumns(td, rows)) {
+      final List<ColumnDesc> insertedColumns = entry.getKey();
       StringBuilder names = new StringBuilder();
       StringBuilder values = new StringBuilder();
-      List<ColumnDesc> insertedColumns = new ArrayList<>();
-      td.getColumns().stream().filter(col -> !col.isGenerated() && row.isColumnChanged(col)).forEach(col -> {
-        if (!insertedColumns.isEmpty()) {
+      insertedColumns.forEach(col -> {
+        if (names.length() > 0) {
           names.append(", ");
           values.append(", ");
         }
-        insertedColumns.add(col);
         names.append('"').append(col.getName()).append("\"");
         values.append('?');
       });
@@ -114,31 +219,47 @@ public class DbRowManipulator {
 
       try (PreparedStatement ps = AuditPreparedStatement.prepareStatement(getConnectionProvider().getUser(),
           auditorForAudit(td.getAudit()), connection, sql, Statement.RETURN_GENERATED_KEYS)) {
-        int i = 1;
-        for (ColumnDesc col : insertedColumns) {
-          row.putValueToPS(col, ps, i);
-          i++;
-        }
-        ps.execute();
-        if (!pks.isEmpty()) {
-          ResultSet rs = ps.getGeneratedKeys();
-          ResultSetMetaData rsmd = rs.getMetaData();
-          writeColumnsInResultSet(rsmd);
-          while (rs.next()) {
-            for (int j = 1; j <= rsmd.getColumnCount(); j++) {
-              ColumnDesc col = td.getColumn(rsmd.getColumnName(j));
-              if (col == null) {
-                if (getConnectionProvider().getDialect().nameOfGeneratedIdentityColumn().contains(rsmd.getColumnName(j))) {
-                  col = td.getPKColumns().get(0);
-                } else {
-                  throw new IllegalStateException(String.format("The column with name %s not exist", rsmd.getColumnName(j)));
-                }
-              }
-              row.setInitialColumnValue(col, rs.getObject(j)); // Set value of primary key, so this data is LOADED not changed
-            }
+        executeInBatches(ps, entry.getValue(), chunkSize, (row, statement) -> {
+          int i = 1;
+          for (ColumnDesc col : insertedColumns) {
+            row.putValueToPS(col, statement, i);
+            i++;
+          }
+        }, pks.isEmpty() ? null : chunk -> readGeneratedKeys(ps, td, chunk));
+        LOG.debug(String.format("%s new rows was inserted", entry.getValue().size()));
+      }
+    }
+  }
+
+  /** Read generated keys of inserted rows and set them as initial values of rows. The keys are assigned to rows in
+   * order in which the rows was inserted. */
+  private void readGeneratedKeys(PreparedStatement ps, TableDesc td, List<RowDesc> rows) throws SQLException {
+    try (ResultSet rs = ps.getGeneratedKeys()) {
+      ResultSetMetaData rsmd = rs.getMetaData();
+      writeColumnsInResultSet(rsmd);
+      ColumnDesc[] columns = new ColumnDesc[rsmd.getColumnCount()];
+      for (int j = 1; j <= rsmd.getColumnCount(); j++) {
+        ColumnDesc col = td.getColumn(rsmd.getColumnName(j));
+        if (col == null) {
+          if (getConnectionProvider().getDialect().nameOfGeneratedIdentityColumn().contains(rsmd.getColumnName(j))) {
+            col = td.getPKColumns().get(0);
+          } else {
+            throw new IllegalStateException(String.format("The column with name %s not exist", rsmd.getColumnName(j)));
           }
         }
-        LOG.debug("New column was inserted");
+        columns[j - 1] = col;
+      }
+      int index = 0;
+      while (rs.next()) {
+        // When only one row was inserted, then the last key is used
+        RowDesc row = rows.get(Math.min(index, rows.size() - 1));
+        for (int j = 1; j <= columns.length; j++) {
+          row.setInitialColumnValue(columns[j - 1], rs.getObject(j)); // Set value of primary key, so this data is LOADED not changed
+        }
+        index++;
+      }
+      if (rows.size() > 1 && index != rows.size()) {
+        throw new SQLException(String.format("Driver return %s generated keys for %s inserted rows", index, rows.size()));
       }
     }
   }
@@ -166,11 +287,11 @@ public class DbRowManipulator {
       if (where.length() != 0) { where.append(" and "); }
       where.append('"').append(col.getName()).append("\"=?");
     });
-    for (RowDesc row : rows) {
-      final StringBuilder set = new StringBuilder();
-      final List<ColumnDesc> changedColumns = td.getColumns().stream().filter(col -> !col.isGenerated()
-          && row.isColumnChanged(col)).collect(Collectors.toList());
+    for (Map.Entry<List<ColumnDesc>, List<RowDesc>> entry : groupByChangedColumns(td, rows)) {
+      final List<ColumnDesc> changedColumns = entry.getKey();
+      if (changedColumns.isEmpty()) { continue; }
 
+      final StringBuilder set = new StringBuilder();
       changedColumns.forEach(col -> {
         if (set.length() > 0) { set.append(", "); }
         set.append('"').append(col.getName()).append("\"=?");
@@ -178,18 +299,19 @@ public class DbRowManipulator {
       String sql = String.format("update \"%s\".\"%s\" set %s where %s", td.getSchema(), td.getName(), set, where);
       LOG.trace(sql);
 
-      try (PreparedStatement ps = AuditPreparedStatement.prepareCall(getConnectionProvider().getUser(),
+      try (PreparedStatement ps = AuditPreparedStatement.prepareStatement(getConnectionProvider().getUser(),
           auditorForAudit(td.getAudit()), connection, sql)) {
-        int i = 1;
-        for (ColumnDesc columnDesc : changedColumns) {
-          row.putValueToPS(columnDesc, ps, i);
-          i++;
-        }
-        for (ColumnDesc col : pks) {
-          row.putValueToPS(col, ps, i);
-          i++;
-        }
-        ps.execute();
+        executeInBatches(ps, entry.getValue(), batchSize(td), (row, statement) -> {
+          int i = 1;
+          for (ColumnDesc columnDesc : changedColumns) {
+            row.putValueToPS(columnDesc, statement, i);
+            i++;
+          }
+          for (ColumnDesc col : pks) {
+            row.putValueToPS(col, statement, i);
+            i++;
+          }
+        }, null);
       }
     }
   }
@@ -209,16 +331,15 @@ public class DbRowManipulator {
     });
     String sql = String.format("DELETE FROM \"%s\".\"%s\" WHERE %s", td.getSchema(), td.getName(), where);
     LOG.trace(sql);
-    for (RowDesc row : rows) {
-      try (PreparedStatement ps = AuditPreparedStatement.prepareCall(getConnectionProvider().getUser(),
-          auditorForAudit(td.getAudit()), connection, sql)) {
+    try (PreparedStatement ps = AuditPreparedStatement.prepareStatement(getConnectionProvider().getUser(),
+        auditorForAudit(td.getAudit()), connection, sql)) {
+      executeInBatches(ps, rows, batchSize(td), (row, statement) -> {
         int i = 1;
         for (ColumnDesc col : pks) {
-          row.putInitialValueToPS(col, ps, i);
+          row.putInitialValueToPS(col, statement, i);
           i++;
         }
-        ps.execute();
-      }
+      }, null);
     }
   }
 
@@ -230,6 +351,7 @@ public class DbRowManipulator {
       case NONE : return AuditorNone.getInstance();
       case SQL_LOG_TO_LOG: return SqlLogToLogAuditor.getInstance();
       case SQL_LOG_TO_TABLE : return SqlLogToTableAuditor.getInstance(getConnectionProvider(), auditType);
+      case SQL_LOG_TO_FILE : return SqlLogToFileAuditor.getInstance(auditType);
       default : return AuditorNone.getInstance();
     }
   }
@@ -70,33 +70,167 @@ public class DbStructureFactory implements DatamanDataSource.DBAppDataSourceExce
     this.connectionProvider = dbConfig.getConnectionProvider();
   }
 
-  /** Method read data from table to List, where every record is create as array of objects
+  /** Method read data from table to List, where every record is create as array of objects. The rows are filtered
+   * and ordered by {@link TableDesc#getQuery()}, when table have primary key, the rows are ordered by it.
    * @param td table which is read
    * @param from first row where to start with read. If -1 is set, then return whole table
-   * @param to last row where stop read
+   * @param to row where stop read (exclusive)
    * @return list of object from db */
   public final List<RowDesc> readTableData(TableDesc td, int from, int to) {
-    try (Connection conn = connectionProvider.getConnection()) {
-      try (Statement st = conn.createStatement()) {
-        String sql = String.format("SELECT * FROM \"%s\".\"%s\"", td.getSchema(), td.getName());
-        ResultSet rs = st.executeQuery(sql);
-        final List<RowDesc> result;
-        if (from > -1) { result = new ArrayList<>(to - from); }
-        else { result = new ArrayList<>(); }
+    String sql = selectTableSQL(td, false);
+    if (from > -1) { sql = dbConfig.getDialect().limitSQL(sql, from, to - from); }
+    return readTableRows(td, sql, null, from > -1 ? to - from : -1);
+  }
+
+  /** Read page of rows which follow after given row in order of primary key (keyset pagination). Against
+   * {@link #readTableData(TableDesc, int, int)} the database doesn't need to skip all previous rows.
+   * @param td table which is read, the table must have primary key
+   * @param lastRow last row of previous page, or null when the first page is read
+   * @param count maximal count of read rows
+   * @return list of object from db */
+  public final List<RowDesc> readTableDataAfter(TableDesc td, RowDesc lastRow, int count) {
+    List<ColumnDesc> pks = td.getPKColumns();
+    if (pks.isEmpty()) { throw new IllegalArgumentException("The table " + td.getName() + " hasn't primary key"); }
+    String sql = dbConfig.getDialect().limitSQL(selectTableSQL(td, lastRow != null), 0, count);
+    return readTableRows(td, sql, lastRow == null ? null : (ps, position) -> {
+      for (int i = 0; i < pks.size(); i++) {
+        for (int j = 0; j <= i; j++) {
+          lastRow.putInitialValueToPS(pks.get(j), ps, position++);
+        }
+      }
+    }, count);
+  }
+
+  /** Create select of all rows in table which match the query of table, ordered by query and primary key
+   * @param td table which is read
+   * @param keyset when true then the rows which follow after row with primary key values given as parameters are
+   *               selected */
+  private String selectTableSQL(TableDesc td, boolean keyset) {
+    StringBuilder sql = new StringBuilder(String.format("SELECT * FROM \"%s\".\"%s\"", td.getSchema(), td.getName()));
+    TableQuery query = td.getQuery();
+    String where = query.where();
+    if (!where.isEmpty()) { sql.append(" WHERE ").append(where); }
+    List<ColumnDesc> pks = td.getPKColumns();
+    if (pks.isEmpty()) {
+      if (!query.getOrders().isEmpty()) { sql.append(" ORDER BY ").append(query.orderBy()); }
+      return sql.toString();
+    }
+    if (keyset) {
+      sql.append(where.isEmpty() ? " WHERE (" : " AND (");
+      for (int i = 0; i < pks.size(); i++) {
+        if (i > 0) { sql.append(" OR "); }
+        sql.append("(");
+        for (int j = 0; j < i; j++) { sql.append(String.format("\"%s\" = ? AND ", pks.get(j).getName())); }
+        sql.append(String.format("\"%s\" > ?)", pks.get(i).getName()));
+      }
+      sql.append(")");
+    }
+    sql.append(" ORDER BY ");
+    if (!query.getOrders().isEmpty()) { sql.append(query.orderBy()).append(", "); }
+    for (int i = 0; i < pks.size(); i++) {
+      if (i > 0) { sql.append(", "); }
+      sql.append(String.format("\"%s\"", pks.get(i).getName()));
+    }
+    return sql.toString();
+  }
+
+  /** Read whole table and deliver rows by given loader. The rows are added to list of loader in chunks during
+   * reading, so the first rows are showed before the whole table is read.
+   * @param td table which is read
+   * @param loader loader which deliver rows
+   * @return count of read rows */
+  public final long streamTableData(TableDesc td, StreamingRowLoader loader) {
+    loader.getDecoder().setReadOnly(!td.isEditable());
+    return executeTableSelect(td, selectTableSQL(td, false), null, -1, loader::load);
+  }
+
+  /** Read distinct values of column with count of rows which contains them. The rows are filtered by conditions of
+   * query of table on other columns. The most frequent values are first.
+   * @param td table which is read
+   * @param column column which values are read
+   * @param limit maximal count of read values, when lower then one, then all values are read
+   * @return map with value as key and count of rows as value */
+  public final Map<Object, Long> readDistinctValues(TableDesc td, ColumnDesc column, int limit) {
+    TableQuery query = new TableQuery();
+    td.getQuery().getConditions().stream().filter(condition -> !condition.getColumn().equals(column))
+        .forEach(query.getConditions()::add);
+    String where = query.where();
+    String sql = String.format("SELECT \"%s\", COUNT(*) FROM \"%s\".\"%s\"%s GROUP BY \"%s\" ORDER BY COUNT(*) DESC",
+        column.getName(), td.getSchema(), td.getName(), where.isEmpty() ? "" : " WHERE " + where, column.getName());
+    if (limit > 0) { sql = dbConfig.getDialect().limitSQL(sql, 0, limit); }
+    LOG.debug(sql);
+    try (Connection conn = connectionProvider.getReadConnection();
+         PreparedStatement ps = conn.prepareStatement(sql)) {
+      query.setParameters(ps, 1);
+      try (ResultSet rs = ps.executeQuery()) {
+        Map<Object, Long> result = new LinkedHashMap<>();
         while (rs.next()) {
-          RowDesc row = RowDesc.createNewRow(td.getQueryRow().getMetaData(), RowDesc.RowDescState.LOADED);
+          result.put(RowDesc.initialValue(column, RowDesc.readColumnValue(column, rs, 1)), rs.getLong(2));
+        }
+        return result;
+      }
+    } catch (SQLException e) {
+      LOG.error(String.format("Problem with read distinct values of column: %s.%s.%s, sql: %s", td.getSchema(),
+          td.getName(), column.getName(), sql), e);
+      throw new RuntimeException(String.format("Problem with read distinct values of column: %s.%s.%s, sql: %s",
+          td.getSchema(), td.getName(), column.getName(), sql), e);
+    }
+  }
+
+  /** Parameters which are set to prepared statement before select is executed, after parameters of table query */
+  @FunctionalInterface
+  private interface ParametersSetter {
+    void set(PreparedStatement ps, int position) throws SQLException;
+  }
+
+  /** Reader of rows from result set */
+  @FunctionalInterface
+  private interface ResultSetReader<T> {
+    T read(ResultSet rs) throws SQLException;
+  }
+
+  private List<RowDesc> readTableRows(TableDesc td, String sql, ParametersSetter parameters, int count) {
+    return executeTableSelect(td, sql, parameters, count, rs -> {
+      final List<RowDesc> result = count > 0 ? new ArrayList<>(count) : new ArrayList<>();
+      final SQLQueryMetaData metaData = td.getQueryRow().getMetaData();
+      final ColumnCodec[] codecs = ColumnCodec.forResultSet(td.getColumns(), rs.getMetaData());
+      while (rs.next()) {
+        if (!td.isEditable()) {
+          Object[] values = new Object[metaData.columnCount()];
           for (ColumnDesc columnDesc : td.getColumns()) {
-            row.loadInitialColumnValue(columnDesc, rs);
+            int i = columnDesc.getPosition() - 1;
+            values[i] = codecs[i].read(rs, i + 1);
           }
-          result.add(row);
+          result.add(ReadOnlyRowDesc.create(metaData, values));
+          continue;
         }
-        return result;
+        RowDesc row = RowDesc.createNewRow(td.getQueryRow().getMetaData(), RowDesc.RowDescState.LOADED);
+        for (ColumnDesc columnDesc : td.getColumns()) {
+          int i = columnDesc.getPosition() - 1;
+          row.setInitialColumnValue(columnDesc, codecs[i].read(rs, i + 1));
+        }
+        result.add(row);
+      }
+      return result;
+    });
+  }
+
+  private <T> T executeTableSelect(TableDesc td, String sql, ParametersSetter parameters, int count,
+                                   ResultSetReader<T> reader) {
+    LOG.debug(sql);
+    try (Connection conn = connectionProvider.getReadConnection();
+         PreparedStatement ps = conn.prepareStatement(sql)) {
+      int position = td.getQuery().setParameters(ps, 1);
+      if (parameters != null) { parameters.set(ps, position); }
+      int fetchSize = dbConfig.getFetchSize();
+      ps.setFetchSize(count > 0 && count < fetchSize ? count : fetchSize);
+      try (ResultSet rs = ps.executeQuery()) {
+        return reader.read(rs);
       }
     } catch (SQLException e) {
-      LOG.error(String.format("Problem with read whole table data: %s.%s, from: %s, to: %s", td.getSchema(),
-          td.getName(), from, to), e);
-      throw new RuntimeException(String.format("Problem with read whole table data: %s.%s, from: %s, to: %s",
-          td.getSchema(), td.getName(), from, to), e);
+      LOG.error(String.format("Problem with read table data: %s.%s, sql: %s", td.getSchema(), td.getName(), sql), e);
+      throw new RuntimeException(String.format("Problem with read table data: %s.%s, sql: %s",
+          td.getSchema(), td.getName(), sql), e);
     }
   }
 
@@ -128,8 +262,8 @@ public class DbStructureFactory implements DatamanDataSource.DBAppDataSourceExce
     String sql = String.format("SELECT * FROM \"%s\".\"%s\" WHERE \"%s\"=?",
             tbSchema.getName(), tbName, tbColumn);
     LOG.debug(sql);
-    try (Connection conn = connectionProvider.getConnection()) {
-      try (PreparedStatement ps = conn.prepareCall(sql)) {
+    try (Connection conn = connectionProvider.getReadConnection()) {
+      try (PreparedStatement ps = conn.prepareStatement(sql)) {
         ps.setObject(1, fkValue);
         try (ResultSet rs =  ps.executeQuery()) {
           List<TableRow> result = new ArrayList<>();
@@ -271,8 +405,8 @@ public class DbStructureFactory implements DatamanDataSource.DBAppDataSourceExce
   public final List<Object[]> getSQLRows(String sql, String... columnNames) throws SQLException {
     LOG.trace("load sql rows for SQL: " + sql);
     List<Object[]> result = new ArrayList<>();
-    try (Statement stm = connectionProvider.getConnection().createStatement()) {
-      try (ResultSet rs = stm.executeQuery(sql)) {
+    try (Connection conn = connectionProvider.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+      try (ResultSet rs = ps.executeQuery()) {
         while (rs.next()) {
           Object[] row = new Object[columnNames.length];
           result.add(row);
@@ -291,8 +425,8 @@ public class DbStructureFactory implements DatamanDataSource.DBAppDataSourceExce
   public final List<Object[]> getSQLRows(String sql, int... columnPoz) throws SQLException {
     LOG.trace("load sql rows for SQL: " + sql);
     List<Object[]> result = new ArrayList<>();
-    try (Statement stm = connectionProvider.getConnection().createStatement()) {
-      try (ResultSet rs = stm.executeQuery(sql)) {
+    try (Connection conn = connectionProvider.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+      try (ResultSet rs = ps.executeQuery()) {
         while (rs.next()) {
           Object[] row = new Object[columnPoz.length];
           result.add(row);
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import cz.lbenda.common.ClassLoaderHelper;
+import cz.lbenda.common.ImplementationIndex;
+import cz.lbenda.rcp.config.ConfigurationRW;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.sql.Driver;
+import java.util.List;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 26.10.15.
+ * Registry of JDBC drivers in libraries. Found drivers are stored in index in configuration directory, so every
+ * library is searched only once. */
+public class DriverRegistry {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DriverRegistry.class);
+  private static final String INDEX_FILE_NAME = "driverIndex.properties";
+
+  private static DriverRegistry instance;
+  public static synchronized DriverRegistry getInstance() {
+    if (instance == null) { instance = new DriverRegistry(); }
+    return instance;
+  }
+
+  private final ImplementationIndex index;
+
+  private DriverRegistry() {
+    File file = null;
+    try {
+      file = new File(ConfigurationRW.getInstance().configPath(INDEX_FILE_NAME));
+    } catch (IllegalStateException e) {
+      LOG.debug("The configuration directory isn't defined, the index of drivers isn't persisted.");
+    }
+    index = new ImplementationIndex(file);
+  }
+
+  /** Return names of JDBC driver classes which are in given libraries */
+  public List<String> driverClasses(@Nonnull List<String> libraries) {
+    return ClassLoaderHelper.instancesOfClass(Driver.class, libraries, false, false, index);
+  }
+}
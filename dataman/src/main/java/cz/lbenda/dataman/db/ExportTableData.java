@@ -54,6 +54,9 @@ import javax.swing.table.TableModel;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
@@ -61,6 +64,8 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import java.io.*;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -136,6 +141,263 @@ public class ExportTableData {
     }
   }
 
+  /** Inform if the rows can be written by {@link RowWriter} one by one, the spreadsheets need all rows in memory */
+  public static boolean isStreamable(SpreadsheetFormat format) {
+    switch (format) {
+      case CSV:
+      case TXT:
+      case SQL:
+      case XMLv1:
+      case XMLv2: return true;
+      default: return false;
+    }
+  }
+
+  /** Writer which write every row when it's given, so the rows needn't be hold in memory */
+  public interface RowWriter {
+    /** Write row
+     * @param values values of row ordered by position of columns, the array can be reused after call */
+    void writeRow(Object[] values) throws IOException;
+    /** Write end of document and flush it, the writer isn't closed */
+    void finish() throws IOException;
+  }
+
+  /** Create writer of rows, the header of document is written immediately
+   * @param format format of written document, see {@link #isStreamable(SpreadsheetFormat)}
+   * @param sqlQueryRows holder of SQL, metadata and dialect of rows, the rows of it aren't written
+   * @param writer writer to which is document written */
+  public static RowWriter rowWriter(SpreadsheetFormat format, SQLQueryRows sqlQueryRows, Writer writer) throws IOException {
+    switch (format) {
+      case CSV: return new CSVRowWriter(sqlQueryRows, writer);
+      case TXT: return new TXTRowWriter(sqlQueryRows, writer);
+      case SQL: return new SQLRowWriter(sqlQueryRows, writer);
+      case XMLv1: return new XMLv1RowWriter(sqlQueryRows, writer);
+      case XMLv2: return new XMLv2RowWriter(sqlQueryRows, writer);
+      default: throw new UnsupportedOperationException("The format " + format + " can't be written row by row");
+    }
+  }
+
+  /** Write rows of result set as they are fetched, so the rows aren't hold in memory
+   * @param format format of written document, see {@link #isStreamable(SpreadsheetFormat)}
+   * @param sqlQueryRows holder of SQL, metadata and dialect of rows in result set
+   * @param rs result set from which are rows read
+   * @param writer writer to which is document written
+   * @return count of written rows */
+  public static long writeResultSet(SpreadsheetFormat format, SQLQueryRows sqlQueryRows, ResultSet rs, Writer writer)
+      throws IOException, SQLException {
+    final List<ColumnDesc> columns = sqlQueryRows.getMetaData().getColumns();
+    final ColumnCodec[] codecs = ColumnCodec.forResultSet(columns, rs.getMetaData());
+    RowWriter rowWriter = rowWriter(format, sqlQueryRows, writer);
+    Object[] values = new Object[columns.size()];
+    long count = 0;
+    while (rs.next()) {
+      for (ColumnDesc cd : columns) {
+        int i = cd.getPosition() - 1;
+        values[i] = codecs[i].decode(cd, codecs[i].read(rs, cd.getPosition()));
+      }
+      rowWriter.writeRow(values);
+      count++;
+    }
+    rowWriter.finish();
+    return count;
+  }
+
+  private static void writeRows(RowWriter rowWriter, SQLQueryRows sqlQueryRows) throws IOException {
+    Object[] values = new Object[sqlQueryRows.getMetaData().getColumns().size()];
+    for (RowDesc row : sqlQueryRows.getRows()) {
+      for (ColumnDesc cd : sqlQueryRows.getMetaData().getColumns()) { values[cd.getPosition() - 1] = row.getColumnValue(cd); }
+      rowWriter.writeRow(values);
+    }
+    rowWriter.finish();
+  }
+
+  private static boolean isNull(Object value) {
+    return value == null || value instanceof BinaryData && ((BinaryData) value).isNull();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static String valueStr(ColumnDesc cd, Object value) {
+    return cd.getStringConverter().toString(value);
+  }
+
+  private static class CSVRowWriter implements RowWriter {
+    private final List<ColumnDesc> columns;
+    private final CSVPrinter printer;
+    private final Object[] record;
+    CSVRowWriter(SQLQueryRows sqlQueryRows, Writer writer) throws IOException {
+      columns = sqlQueryRows.getMetaData().getColumns();
+      printer = new CSVPrinter(writer, CSVFormat.DEFAULT.withRecordSeparator(Constants.CSV_NEW_LINE_SEPARATOR));
+      printer.printRecord(columns.stream().map(ColumnDesc::getName).toArray());
+      record = new Object[columns.size()];
+    }
+    @Override
+    public void writeRow(Object[] values) throws IOException {
+      int i = 0;
+      for (ColumnDesc cd : columns) { record[i++] = valueStr(cd, values[cd.getPosition() - 1]); }
+      printer.printRecord(record);
+    }
+    @Override
+    public void finish() throws IOException { printer.flush(); }
+  }
+
+  private static class TXTRowWriter implements RowWriter {
+    private final List<ColumnDesc> columns;
+    private final Writer writer;
+    TXTRowWriter(SQLQueryRows sqlQueryRows, Writer writer) throws IOException {
+      this.columns = sqlQueryRows.getMetaData().getColumns();
+      this.writer = writer;
+      for (ColumnDesc cd : columns) { writer.append(fixedString(cd.getName(), cd.getSize())); }
+      writer.append(Constants.CSV_NEW_LINE_SEPARATOR);
+    }
+    @Override
+    public void writeRow(Object[] values) throws IOException {
+      for (ColumnDesc cd : columns) { writer.append(fixedString(valueStr(cd, values[cd.getPosition() - 1]), cd.getSize())); }
+      writer.append(Constants.CSV_NEW_LINE_SEPARATOR);
+    }
+    @Override
+    public void finish() throws IOException { writer.flush(); }
+  }
+
+  private static class SQLRowWriter implements RowWriter {
+    private final Writer writer;
+    /** Columns of rows grouped by tables to which are inserts written */
+    private final Map<String, List<ColumnDesc>> columnsByTables = new LinkedHashMap<>();
+    private final Map<String, String> columnsByTableNames = new HashMap<>();
+    private final Map<ColumnDesc, ColumnCodec> codecs = new HashMap<>();
+    SQLRowWriter(SQLQueryRows sqlQueryRows, Writer writer) {
+      this.writer = writer;
+      sqlQueryRows.getMetaData().getColumns().forEach(columnDesc -> {
+        String table = String.format("\"%s\".\"%s\"", columnDesc.getSchema().trim(), columnDesc.getTable().trim());
+        List<ColumnDesc> columns = columnsByTables.get(table);
+        if (columns == null) {
+          columns = new ArrayList<>();
+          columnsByTables.put(table, columns);
+        }
+        columns.add(columnDesc);
+        codecs.put(columnDesc, ColumnCodec.of(columnDesc.getDataType(), sqlQueryRows.getDialect(), columnDesc.getJavaClassName()));
+      });
+      columnsByTables.entrySet().forEach(entry -> columnsByTableNames.put(entry.getKey(), entry.getValue().stream()
+          .map(columnDesc -> '"' + columnDesc.getName() + '"').collect(Collectors.joining(", "))));
+    }
+    @Override
+    public void writeRow(Object[] values) throws IOException {
+      for (Map.Entry<String, List<ColumnDesc>> entry : columnsByTables.entrySet()) {
+        StringBuilder row = new StringBuilder();
+        entry.getValue().forEach(columnDesc -> {
+          if (row.length() > 0) { row.append(", "); }
+          row.append(codecs.get(columnDesc).toSQL(values[columnDesc.getPosition() - 1]));
+        });
+        writer.write(String.format("insert into %s (%s) values(%s);\n", entry.getKey(),
+            columnsByTableNames.get(entry.getKey()), row.toString()));
+      }
+    }
+    @Override
+    public void finish() throws IOException { writer.flush(); }
+  }
+
+  /** Writer of XML document, the problems of XML stream are thrown as {@link IOException} */
+  private abstract static class XMLRowWriter implements RowWriter {
+    protected final List<ColumnDesc> columns;
+    protected final XMLStreamWriter xml;
+    XMLRowWriter(SQLQueryRows sqlQueryRows, Writer writer) throws IOException {
+      this.columns = sqlQueryRows.getMetaData().getColumns();
+      try {
+        xml = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+        xml.writeStartDocument("1.0");
+        writeHeader(sqlQueryRows);
+      } catch (XMLStreamException e) {
+        throw new IOException("Problem with write exporting data: " + e.toString(), e);
+      }
+    }
+    protected abstract void writeHeader(SQLQueryRows sqlQueryRows) throws XMLStreamException;
+    protected abstract void writeRowElement(Object[] values) throws XMLStreamException;
+    protected void writeAttribute(String name, Object value) throws XMLStreamException {
+      if (value != null) { xml.writeAttribute(name, value.toString()); }
+    }
+    @Override
+    public void writeRow(Object[] values) throws IOException {
+      try {
+        writeRowElement(values);
+      } catch (XMLStreamException e) {
+        throw new IOException("Problem with write exporting data: " + e.toString(), e);
+      }
+    }
+    @Override
+    public void finish() throws IOException {
+      try {
+        xml.writeEndDocument();
+        xml.flush();
+      } catch (XMLStreamException e) {
+        throw new IOException("Problem with write exporting data: " + e.toString(), e);
+      }
+    }
+  }
+
+  /** Write same document as {@link #writeSqlQueryRowsToXMLv1(SQLQueryRows, OutputStream)} */
+  private static class XMLv1RowWriter extends XMLRowWriter {
+    private static final String NAMESPACE = "http://www.lbenda.cz/dataman/schema/Export";
+    XMLv1RowWriter(SQLQueryRows sqlQueryRows, Writer writer) throws IOException { super(sqlQueryRows, writer); }
+    @Override
+    protected void writeHeader(SQLQueryRows sqlQueryRows) throws XMLStreamException {
+      xml.setDefaultNamespace(NAMESPACE);
+      xml.writeStartElement(NAMESPACE, "export");
+      xml.writeDefaultNamespace(NAMESPACE);
+      writeAttribute("sql", sqlQueryRows.getSQL());
+      writeAttribute("version", "1");
+      xml.writeStartElement(NAMESPACE, "columns");
+      for (ColumnDesc cd : columns) {
+        xml.writeStartElement(NAMESPACE, "column");
+        writeAttribute("id", columnId(cd));
+        writeAttribute("catalog", cd.getCatalog());
+        writeAttribute("schema", cd.getSchema());
+        writeAttribute("table", cd.getTable());
+        writeAttribute("column", cd.getName());
+        writeAttribute("dataType", DbStructureFactory.columnTypeToDataTypeType(cd.getDataType()).value());
+        writeAttribute("length", cd.getSize());
+        writeAttribute("scale", cd.getScale());
+        if (cd.getLabel() != null) { xml.writeCharacters(cd.getLabel()); }
+        xml.writeEndElement();
+      }
+      xml.writeEndElement();
+    }
+    @Override
+    protected void writeRowElement(Object[] values) throws XMLStreamException {
+      xml.writeStartElement(NAMESPACE, "row");
+      for (ColumnDesc cd : columns) {
+        Object value = values[cd.getPosition() - 1];
+        xml.writeStartElement(NAMESPACE, "field");
+        writeAttribute("column", columnId(cd));
+        if (isNull(value)) { writeAttribute("null", "true"); }
+        else { xml.writeCharacters(valueStr(cd, value)); }
+        xml.writeEndElement();
+      }
+      xml.writeEndElement();
+    }
+  }
+
+  /** Write same document as {@link #writeSqlQueryRowsToXMLv2(SQLQueryRows, OutputStream)} */
+  private static class XMLv2RowWriter extends XMLRowWriter {
+    XMLv2RowWriter(SQLQueryRows sqlQueryRows, Writer writer) throws IOException { super(sqlQueryRows, writer); }
+    @Override
+    protected void writeHeader(SQLQueryRows sqlQueryRows) throws XMLStreamException {
+      xml.writeStartElement("export");
+      writeAttribute("sql", sqlQueryRows.getSQL());
+      writeAttribute("version", "2");
+    }
+    @Override
+    protected void writeRowElement(Object[] values) throws XMLStreamException {
+      xml.writeStartElement("row");
+      for (ColumnDesc cd : columns) {
+        Object value = values[cd.getPosition() - 1];
+        xml.writeStartElement(cd.getName());
+        if (isNull(value)) { writeAttribute("null", "true"); }
+        else { xml.writeCharacters(valueStr(cd, value)); }
+        xml.writeEndElement();
+      }
+      xml.writeEndElement();
+    }
+  }
+
   public static void writeSqlQueryRows(String fileName, SQLQueryRows sqlQueryRows, String sheetName, OutputStream outputStream) throws IOException {
     String extension = FilenameUtils.getExtension(fileName);
     List<SpreadsheetFormat> formatList = SpreadsheetFormat.byExtension(extension);
@@ -229,12 +491,7 @@ public class ExportTableData {
    * @param sqlQueryRows rows
    * @param writer where are data */
   public static void writeSqlQueryRowsToCSV(SQLQueryRows sqlQueryRows, Writer writer) throws IOException {
-    CSVFormat csvFileFormat = CSVFormat.DEFAULT.withRecordSeparator(Constants.CSV_NEW_LINE_SEPARATOR);
-    CSVPrinter csvFilePrinter = new CSVPrinter(writer, csvFileFormat);
-    csvFilePrinter.printRecord(sqlQueryRows.getMetaData().getColumns().stream().map(ColumnDesc::getName).toArray());
-    for (RowDesc row : sqlQueryRows.getRows()) {
-      csvFilePrinter.printRecord(sqlQueryRows.getMetaData().getColumns().stream().map(row::getColumnValueStr).toArray());
-    }
+    writeRows(new CSVRowWriter(sqlQueryRows, writer), sqlQueryRows);
   }
 
   private static StringBuffer SPACES = new StringBuffer();
@@ -251,17 +508,7 @@ public class ExportTableData {
    * @param sqlQueryRows rows
    * @param writer writer where are data write */
   public static void writeSqlQueryRowsToTXT(SQLQueryRows sqlQueryRows, Writer writer) throws IOException {
-    String joined = sqlQueryRows.getMetaData().getColumns().stream()
-        .map(cd -> fixedString(cd.getName(), cd.getSize()))
-        .collect(Collectors.joining(""));
-    writer.append(joined).append(Constants.CSV_NEW_LINE_SEPARATOR);
-    for (RowDesc row : sqlQueryRows.getRows()) {
-      joined = sqlQueryRows.getMetaData().getColumns().stream()
-          .map(cd -> fixedString(row.getColumnValueStr(cd), cd.getSize()))
-          .collect(Collectors.joining(""));
-      writer.append(joined).append(Constants.CSV_NEW_LINE_SEPARATOR);
-      writer.flush();
-    }
+    writeRows(new TXTRowWriter(sqlQueryRows, writer), sqlQueryRows);
   }
 
   /** Write rows to ODS file
@@ -472,40 +719,12 @@ public class ExportTableData {
    * @param sqlQueryRows rows which will be store as INSERT sql
    * @param writer writer to which is write inserts */
   public static void writeSqlQueryRowsToSQL(SQLQueryRows sqlQueryRows, Writer writer) {
-    final Map<String, List<ColumnDesc>> columnsByTables = new HashMap<>();
-    sqlQueryRows.getMetaData().getColumns().forEach(columnDesc -> {
-      String table = String.format("\"%s\".\"%s\"", columnDesc.getSchema().trim(), columnDesc.getTable().trim());
-      List<ColumnDesc> columns = columnsByTables.get(table);
-      if (columns == null) {
-        columns = new ArrayList<>();
-        columnsByTables.put(table, columns);
-      }
-      columns.add(columnDesc);
-    });
-    final Map<String, String> columnsByTableNames = new HashMap<>();
-    columnsByTables.entrySet().forEach(entry -> {
-      StringBuilder sb = new StringBuilder();
-      entry.getValue().forEach(columnDesc -> {
-        if (sb.length() > 0) { sb.append(", "); }
-        sb.append('"').append(columnDesc.getName()).append('"');
-      });
-      columnsByTableNames.put(entry.getKey(), sb.toString());
-    });
-    sqlQueryRows.getRows().forEach(rowDesc -> columnsByTables.entrySet().forEach(entry -> {
-      StringBuilder row = new StringBuilder();
-      entry.getValue().forEach(columnDesc -> {
-        if (row.length() > 0) { row.append(", "); }
-        row.append(sqlValue(sqlQueryRows.getDialect(), columnDesc, rowDesc));
-      });
-      try {
-        writer.write(String.format("insert into %s (%s) values(%s);\n", entry.getKey(),
-            columnsByTableNames.get(entry.getKey()), row.toString()));
-        writer.flush();
-      } catch (IOException e) {
-        LOG.error("Problem with write SQL insert", e);
-        throw new RuntimeException("Problem with write SQL insert", e);
-      }
-    }));
+    try {
+      writeRows(new SQLRowWriter(sqlQueryRows, writer), sqlQueryRows);
+    } catch (IOException e) {
+      LOG.error("Problem with write SQL insert", e);
+      throw new RuntimeException("Problem with write SQL insert", e);
+    }
   }
 
   /** Create SQL representation of value in column. Format to SQL and add quote etc
@@ -513,48 +732,7 @@ public class ExportTableData {
    * @param rowDesc row from which is data get
    * @return string representation of value in SQL */
   public static String sqlValue(SQLDialect dialect, ColumnDesc columnDesc, RowDesc rowDesc) {
-    Object value = rowDesc.getColumnValue(columnDesc);
-    if (value == null) { return "NULL"; }
-    switch (columnDesc.getDataType()) {
-      case STRING:
-      case UUID:
-        return "'" + rowDesc.getColumnValueStr(columnDesc) + "'";
-      case DATE: return "'" + StringConverters.SQL_SQL_DATE_CONVERTER.toString((java.sql.Date) value) + "'";
-      case TIME: return "'" + StringConverters.SQL_SQL_TIME_CONVERTER.toString((java.sql.Time) value) + "'";
-      case TIMESTAMP: return "'" + StringConverters.SQL_SQL_TIMESTAMP_CONVERTER.toString((java.sql.Timestamp) value) + "'";
-      case BOOLEAN: if (dialect != null && dialect.isBooleanBitRepresent()) { return Boolean.TRUE.equals(value) ? "1" : "0"; }
-        return rowDesc.getColumnValueStr(columnDesc);
-      case CLOB:
-        ClobBinaryData cbd = (ClobBinaryData) value;
-        if (cbd.isNull()) { return "NULL"; }
-        try {
-          return "'" + IOUtils.toString(cbd.getReader()) + "'";
-        } catch (IOException e) {
-          LOG.error("Error convert clob to string.", e);
-          throw new RuntimeException("Error convert clob to string.", e);
-        }
-      case BLOB:
-        BlobBinaryData bbd = (BlobBinaryData) value;
-        if (bbd.isNull()) { return "NULL"; }
-        try {
-          return "'" + IOUtils.toString(bbd.getReader()) + "'";
-        } catch (IOException e) {
-          LOG.error("Error convert blob to string.", e);
-          throw new RuntimeException("Error convert blob to string.", e);
-        }
-      case BIT_ARRAY:
-        try {
-          if (((BitArrayBinaryData) value).isNull()) { return "NULL"; }
-          String res = IOUtils.toString(((BitArrayBinaryData) value).getReader());
-          return "0x'" + res.replaceAll(" ", "") + "'";
-        } catch (IOException e) {
-          LOG.error("Error convert bit array to string.", e);
-          throw new RuntimeException("Error convert bit array to string.", e);
-        }
-      case BYTE_ARRAY:
-        if (((ByteArrayBinaryData) value).isNull()) { return "NULL"; }
-        return "'" + rowDesc.getColumnValueStr(columnDesc) + "'";
-    }
-    return rowDesc.getColumnValueStr(columnDesc);
+    return ColumnCodec.of(columnDesc.getDataType(), dialect, columnDesc.getJavaClassName())
+        .toSQL(rowDesc.getColumnValue(columnDesc));
   }
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import javax.annotation.Nonnull;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Decoder of rows from result set which overlap reading from JDBC driver and creating of rows. The calling thread
+ * read raw values of rows in batches to bounded ring of batches, the batches are converted to rows by pool of workers.
+ * The decoded batches are given to consumer on calling thread in same order as they are read. */
+public class PipelinedRowDecoder {
+
+  /** Default count of rows in one batch */
+  public static final int DEFAULT_BATCH_SIZE = 256;
+  /** Default count of batches which can be read but not yet given to consumer */
+  public static final int DEFAULT_CAPACITY = 16;
+  /** Count of threads which decode the rows */
+  public static final int WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+  private static ExecutorService executor;
+  private static synchronized ExecutorService executor() {
+    if (executor == null) {
+      AtomicInteger counter = new AtomicInteger();
+      executor = Executors.newFixedThreadPool(WORKERS, runnable -> {
+        Thread thread = new Thread(runnable, "Dataman row decoder " + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return executor;
+  }
+
+  /** Count of rows in one batch */
+  private int batchSize = DEFAULT_BATCH_SIZE; public int getBatchSize() { return batchSize; } public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+  /** Count of batches which can be read but not yet given to consumer */
+  private int capacity = DEFAULT_CAPACITY; public int getCapacity() { return capacity; } public void setCapacity(int capacity) { this.capacity = capacity; }
+  /** When true, then the {@link ReadOnlyRowDesc} rows are created */
+  private boolean readOnly; public boolean isReadOnly() { return readOnly; } public void setReadOnly(boolean readOnly) { this.readOnly = readOnly; }
+
+  /** Read all rows from result set and give them to consumer in batches. The method is blocking until all rows are
+   * read and given to consumer, or until the reading is cancelled.
+   * @param rs result set from which are rows read
+   * @param metaData metadata of created rows
+   * @param consumer consumer of decoded rows, it's called on calling thread in order of rows in result set
+   * @param cancelled inform if the reading should be stopped
+   * @return count of read rows */
+  public long decode(@Nonnull ResultSet rs, @Nonnull SQLQueryMetaData metaData, @Nonnull Consumer<List<RowDesc>> consumer,
+                     @Nonnull BooleanSupplier cancelled) throws SQLException {
+    final ColumnDesc[] columns = metaData.getColumns().toArray(new ColumnDesc[metaData.getColumns().size()]);
+    final ColumnCodec[] codecs = ColumnCodec.forResultSet(metaData.getColumns(), rs.getMetaData());
+    final Deque<Future<List<RowDesc>>> pending = new ArrayDeque<>(capacity);
+    long count = 0;
+    try {
+      Object[][] batch = new Object[batchSize][];
+      int size = 0;
+      while (!cancelled.getAsBoolean() && rs.next()) {
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) { values[i] = codecs[i].read(rs, columns[i].getPosition()); }
+        batch[size++] = values;
+        count++;
+        if (size == batchSize) {
+          submit(pending, metaData, columns, batch, size, consumer);
+          batch = new Object[batchSize][];
+          size = 0;
+        }
+        while (!pending.isEmpty() && pending.peekFirst().isDone()) { emit(pending.pollFirst(), consumer); }
+      }
+      if (size > 0) { submit(pending, metaData, columns, batch, size, consumer); }
+      while (!pending.isEmpty()) { emit(pending.pollFirst(), consumer); }
+    } finally {
+      pending.forEach(future -> future.cancel(false));
+    }
+    return count;
+  }
+
+  private void submit(Deque<Future<List<RowDesc>>> pending, SQLQueryMetaData metaData, ColumnDesc[] columns,
+                      Object[][] batch, int size, Consumer<List<RowDesc>> consumer) throws SQLException {
+    if (pending.size() >= capacity) { emit(pending.pollFirst(), consumer); }
+    final boolean readOnlyRows = readOnly;
+    pending.addLast(executor().submit(() -> decodeBatch(metaData, columns, batch, size, readOnlyRows)));
+  }
+
+  private void emit(Future<List<RowDesc>> future, Consumer<List<RowDesc>> consumer) throws SQLException {
+    try {
+      consumer.accept(future.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("The decoding of rows was interrupted", e);
+    } catch (ExecutionException e) {
+      throw new SQLException("The decoding of rows failed", e.getCause());
+    }
+  }
+
+  /** Create rows from raw values */
+  static List<RowDesc> decodeBatch(SQLQueryMetaData metaData, ColumnDesc[] columns, Object[][] batch, int size,
+                                   boolean readOnly) {
+    List<RowDesc> result = new ArrayList<>(size);
+    for (int r = 0; r < size; r++) {
+      if (readOnly) {
+        result.add(ReadOnlyRowDesc.create(metaData, batch[r]));
+        continue;
+      }
+      RowDesc row = RowDesc.createNewRow(metaData, RowDesc.RowDescState.LOADED);
+      for (int i = 0; i < columns.length; i++) { row.setInitialColumnValue(columns[i], batch[r][i]); }
+      result.add(row);
+    }
+    return result;
+  }
+}
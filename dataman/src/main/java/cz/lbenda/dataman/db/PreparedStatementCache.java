@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 26.10.15.
+ * LRU cache of prepared statements of one connection. The statement is returned to cache when is closed. When the
+ * statement with same key is still used, then new not cached statement is prepared. */
+public class PreparedStatementCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PreparedStatementCache.class);
+
+  /** Factory which prepare new statement on physical connection */
+  @FunctionalInterface
+  interface StatementFactory {
+    PreparedStatement prepare() throws SQLException;
+  }
+
+  /** Key of cached statement */
+  static final class Key {
+    private final String sql;
+    private final int resultSetType;
+    private final int resultSetConcurrency;
+    private final int autoGeneratedKeys;
+
+    Key(String sql, int resultSetType, int resultSetConcurrency, int autoGeneratedKeys) {
+      this.sql = sql;
+      this.resultSetType = resultSetType;
+      this.resultSetConcurrency = resultSetConcurrency;
+      this.autoGeneratedKeys = autoGeneratedKeys;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) { return true; }
+      if (!(o instanceof Key)) { return false; }
+      Key key = (Key) o;
+      return resultSetType == key.resultSetType && resultSetConcurrency == key.resultSetConcurrency
+          && autoGeneratedKeys == key.autoGeneratedKeys && sql.equals(key.sql);
+    }
+
+    @Override
+    public int hashCode() { return Objects.hash(sql, resultSetType, resultSetConcurrency, autoGeneratedKeys); }
+  }
+
+  private final Connection connection;
+  private final int maxSize; public int getMaxSize() { return maxSize; }
+  private final Map<Key, CachedPreparedStatement> statements;
+  private long hits; public synchronized long getHits() { return hits; }
+  private long misses; public synchronized long getMisses() { return misses; }
+  private long evictions; public synchronized long getEvictions() { return evictions; }
+
+  /** Create cache
+   * @param connection connection which is returned by cached statements as their connection
+   * @param maxSize maximal count of cached statements, when is lower then one, no statement is cached */
+  public PreparedStatementCache(@Nonnull Connection connection, int maxSize) {
+    this.connection = connection;
+    this.maxSize = maxSize;
+    this.statements = new LinkedHashMap<Key, CachedPreparedStatement>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, CachedPreparedStatement> eldest) {
+        if (size() > PreparedStatementCache.this.maxSize) {
+          evict(eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /** Count of cached statements */
+  public synchronized int getSize() { return statements.size(); }
+
+  /** Return cached statement for given key, or prepare new one */
+  synchronized PreparedStatement prepare(Key key, StatementFactory factory) throws SQLException {
+    if (maxSize <= 0) { return factory.prepare(); }
+    CachedPreparedStatement cached = statements.get(key);
+    if (cached != null && !cached.isInUse()) {
+      hits++;
+      cached.setInUse(true);
+      return cached;
+    }
+    misses++;
+    if (cached != null) { return factory.prepare(); } // Statement with same SQL is still used
+    cached = new CachedPreparedStatement(this, key, factory.prepare(), connection);
+    cached.setInUse(true);
+    statements.put(key, cached);
+    return cached;
+  }
+
+  /** Return statement back to cache */
+  synchronized void release(CachedPreparedStatement cached) {
+    cached.setInUse(false);
+    if (cached.isEvicted() || cached.isModified()) {
+      if (!cached.isEvicted()) { statements.remove(cached.getKey()); }
+      closeStatement(cached);
+      return;
+    }
+    try {
+      cached.reset();
+    } catch (SQLException e) {
+      LOG.debug("The cached statement can't be reset, so it's closed", e);
+      statements.remove(cached.getKey());
+      closeStatement(cached);
+    }
+  }
+
+  private void evict(CachedPreparedStatement cached) {
+    evictions++;
+    cached.setEvicted(true);
+    if (!cached.isInUse()) { closeStatement(cached); }
+  }
+
+  private void closeStatement(CachedPreparedStatement cached) {
+    try {
+      cached.getStatement().close();
+    } catch (SQLException e) {
+      LOG.warn("The cached statement can't be closed", e);
+    }
+  }
+
+  /** Close all cached statements */
+  public synchronized void clear() {
+    List<CachedPreparedStatement> list = new ArrayList<>(statements.values());
+    statements.clear();
+    list.forEach(cached -> {
+      cached.setEvicted(true);
+      if (!cached.isInUse()) { closeStatement(cached); }
+    });
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import cz.lbenda.common.Obfuscate;
+import cz.lbenda.dataman.schema.dataman.IsolationType;
+import cz.lbenda.dataman.schema.dataman.ObjectFactory;
+import cz.lbenda.dataman.schema.dataman.ReadConnectionType;
+import org.apache.commons.lang3.StringUtils;
+
+import java.sql.Connection;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Configuration of read only connections which are used for browsing of data. When URL isn't set, the read
+ * connections go to primary database. */
+public class ReadConnectionConfiguration {
+
+  /** Value of transaction isolation which mean the default of driver is used */
+  public static final int DEFAULT_ISOLATION = -1;
+
+  private String url = ""; public void setUrl(final String url) { this.url = url; } public String getUrl() { return this.url; }
+  private String username = ""; public void setUsername(final String username) { this.username = username; } public String getUsername() { return this.username; }
+  private String password = ""; public void setPassword(final String password) { this.password = password; } public String getPassword() { return this.password; }
+  /** Transaction isolation as constant from {@link Connection} */
+  private int transactionIsolation = DEFAULT_ISOLATION; public int getTransactionIsolation() { return transactionIsolation; } public void setTransactionIsolation(int transactionIsolation) { this.transactionIsolation = transactionIsolation; }
+
+  /** Inform if the read connections go to secondary database */
+  public boolean isSecondary() { return StringUtils.isNotBlank(url); }
+
+  public final void load(ReadConnectionType read) {
+    setUrl(read.getUrl() == null ? "" : read.getUrl());
+    setUsername(read.getUser() == null ? "" : read.getUser());
+    setPassword(read.getPassword() == null ? "" : Obfuscate.deobfuscate(read.getPassword()));
+    setTransactionIsolation(isolationFromType(read.getIsolation()));
+  }
+
+  public final ReadConnectionType storeToReadConnectionType() {
+    ObjectFactory of = new ObjectFactory();
+    ReadConnectionType read = of.createReadConnectionType();
+    if (StringUtils.isNotBlank(getUrl())) { read.setUrl(getUrl()); }
+    if (StringUtils.isNotBlank(getUsername())) { read.setUser(getUsername()); }
+    if (StringUtils.isNotBlank(getPassword())) { read.setPassword(Obfuscate.obfuscate(getPassword())); }
+    read.setIsolation(isolationToType(getTransactionIsolation()));
+    return read;
+  }
+
+  private static int isolationFromType(IsolationType isolation) {
+    if (isolation == null) { return DEFAULT_ISOLATION; }
+    switch (isolation) {
+      case READ_UNCOMMITTED: return Connection.TRANSACTION_READ_UNCOMMITTED;
+      case READ_COMMITTED: return Connection.TRANSACTION_READ_COMMITTED;
+      case REPEATABLE_READ: return Connection.TRANSACTION_REPEATABLE_READ;
+      case SERIALIZABLE: return Connection.TRANSACTION_SERIALIZABLE;
+      default: return DEFAULT_ISOLATION;
+    }
+  }
+
+  private static IsolationType isolationToType(int isolation) {
+    switch (isolation) {
+      case Connection.TRANSACTION_READ_UNCOMMITTED: return IsolationType.READ_UNCOMMITTED;
+      case Connection.TRANSACTION_READ_COMMITTED: return IsolationType.READ_COMMITTED;
+      case Connection.TRANSACTION_REPEATABLE_READ: return IsolationType.REPEATABLE_READ;
+      case Connection.TRANSACTION_SERIALIZABLE: return IsolationType.SERIALIZABLE;
+      default: return null;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.value.ObservableValue;
+
+import javax.annotation.Nonnull;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Immutable row for results of SQL queries and for views. The row hold only one array with values, the property of
+ * cell is created only when the table ask for it, so only for visible cells. */
+public class ReadOnlyRowDesc extends RowDesc {
+
+  ReadOnlyRowDesc(SQLQueryMetaData metaData, Object[] values) {
+    super(metaData, values);
+  }
+
+  /** Create row from values read from database
+   * @param metaData metadata of row
+   * @param values raw values of columns, the array is used by row, so it can't be changed after
+   * @return new row */
+  public static ReadOnlyRowDesc create(@Nonnull SQLQueryMetaData metaData, @Nonnull Object[] values) {
+    for (ColumnDesc columnDesc : metaData.getColumns()) {
+      int i = columnDesc.getPosition() - 1;
+      values[i] = initialValue(columnDesc, values[i]);
+    }
+    return new ReadOnlyRowDesc(metaData, values);
+  }
+
+  @Override
+  public <T> T getColumnValue(ColumnDesc column) { return getInitialColumnValue(column); }
+
+  @Override
+  public ObservableValue valueProperty(@Nonnull ColumnDesc columnDesc) {
+    ObservableValue<Object> result = createObjectProperty(columnDesc);
+    setPropertyValue(result, columnDesc, getColumnValue(columnDesc));
+    return result;
+  }
+
+  @Override
+  public boolean isColumnChanged(ColumnDesc columnDesc) { return false; }
+
+  @Override
+  public <T> void setColumnValue(ColumnDesc column, T value) {
+    throw new UnsupportedOperationException("The read only row can't be changed");
+  }
+  @Override
+  public <T> void setInitialColumnValue(ColumnDesc column, T value) {
+    throw new UnsupportedOperationException("The read only row can't be changed");
+  }
+  @Override
+  public void setState(RowDescState state) {
+    throw new UnsupportedOperationException("The read only row can't be changed");
+  }
+  @Override
+  void changeState(RowDescState state) {
+    throw new UnsupportedOperationException("The read only row can't be changed");
+  }
+  @Override
+  public void cancelChanges() { }
+  @Override
+  void revertChanges() { }
+  @Override
+  public void savedChanges() { }
+  @Override
+  void markSaved() { }
+
+  /** The row is never changed, so the listeners are never called */
+  @Override
+  public void addListener(InvalidationListener invalidationListener) { }
+  @Override
+  public void removeListener(InvalidationListener invalidationListener) { }
+
+  @SuppressWarnings("CloneDoesntCallSuperClone")
+  @Override
+  public RowDesc clone() { return this; }
+}
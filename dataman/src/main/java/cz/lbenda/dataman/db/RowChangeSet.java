@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Index of rows of table which aren't saved to database. The rows are registered when they are added to table and
+ * every change of state of row is reported by row itself, so the dirty state of table is known without reading all
+ * rows and the save read only the changed rows. */
+public class RowChangeSet {
+
+  /** Rows in state {@link RowDesc.RowDescState#NEW} with sequence of change */
+  private final Map<RowDesc, Long> inserted = new IdentityHashMap<>();
+  /** Rows in state {@link RowDesc.RowDescState#CHANGED} with sequence of change */
+  private final Map<RowDesc, Long> updated = new IdentityHashMap<>();
+  /** Rows in state {@link RowDesc.RowDescState#REMOVED} with sequence of change */
+  private final Map<RowDesc, Long> removed = new IdentityHashMap<>();
+  /** Sequence which keep order in which the rows was changed */
+  private long sequence;
+  private final ReadOnlyBooleanWrapper dirty = new ReadOnlyBooleanWrapper(false);
+
+  /** Inform if some row isn't saved */
+  public ReadOnlyBooleanProperty dirtyProperty() { return dirty.getReadOnlyProperty(); }
+  public boolean isDirty() { return dirty.get(); }
+
+  /** Register row which was added to table */
+  void add(@Nonnull RowDesc row) {
+    row.setChangeSet(this);
+    stateChanged(row, RowDesc.RowDescState.LOADED, row.getState());
+  }
+
+  /** Unregister row which was removed from table */
+  void remove(@Nonnull RowDesc row) {
+    if (row.getChangeSet() != this) { return; }
+    row.setChangeSet(null);
+    stateChanged(row, row.getState(), RowDesc.RowDescState.LOADED);
+  }
+
+  /** Called by row when its state is changed */
+  void stateChanged(@Nonnull RowDesc row, RowDesc.RowDescState oldState, RowDesc.RowDescState newState) {
+    if (oldState == newState) { return; }
+    Map<RowDesc, Long> from = rowsInState(oldState);
+    if (from != null) { from.remove(row); }
+    Map<RowDesc, Long> to = rowsInState(newState);
+    if (to != null) { to.put(row, ++sequence); }
+    dirty.set(size() > 0);
+  }
+
+  private Map<RowDesc, Long> rowsInState(RowDesc.RowDescState state) {
+    if (state == null) { return null; }
+    switch (state) {
+      case NEW: return inserted;
+      case CHANGED: return updated;
+      case REMOVED: return removed;
+      default: return null;
+    }
+  }
+
+  /** Count of rows which aren't saved */
+  public int size() { return inserted.size() + updated.size() + removed.size(); }
+
+  /** New rows in order in which they was added */
+  public List<RowDesc> getInserted() { return ordered(inserted); }
+  /** Changed rows in order in which they was changed */
+  public List<RowDesc> getUpdated() { return ordered(updated); }
+  /** Removed rows in order in which they was removed */
+  public List<RowDesc> getRemoved() { return ordered(removed); }
+
+  private static List<RowDesc> ordered(Map<RowDesc, Long> rows) {
+    return rows.entrySet().stream().sorted(Map.Entry.comparingByValue()).map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+}
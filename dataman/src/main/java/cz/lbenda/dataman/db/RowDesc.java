@@ -26,15 +26,11 @@ import javafx.beans.Observable;
 import javafx.beans.property.*;
 import javafx.beans.value.ObservableValue;
 import javafx.scene.control.SingleSelectionModel;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
-import java.io.IOException;
-import java.math.BigDecimal;
 import java.sql.*;
-import java.sql.Date;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -68,15 +64,23 @@ public class RowDesc implements Observable {
       823, 827, 829, 839, 853, 857, 859, 863, 877, 881, 883, 887, 907, 911, 919, 929, 937, 941, 947, 953, 967, 971, 977,
       983, 991, 997};
 
-  private List<InvalidationListener> invalidationListeners = new ArrayList<>();
+  /** Listeners are created lazily, the most of rows have no listener */
+  private List<InvalidationListener> invalidationListeners;
   private Object id; public Object getId() { return id; } public void setId(Object id) { this.id = id; }
 
   private final SQLQueryMetaData metaData;
+  /** Current values of row */
+  private Object[] values;
+  /** Values loaded from database, the array is copied from values when first column is changed. When null, then no
+   * column was changed and values are also initial values. */
   private Object[] oldValues;
-  private ObservableValue[] newValues;
+  /** Properties of columns, they are created only when the cell is bound or edited */
+  private ObservableValue[] properties;
 
 
   private RowDescState state;
+  /** Index of unsaved rows of table which the row belongs to, it's informed about every change of state */
+  private RowChangeSet changeSet; RowChangeSet getChangeSet() { return changeSet; } void setChangeSet(RowChangeSet changeSet) { this.changeSet = changeSet; }
 
   /** Row in state new */
   public static RowDesc createNewRow(SQLQueryMetaData metaData) {
@@ -93,19 +97,7 @@ public class RowDesc implements Observable {
 
   private RowDesc(SQLQueryMetaData metaData) {
     this.metaData = metaData;
-    newValues = new ObservableValue[metaData.getColumns().size()];
-    int i = 0;
-    for (ColumnDesc columnDesc : metaData.getColumns()) {
-      newValues[i] = createObjectProperty(columnDesc);
-      //noinspection unchecked
-      newValues[i].addListener((observable, oldValue, newValue) -> {
-        if (!AbstractHelper.nullEquals(oldValue, newValue)) {
-          setColumnValue(columnDesc, newValue);
-        }
-      });
-      i++;
-    }
-    oldValues = new Object[metaData.getColumns().size()];
+    values = new Object[metaData.getColumns().size()];
   }
 
   RowDesc(SQLQueryMetaData metaData, RowDescState state) {
@@ -113,6 +105,15 @@ public class RowDesc implements Observable {
     this.state = state;
   }
 
+  /** Constructor for read only rows, which hold only values without properties
+   * @param metaData metadata of row
+   * @param values already converted values of row */
+  RowDesc(SQLQueryMetaData metaData, Object[] values) {
+    this.metaData = metaData;
+    this.values = values;
+    this.state = RowDescState.LOADED;
+  }
+
   /*
   RowDesc(Object id, Object[] values, RowDescState state) {
     this.id = id;
@@ -123,42 +124,67 @@ public class RowDesc implements Observable {
   */
 
   public void setState(RowDescState state) {
-    this.state = state;
+    changeState(state);
     doInvalidation();
   }
+  /** Set state without invalidation of row, it's used inside change block of {@link SQLQueryRows} */
+  void changeState(RowDescState state) {
+    RowDescState oldState = this.state;
+    this.state = state;
+    if (changeSet != null) { changeSet.stateChanged(this, oldState, state); }
+  }
   public RowDescState getState() {
     return state;
   }
 
   public void cancelChanges() {
-    metaData.getColumns().forEach(columnDesc -> setColumnValue(columnDesc, oldValues[columnDesc.getPosition() - 1]));
-    if (state == RowDescState.CHANGED) {
-      state = RowDescState.LOADED;
-    }
+    revertChanges();
     doInvalidation();
   }
+  /** Cancel changes without invalidation of row, it's used inside change block of {@link SQLQueryRows} */
+  void revertChanges() {
+    if (oldValues != null) {
+      Object[] changed = values;
+      values = oldValues;
+      oldValues = null;
+      metaData.getColumns().forEach(columnDesc -> {
+        int i = columnDesc.getPosition() - 1;
+        if (!AbstractHelper.nullEquals(changed[i], values[i])) { setPropertyValue(columnDesc, values[i]); }
+      });
+    }
+    if (state == RowDescState.CHANGED) { changeState(RowDescState.LOADED); }
+  }
 
   /** The changes was saved */
   public void savedChanges() {
-    oldValues = newValues.clone();
-    state = RowDescState.LOADED;
+    markSaved();
     doInvalidation();
   }
+  /** Mark changes as saved without invalidation of row, it's used inside change block of {@link SQLQueryRows} */
+  void markSaved() {
+    oldValues = null;
+    changeState(RowDescState.LOADED);
+  }
 
   @Override
-  public void addListener(InvalidationListener invalidationListener) { invalidationListeners.add(invalidationListener); }
+  public void addListener(InvalidationListener invalidationListener) {
+    if (invalidationListeners == null) { invalidationListeners = new ArrayList<>(2); }
+    invalidationListeners.add(invalidationListener);
+  }
   @Override
-  public void removeListener(InvalidationListener invalidationListener) { invalidationListeners.remove(invalidationListener); }
+  public void removeListener(InvalidationListener invalidationListener) {
+    if (invalidationListeners != null) { invalidationListeners.remove(invalidationListener); }
+  }
 
   /** Call invalidation on all invalidation listener */
   public void doInvalidation() {
-    invalidationListeners.forEach(listener -> listener.invalidated(this));
+    if (invalidationListeners != null) { invalidationListeners.forEach(listener -> listener.invalidated(this)); }
   }
 
   /** Return value from column */
   @SuppressWarnings("unchecked")
   public <T> T getColumnValue(ColumnDesc column) {
-    return repairClassOfValue(column, (T) newValues[column.getPosition() - 1].getValue());
+    return (T) values[column.getPosition() - 1];
   }
   /** Return value of column in string */
   @SuppressWarnings("unchecked")
@@ -166,73 +192,52 @@ public class RowDesc implements Observable {
     return column.getStringConverter().toString(getColumnValue(column));
   }
 
-  @SuppressWarnings({"unchecked", "RedundantCast"})
-  private <T> T repairClassOfValue(ColumnDesc column, T value) {
-    if (value == null) { return null; }
-    if (column.getDataType().getJavaClass().equals(value.getClass())) { return value; }
-    if (column.getDataType() == ColumnType.TIME) {
-      if (value instanceof LocalTime) { return (T) (Object) java.sql.Time.valueOf((LocalTime) value); }
-    } else if (column.getDataType() == ColumnType.DATE) {
-      if (value instanceof LocalDate) { return (T) (Object) java.sql.Date.valueOf((LocalDate) value); }
-    } else if (column.getDataType() == ColumnType.TIMESTAMP) {
-      if (value instanceof LocalDateTime) { return (T) (Object) java.sql.Timestamp.valueOf((LocalDateTime) value); }
-    } else {
-      Long val;
-      if (value instanceof Long) { val = (Long) value; }
-      else if (value instanceof Integer) { val = ((Integer) value).longValue(); }
-      else if (value instanceof Short) { val = ((Short) value).longValue(); }
-      else if (value instanceof Byte) { val = ((Byte) value).longValue(); }
-      else { return value; }
-
-      if (column.getDataType() == ColumnType.INTEGER) { return (T) (Object) val.intValue(); }
-      if (column.getDataType() == ColumnType.BYTE) { return (T) (Object) val.byteValue(); }
-      if (column.getDataType() == ColumnType.SHORT) { return (T) (Object) val.shortValue(); }
-    }
-    return value;
-  }
-
   /** Set value for both rows - old and new */
   public <T> void setInitialColumnValue(ColumnDesc column, T value) {
-    value = repairClassOfValue(column, value);
-
-    Object v = value;
-    if (column.getDataType() == ColumnType.BLOB) {
-      v = new BlobBinaryData(column.toString(), (Blob) value);
-    } else if (column.getDataType() == ColumnType.CLOB) {
-      v = new ClobBinaryData(column.toString(), (Clob) value);
-    } else if (column.getDataType() == ColumnType.BYTE_ARRAY) {
-      v = new ByteArrayBinaryData(column.toString(), (byte[]) value);
-    } else if (column.getDataType() == ColumnType.BIT_ARRAY) {
-      v = new BitArrayBinaryData(column.toString(), (byte[]) value);
-    }
-    oldValues[column.getPosition() - 1] = v;
+    Object v = initialValue(column, value);
+    values[column.getPosition() - 1] = v;
+    if (oldValues != null) { oldValues[column.getPosition() - 1] = v; }
     setPropertyValue(column, v);
   }
 
+  /** Convert value read from database to value which is hold by row */
+  static Object initialValue(ColumnDesc column, Object value) {
+    return column.getCodec().decode(column, value);
+  }
+
   /** Load initial column value from rs */
   public void loadInitialColumnValue(ColumnDesc columnDesc, ResultSet rs) throws SQLException {
-    Object val;
-    if (columnDesc.getDataType() == ColumnType.BIT) {
-      val = rs.getBoolean(columnDesc.getPosition());
-      if (Boolean.TRUE.equals(val)) { val = (byte) 1; }
-      else if (Boolean.FALSE.equals(val)) { val = (byte) 0; }
-    }
-    else if (columnDesc.getDataType() == ColumnType.BIT_ARRAY) { val = rs.getBytes(columnDesc.getPosition()); }
-    else { val = rs.getObject(columnDesc.getPosition()); }
-    setInitialColumnValue(columnDesc, val);
+    setInitialColumnValue(columnDesc, readColumnValue(columnDesc, rs));
+  }
+
+  /** Read raw value of column from rs, the value isn't converted to class of column */
+  public static Object readColumnValue(ColumnDesc columnDesc, ResultSet rs) throws SQLException {
+    return readColumnValue(columnDesc, rs, columnDesc.getPosition());
+  }
+
+  /** Read raw value of column from given position of rs, the value isn't converted to class of column */
+  public static Object readColumnValue(ColumnDesc columnDesc, ResultSet rs, int position) throws SQLException {
+    return columnDesc.getCodec().read(rs, position);
   }
 
   /** Return initial value of column */
   @SuppressWarnings("unchecked")
   public <T> T getInitialColumnValue(ColumnDesc column) {
-    return (T) oldValues[column.getPosition() - 1];
+    return (T) initialValues()[column.getPosition() - 1];
+  }
+
+  /** Return array of values which was loaded from database */
+  private Object[] initialValues() {
+    return oldValues == null ? values : oldValues;
   }
 
   /** Return set value for given column */
   public <T> void setColumnValue(ColumnDesc column, T value) {
-    value = repairClassOfValue(column, value);
+    //noinspection unchecked
+    value = (T) column.getCodec().repair(column, value);
 
-    if (AbstractHelper.nullEquals(oldValues[column.getPosition() - 1], value)) { return; }
+    int i = column.getPosition() - 1;
+    if (AbstractHelper.nullEquals(values[i], value)) { return; }
     if (column.getDataType() == ColumnType.ARRAY) {
       LOG.warn("The editing of ARRAY isn't implemented yet");
       return;
@@ -241,17 +246,12 @@ public class RowDesc implements Observable {
     if (value instanceof SingleSelectionModel) {
       throw new ClassCastException("The value of column can't be selection model type.");
     }
+    if (oldValues == null) { oldValues = values.clone(); }
+    values[i] = value;
     setPropertyValue(column, value);
 
-    if (RowDescState.LOADED == state
-        && !AbstractHelper.nullEquals(getColumnValue(column), oldValues[column.getPosition() - 1])) {
+    if (RowDescState.LOADED == state && !AbstractHelper.nullEquals(value, oldValues[i])) {
       this.setState(RowDescState.CHANGED);
-    } else if (state == RowDescState.CHANGED) {
-      boolean noChanged = true;
-      for (int i = 0; i < oldValues.length; i++) {
-        noChanged = noChanged && AbstractHelper.nullEquals(newValues[i].getValue(), oldValues[i]);
-      }
-      if (noChanged) { setState(RowDescState.LOADED); }
     }
   }
 
@@ -270,19 +270,19 @@ public class RowDesc implements Observable {
     if (id != null) { return id.equals(sqr.getId()); }
     else if (sqr.getId() != null) { return false; }
 
-    if (oldValues == null) {
-      return sqr.oldValues == null; }
-    else if (sqr.oldValues == null) { return false; }
-    return Arrays.equals(oldValues, sqr.oldValues);
+    if (initialValues() == null) {
+      return sqr.initialValues() == null; }
+    else if (sqr.initialValues() == null) { return false; }
+    return Arrays.equals(initialValues(), sqr.initialValues());
   }
 
   @Override
   public int hashCode() {
     if (id != null) { return id.hashCode(); }
-    if (oldValues == null) { return 0; }
+    if (initialValues() == null) { return 0; }
     int result = 1;
     int primeI = 0;
-    for (Object v : oldValues) {
+    for (Object v : initialValues()) {
       if (primeI >= PRIMES.length) { primeI = 0; }
       result *= PRIMES[primeI];
       if (v != null) { result += v.hashCode(); }
@@ -294,16 +294,21 @@ public class RowDesc implements Observable {
   @Override
   public RowDesc clone() {
     RowDesc result = new RowDesc(metaData, state);
-    for (ColumnDesc columnDesc : metaData.getColumns()) {
-      result.setInitialColumnValue(columnDesc, oldValues[columnDesc.getPosition() - 1]);
-      result.setColumnValue(columnDesc, getColumnValue(columnDesc));
-    }
+    result.values = values.clone();
+    if (oldValues != null) { result.oldValues = oldValues.clone(); }
     return result;
   }
 
-  @SuppressWarnings("unchecked")
+  /** Set value to property of column, if the property was already created */
   private <T> void setPropertyValue(@Nonnull ColumnDesc columnDesc, T value) {
-    ObservableValue<T> ov = newValues[columnDesc.getPosition() - 1];
+    if (properties == null || properties[columnDesc.getPosition() - 1] == null) { return; }
+    //noinspection unchecked
+    setPropertyValue(properties[columnDesc.getPosition() - 1], columnDesc, value);
+  }
+
+  /** Set value to property which was created by {@link #createObjectProperty(ColumnDesc)} */
+  @SuppressWarnings("unchecked")
+  static <T> void setPropertyValue(ObservableValue<T> ov, @Nonnull ColumnDesc columnDesc, T value) {
     if (ov instanceof BooleanProperty) {
       ((BooleanProperty) ov).setValue(Boolean.TRUE.equals(value));
     } else if (ov instanceof StringProperty) {
@@ -341,8 +346,9 @@ public class RowDesc implements Observable {
     }
   }
 
+  /** Create property which hold value of column */
   @SuppressWarnings("unchecked")
-  private <T> ObservableValue<T> createObjectProperty(@Nonnull ColumnDesc columnDesc) {
+  static <T> ObservableValue<T> createObjectProperty(@Nonnull ColumnDesc columnDesc) {
     switch (columnDesc.getDataType()) {
       case BOOLEAN:
         return (ObservableValue<T>) new SimpleBooleanProperty(null, null);
@@ -371,13 +377,28 @@ public class RowDesc implements Observable {
     }
   }
 
+  /** Return property of column. The property is created by first call, changes of property are written back to row */
   public ObservableValue valueProperty(@Nonnull ColumnDesc columnDesc) {
-    return newValues[columnDesc.getPosition() - 1];
+    int i = columnDesc.getPosition() - 1;
+    if (properties == null) { properties = new ObservableValue[values.length]; }
+    if (properties[i] == null) {
+      ObservableValue<Object> property = createObjectProperty(columnDesc);
+      setPropertyValue(property, columnDesc, values[i]);
+      property.addListener((observable, oldValue, newValue) -> {
+        if (!AbstractHelper.nullEquals(oldValue, newValue)) {
+          setColumnValue(columnDesc, newValue);
+        }
+      });
+      properties[i] = property;
+    }
+    return properties[i];
   }
 
-  /** return true if value in column was changed */
+  /** return true if value in column was changed, in new row are all columns changed */
   public boolean isColumnChanged(ColumnDesc columnDesc) {
-    return !AbstractHelper.nullEquals(oldValues[columnDesc.getPosition() - 1], newValues[columnDesc.getPosition() - 1]);
+    if (state == RowDescState.NEW) { return true; }
+    int i = columnDesc.getPosition() - 1;
+    return oldValues != null && !AbstractHelper.nullEquals(oldValues[i], values[i]);
   }
 
   /** Insert into prepared statement initial value from current column
@@ -400,49 +421,7 @@ public class RowDesc implements Observable {
     putToPS(columnDesc, getColumnValue(columnDesc), ps, position);
   }
 
-  @SuppressWarnings("ConstantConditions")
-  private <T> void putToPS(ColumnDesc columnDesc, T value, PreparedStatement ps, int position) throws SQLException {
-    if (value == null) {
-      ps.setObject(position, null);
-      return;
-    }
-    BinaryData bd = value instanceof  BinaryData ? (BinaryData) value : null;
-    switch (columnDesc.getDataType()) {
-      case STRING: ps.setString(position, (String) value); break;
-      case BOOLEAN: ps.setBoolean(position, (Boolean) value); break;
-      case TIMESTAMP: ps.setTimestamp(position, (Timestamp) value); break;
-      case DATE: ps.setDate(position, (Date) value); break;
-      case TIME: ps.setTime(position, (Time) value); break;
-      case BYTE: ps.setByte(position, (Byte) value); break;
-      case SHORT: ps.setShort(position, (Short) value); break;
-      case INTEGER: ps.setInt(position, (Integer) value); break;
-      case LONG: ps.setLong(position, (Long) value); break;
-      case FLOAT: ps.setFloat(position, (Float) value); break;
-      case DOUBLE: ps.setDouble(position, (Double) value); break;
-      case DECIMAL: ps.setBigDecimal(position, (BigDecimal) value); break;
-      case UUID: ps.setBytes(position, AbstractHelper.uuidToByteArray((UUID) value)); break;
-      case ARRAY:
-        throw new UnsupportedOperationException("The saving changes in ARRAY isn't supported.");
-        // ps.setArray(position, (Array) value); break; // FIXME the value isn't in type java.sql.Array
-      case BYTE_ARRAY:
-        if (bd == null || bd.isNull()) { ps.setBytes(position, null); }
-        else {
-          try {
-            ps.setBytes(position, IOUtils.toByteArray(bd.getInputStream()));
-          } catch (IOException e) {
-            throw new SQLException(e);
-          }
-        }
-        break;
-      case CLOB:
-        if (bd == null || bd.isNull()) { ps.setNull(position, Types.CLOB); }
-        else { ps.setClob(position, bd.getReader()); }
-        break;
-      case BLOB:
-        if (bd == null || bd.isNull()) { ps.setNull(position, Types.BLOB);
-        } else { ps.setBlob(position, bd.getInputStream()); }
-        break;
-      case OBJECT: ps.setObject(position, value);
-    }
+  static <T> void putToPS(ColumnDesc columnDesc, T value, PreparedStatement ps, int position) throws SQLException {
+    columnDesc.getCodec().write(ps, position, value);
   }
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import cz.lbenda.common.ByteArrayBinaryData;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.*;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Temporary file to which are written rows which don't fit to memory. The rows are written in blocks, the offset of
+ * every block is remembered and the block is read back by mapping of its part of file to memory. Few last read blocks
+ * are cached, so the sequential reading (scrolling of table, export) map every block only once. The values which
+ * can't be written to file (lazy loaded BLOB, CLOB) stay in memory. */
+public class RowSpillFile implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RowSpillFile.class);
+
+  /** Count of rows in one block */
+  public static final int BLOCK_SIZE = 1024;
+  /** Count of blocks which are cached */
+  private static final int CACHED_BLOCKS = 4;
+
+  private static final byte NULL = 0;
+  private static final byte INTEGER = 1;
+  private static final byte LONG = 2;
+  private static final byte SHORT = 3;
+  private static final byte BYTE = 4;
+  private static final byte FLOAT = 5;
+  private static final byte DOUBLE = 6;
+  private static final byte BOOLEAN = 7;
+  private static final byte STRING = 8;
+  private static final byte DATE = 9;
+  private static final byte TIME = 10;
+  private static final byte TIMESTAMP = 11;
+  private static final byte DECIMAL = 12;
+  private static final byte UUID = 13;
+  private static final byte BYTE_ARRAY = 14;
+  /** The value is hold in memory */
+  private static final byte IN_MEMORY = 15;
+
+  private final int columnCount;
+  private final File file;
+  private final FileChannel channel;
+  /** Offsets of written blocks in file, the last item is end of file */
+  private long[] blockOffsets = new long[64];
+  private int writtenBlocks;
+  /** Rows of block which isn't written yet */
+  private Object[][] pending = new Object[BLOCK_SIZE][];
+  private int pendingSize;
+  /** Values which can't be written to file, the key is index of row multiplied by count of columns plus column */
+  private final Map<Long, Object> inMemory = new HashMap<>();
+  @SuppressWarnings("serial")
+  private final Map<Integer, Object[][]> cache = new LinkedHashMap<Integer, Object[][]>(CACHED_BLOCKS, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) { return size() > CACHED_BLOCKS; }
+  };
+
+  /** Create new temporary file
+   * @param columnCount count of columns in every row */
+  public RowSpillFile(int columnCount) throws IOException {
+    this.columnCount = columnCount;
+    file = File.createTempFile("dataman", ".rows");
+    file.deleteOnExit(); // When the file isn't closed before exit of application
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  /** Count of rows in file */
+  public synchronized int size() { return writtenBlocks * BLOCK_SIZE + pendingSize; }
+
+  /** Append row to file */
+  public synchronized void add(Object[] values) throws IOException {
+    pending[pendingSize++] = values;
+    if (pendingSize == BLOCK_SIZE) { writePending(); }
+  }
+
+  /** Return values of row, the returned array can't be changed */
+  public synchronized Object[] get(int row) throws IOException {
+    int block = row / BLOCK_SIZE;
+    if (block == writtenBlocks) { return pending[row % BLOCK_SIZE]; }
+    Object[][] rows = cache.get(block);
+    if (rows == null) {
+      rows = readBlock(block);
+      cache.put(block, rows);
+    }
+    return rows[row % BLOCK_SIZE];
+  }
+
+  private void writePending() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(BLOCK_SIZE * columnCount * 8);
+    DataOutputStream out = new DataOutputStream(bytes);
+    long firstRow = (long) writtenBlocks * BLOCK_SIZE;
+    for (int r = 0; r < pendingSize; r++) {
+      for (int c = 0; c < columnCount; c++) { writeValue(out, firstRow + r, c, pending[r][c]); }
+    }
+    out.flush();
+    ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+    long position = blockOffsets[writtenBlocks];
+    while (buffer.hasRemaining()) { position += channel.write(buffer, position); }
+    writtenBlocks++;
+    if (writtenBlocks + 1 >= blockOffsets.length) { blockOffsets = Arrays.copyOf(blockOffsets, blockOffsets.length * 2); }
+    blockOffsets[writtenBlocks] = position;
+    pending = new Object[BLOCK_SIZE][];
+    pendingSize = 0;
+  }
+
+  private void writeValue(DataOutputStream out, long row, int column, Object value) throws IOException {
+    if (value == null) { out.writeByte(NULL); }
+    else if (value instanceof Integer) { out.writeByte(INTEGER); out.writeInt((Integer) value); }
+    else if (value instanceof Long) { out.writeByte(LONG); out.writeLong((Long) value); }
+    else if (value instanceof Short) { out.writeByte(SHORT); out.writeShort((Short) value); }
+    else if (value instanceof Byte) { out.writeByte(BYTE); out.writeByte((Byte) value); }
+    else if (value instanceof Float) { out.writeByte(FLOAT); out.writeFloat((Float) value); }
+    else if (value instanceof Double) { out.writeByte(DOUBLE); out.writeDouble((Double) value); }
+    else if (value instanceof Boolean) { out.writeByte(BOOLEAN); out.writeBoolean((Boolean) value); }
+    else if (value instanceof String) { out.writeByte(STRING); writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8)); }
+    else if (value.getClass() == java.sql.Date.class) { out.writeByte(DATE); out.writeLong(((java.sql.Date) value).getTime()); }
+    else if (value.getClass() == Time.class) { out.writeByte(TIME); out.writeLong(((Time) value).getTime()); }
+    else if (value.getClass() == Timestamp.class) {
+      out.writeByte(TIMESTAMP);
+      out.writeLong(((Timestamp) value).getTime());
+      out.writeInt(((Timestamp) value).getNanos());
+    } else if (value instanceof BigDecimal) {
+      out.writeByte(DECIMAL);
+      out.writeInt(((BigDecimal) value).scale());
+      writeBytes(out, ((BigDecimal) value).unscaledValue().toByteArray());
+    } else if (value instanceof java.util.UUID) {
+      out.writeByte(UUID);
+      out.writeLong(((java.util.UUID) value).getMostSignificantBits());
+      out.writeLong(((java.util.UUID) value).getLeastSignificantBits());
+    } else if (value.getClass() == ByteArrayBinaryData.class) {
+      ByteArrayBinaryData data = (ByteArrayBinaryData) value;
+      out.writeByte(BYTE_ARRAY);
+      writeBytes(out, data.getName().getBytes(StandardCharsets.UTF_8));
+      out.writeBoolean(data.isNull());
+      if (!data.isNull()) { writeBytes(out, IOUtils.toByteArray(data.getInputStream())); }
+    } else {
+      out.writeByte(IN_MEMORY);
+      inMemory.put(row * columnCount + column, value);
+    }
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private Object[][] readBlock(int block) throws IOException {
+    long offset = blockOffsets[block];
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, blockOffsets[block + 1] - offset);
+    try {
+      Object[][] result = new Object[BLOCK_SIZE][];
+      long firstRow = (long) block * BLOCK_SIZE;
+      for (int r = 0; r < BLOCK_SIZE; r++) {
+        Object[] values = new Object[columnCount];
+        for (int c = 0; c < columnCount; c++) { values[c] = readValue(buffer, firstRow + r, c); }
+        result[r] = values;
+      }
+      return result;
+    } finally {
+      unmap(buffer);
+    }
+  }
+
+  /** Release the mapping of block, so the file can be removed (on Windows the mapped file can't be removed) before
+   * the buffer is collected by GC. When the buffer can't be released, then it stays mapped until it's collected. */
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) { cleaner.getClass().getMethod("clean").invoke(cleaner); }
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOG.debug("The mapped block of file can't be released", e);
+    }
+  }
+
+  private Object readValue(ByteBuffer in, long row, int column) throws IOException {
+    byte type = in.get();
+    switch (type) {
+      case NULL: return null;
+      case INTEGER: return in.getInt();
+      case LONG: return in.getLong();
+      case SHORT: return in.getShort();
+      case BYTE: return in.get();
+      case FLOAT: return in.getFloat();
+      case DOUBLE: return in.getDouble();
+      case BOOLEAN: return in.get() != 0;
+      case STRING: return new String(readBytes(in), StandardCharsets.UTF_8);
+      case DATE: return new java.sql.Date(in.getLong());
+      case TIME: return new Time(in.getLong());
+      case TIMESTAMP:
+        Timestamp timestamp = new Timestamp(in.getLong());
+        timestamp.setNanos(in.getInt());
+        return timestamp;
+      case DECIMAL:
+        int scale = in.getInt();
+        return new BigDecimal(new BigInteger(readBytes(in)), scale);
+      case UUID: return new java.util.UUID(in.getLong(), in.getLong());
+      case BYTE_ARRAY:
+        String name = new String(readBytes(in), StandardCharsets.UTF_8);
+        return new ByteArrayBinaryData(name, in.get() != 0 ? null : readBytes(in));
+      case IN_MEMORY: return inMemory.get(row * columnCount + column);
+      default: throw new IOException("Unknown type of value " + type + " in file " + file);
+    }
+  }
+
+  private static byte[] readBytes(ByteBuffer in) {
+    byte[] result = new byte[in.getInt()];
+    in.get(result);
+    return result;
+  }
+
+  /** Close and remove the file, the blocks are already released after they are read */
+  @Override
+  public synchronized void close() {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      LOG.warn("The file with rows can't be closed: " + file, e);
+    }
+    cache.clear();
+    inMemory.clear();
+    if (!file.delete()) { LOG.warn("The file with rows can't be removed: " + file); }
+  }
+}
@@ -19,9 +19,21 @@ import cz.lbenda.dataman.db.dialect.SQLDialect;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
+import javax.annotation.Nonnull;
+import java.util.*;
+
 /** Created by Lukas Benda <lbenda @ lbenda.cz> on 13.9.15.
  * Result from SQL query which return rows */
 public class SQLQueryRows {
+
+  /** Listener which is informed about rows which was changed inside change block */
+  @FunctionalInterface
+  public interface RowsChangeListener {
+    /** Called once when the most outer change block is committed
+     * @param rows rows which state or values was changed in block */
+    void rowsChanged(@Nonnull Collection<RowDesc> rows);
+  }
+
   /** Dialect which rows extract */
   private SQLDialect dialect; public SQLDialect getDialect() { return dialect; } public void setDialect(SQLDialect dialect) { this.dialect = dialect; }
   /** SQL which was executed for getting this data */
@@ -30,4 +42,85 @@ public class SQLQueryRows {
   private SQLQueryMetaData metaData = new SQLQueryMetaData(); public SQLQueryMetaData getMetaData() { return metaData; }
   /** List of rows in result of SQL query */
   private ObservableList<RowDesc> rows = FXCollections.observableArrayList(); public ObservableList<RowDesc> getRows() { return rows; }
+
+  /** Listeners which are informed about changed rows in change block */
+  private final List<RowsChangeListener> rowsChangeListeners = new ArrayList<>();
+  /** Count of open change blocks */
+  private int changeDepth;
+  /** Rows changed in open change block, the rows are compared by identity */
+  private Set<RowDesc> changedRows = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  public void addRowsChangeListener(@Nonnull RowsChangeListener listener) { rowsChangeListeners.add(listener); }
+  public void removeRowsChangeListener(@Nonnull RowsChangeListener listener) { rowsChangeListeners.remove(listener); }
+
+  /** Open change block. The rows changed by {@link #setState(RowDesc, RowDesc.RowDescState)},
+   * {@link #cancelChanges(RowDesc)} and {@link #savedChanges(RowDesc)} inside block don't call its invalidation
+   * listeners, all changes are announced together to {@link RowsChangeListener} when the block is committed. The
+   * blocks can be nested. */
+  public void beginChange() {
+    changeDepth++;
+  }
+
+  /** Close change block, when the most outer block is closed, then the listeners are informed about changed rows */
+  public void commitChange() {
+    if (changeDepth == 0) { throw new IllegalStateException("The change block wasn't begun"); }
+    if (--changeDepth > 0 || changedRows.isEmpty()) { return; }
+    Collection<RowDesc> rows = Collections.unmodifiableSet(changedRows);
+    changedRows = Collections.newSetFromMap(new IdentityHashMap<>());
+    new ArrayList<>(rowsChangeListeners).forEach(listener -> listener.rowsChanged(rows));
+  }
+
+  /** Inform if some change block is open */
+  public boolean isInChange() { return changeDepth > 0; }
+
+  /** Set state of row, inside change block the change is announced when block is committed */
+  public void setState(@Nonnull RowDesc row, RowDesc.RowDescState state) {
+    if (changeDepth == 0) { row.setState(state); }
+    else {
+      row.changeState(state);
+      changedRows.add(row);
+    }
+  }
+
+  /** Set state of all rows in one change block */
+  public void setState(@Nonnull Collection<? extends RowDesc> rows, RowDesc.RowDescState state) {
+    beginChange();
+    try {
+      rows.forEach(row -> setState(row, state));
+    } finally {
+      commitChange();
+    }
+  }
+
+  /** Cancel changes of row, inside change block the change is announced when block is committed */
+  public void cancelChanges(@Nonnull RowDesc row) {
+    if (changeDepth == 0) { row.cancelChanges(); }
+    else {
+      row.revertChanges();
+      changedRows.add(row);
+    }
+  }
+
+  /** Mark changes of row as saved, inside change block the change is announced when block is committed */
+  public void savedChanges(@Nonnull RowDesc row) {
+    if (changeDepth == 0) { row.savedChanges(); }
+    else {
+      row.markSaved();
+      changedRows.add(row);
+    }
+  }
+
+  /** Hold the rows in {@link ColumnarRowStore}. The rows are read only, so it's used for rows which can't be
+   * changed. The columns in metadata must be set before this method is called.
+   * @param spillThreshold count of rows hold in memory, the next rows are written to temporary file. When lower then
+   *                       one, then all rows are hold in memory. */
+  public void useColumnarStore(int spillThreshold) {
+    rows = new ColumnarRowList(new ColumnarRowStore(metaData, spillThreshold));
+  }
+
+  /** Release the rows which are stored in {@link ColumnarRowStore}, e.g. remove the file with spilled rows. It's
+   * called when the rows aren't showed any more. */
+  public void close() {
+    if (rows instanceof ColumnarRowList) { ((ColumnarRowList) rows).getStore().close(); }
+  }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import cz.lbenda.dataman.Constants;
+import cz.lbenda.rcp.StatusHelper;
+import cz.lbenda.rcp.localization.Message;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Loader which read rows from result set and deliver them to observable list in chunks. Every chunk is delivered by
+ * one call of {@link Platform#runLater(Runnable)}, so the first rows are showed immediately and the GUI thread isn't
+ * flooded by event for every row. The rows are created by {@link PipelinedRowDecoder}. During loading the count of
+ * read rows and cancel button is showed in status bar. */
+public class StreamingRowLoader {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StreamingRowLoader.class);
+
+  @Message
+  public static final String MSG_LOADED_ROWS = "%s: %s rows loaded";
+  @Message
+  public static final String MSG_CANCELLED = "%s: loading was cancelled after %s rows";
+  @Message
+  public static final String BUTTON_CANCEL = "Cancel";
+
+  /** Default count of rows which are delivered at once */
+  public static final int DEFAULT_CHUNK_SIZE = 500;
+  /** Default time in milliseconds after which are read rows delivered, even if the chunk isn't full */
+  public static final long DEFAULT_CHUNK_TIME = 100;
+
+  private final String name;
+  private final SQLQueryMetaData metaData;
+  private final ObservableList<RowDesc> target;
+  /** Count of rows which are delivered at once */
+  private int chunkSize = DEFAULT_CHUNK_SIZE; public int getChunkSize() { return chunkSize; } public void setChunkSize(int chunkSize) { this.chunkSize = chunkSize; }
+  /** Time in milliseconds after which are read rows delivered */
+  private long chunkTime = DEFAULT_CHUNK_TIME; public long getChunkTime() { return chunkTime; } public void setChunkTime(long chunkTime) { this.chunkTime = chunkTime; }
+  /** Executor of delivery of chunk, in GUI it's platform thread, in headless mode is chunk delivered immediately */
+  private Consumer<Runnable> deliverer = Constants.HEADLESS ? Runnable::run : Platform::runLater;
+  public void setDeliverer(@Nonnull Consumer<Runnable> deliverer) { this.deliverer = deliverer; }
+
+  private final AtomicBoolean cancelled = new AtomicBoolean(false);
+  public boolean isCancelled() { return cancelled.get(); }
+  private final AtomicLong rowCount = new AtomicLong(); public long getRowCount() { return rowCount.get(); }
+  /** Statement which is just read, it's cancelled when user cancel the loading */
+  private volatile Statement statement;
+  /** Decoder which create rows from result set */
+  private final PipelinedRowDecoder decoder = new PipelinedRowDecoder(); public PipelinedRowDecoder getDecoder() { return decoder; }
+  /** Rows which wait for delivery */
+  private List<RowDesc> chunk = new ArrayList<>();
+  /** Time of last delivery of chunk */
+  private long lastDelivery;
+
+  /** Create loader
+   * @param name name of loaded data which is showed in status bar
+   * @param metaData metadata of rows
+   * @param target list to which are read rows added */
+  public StreamingRowLoader(String name, @Nonnull SQLQueryMetaData metaData, @Nonnull ObservableList<RowDesc> target) {
+    this.name = name;
+    this.metaData = metaData;
+    this.target = target;
+  }
+
+  /** Read all rows from result set. The method is blocking until all rows are read or the loading is cancelled.
+   * @param rs result set from which are rows read
+   * @return count of read rows */
+  public long load(@Nonnull ResultSet rs) throws SQLException {
+    statement = rs.getStatement();
+    lastDelivery = System.currentTimeMillis();
+    StatusHelper.getInstance().showCancel(this, BUTTON_CANCEL, this::cancel);
+    try {
+      decoder.decode(rs, metaData, rows -> {
+        chunk.addAll(rows);
+        rowCount.addAndGet(rows.size());
+        if (chunk.size() >= chunkSize || System.currentTimeMillis() - lastDelivery >= chunkTime) { deliver(); }
+      }, cancelled::get);
+      deliver();
+    } catch (SQLException e) {
+      if (!cancelled.get()) { throw e; }
+      LOG.debug("The statement was cancelled", e);
+    } finally {
+      statement = null;
+      StatusHelper.getInstance().hideCancel(this);
+      StatusHelper.getInstance().showMessage(String.format(cancelled.get() ? MSG_CANCELLED : MSG_LOADED_ROWS,
+          name, rowCount.get()));
+    }
+    return rowCount.get();
+  }
+
+  private void deliver() {
+    lastDelivery = System.currentTimeMillis();
+    if (chunk.isEmpty()) { return; }
+    List<RowDesc> delivered = chunk;
+    chunk = new ArrayList<>(chunkSize);
+    deliverer.accept(() -> target.addAll(delivered));
+    StatusHelper.getInstance().showMessage(String.format(MSG_LOADED_ROWS, name, rowCount.get()));
+  }
+
+  /** Stop loading of rows. The rows which was already read stay in list. */
+  public void cancel() {
+    cancelled.set(true);
+    Statement st = statement;
+    if (st != null) {
+      try {
+        st.cancel();
+      } catch (SQLException e) {
+        LOG.debug("The statement can't be cancelled", e);
+      }
+    }
+  }
+}
@@ -27,6 +27,7 @@ import javafx.collections.ObservableList;
 
 import javax.annotation.Nonnull;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /** Main object which hold all information about database table structure
@@ -74,7 +75,9 @@ public class TableDesc extends AbstractSavable implements Comparable<TableDesc>
   /** Audit configuration for this table */
   private AuditType audit = TableDescriptionExtension.NONE_AUDIT; public final AuditType getAudit() { return audit; } public final void setAudit(AuditType audit) { this.audit = audit; }
 
-  /** Inform about dirty state of table */
+  /** Unsaved rows of table */
+  private final RowChangeSet changeSet = new RowChangeSet(); public @Nonnull RowChangeSet getChangeSet() { return changeSet; }
+  /** Inform about dirty state of table, it's bound to dirty state of change set */
   private BooleanProperty dirty = new SimpleBooleanProperty(false);
   public @Nonnull BooleanProperty dirtyProperty() { return dirty; }
   @SuppressWarnings("unused")
@@ -85,33 +88,26 @@ public class TableDesc extends AbstractSavable implements Comparable<TableDesc>
   @SuppressWarnings("unused")
   public ObjectProperty<Boolean> loadedProperty() { return loaded; }
   public boolean isLoaded() { return Boolean.TRUE.equals(loaded.getValue()); }
+  /** Inform if all rows of table was read from database */
+  private BooleanProperty allRowsLoaded = new SimpleBooleanProperty(false);
+  public BooleanProperty allRowsLoadedProperty() { return allRowsLoaded; }
+  public boolean isAllRowsLoaded() { return allRowsLoaded.get(); }
+  /** Position of reading of rows from database, new cursor is created by every reload. The page which was read by
+   * older cursor isn't added to rows. */
+  private volatile PageCursor cursor = new PageCursor();
+  /** Filter and order of rows which is evaluated by database */
+  private volatile TableQuery query = new TableQuery(); public @Nonnull TableQuery getQuery() { return query; }
 
   public TableDesc(SchemaDesc schema, String tableType, String name) {
     this.schema = schema;
     this.name = name;
     if (tableType != null) { this.tableType = TableType.fromJDBC(tableType); }
     rows = new SQLQueryRows();
+    dirty.bind(changeSet.dirtyProperty());
     rows.getRows().addListener((ListChangeListener<RowDesc>) change -> {
       while (change.next()) {
-        if (change.wasAdded()) {
-          change.getAddedSubList().forEach(row -> {
-            if (row.getState() != RowDesc.RowDescState.LOADED) {
-              dirty.setValue(true);
-            }
-            row.addListener((observable) -> {
-              RowDesc currRow = (RowDesc) observable;
-              if (currRow.getState() != RowDesc.RowDescState.LOADED) {
-                dirty.setValue(true);
-              } else {
-                dirty.setValue(!getRows().stream().allMatch(tr -> tr.getState() == RowDesc.RowDescState.LOADED));
-              }
-            });
-          });
-        } else if (change.wasRemoved()) {
-          if (!change.getRemoved().stream().allMatch(row -> row.getState() == RowDesc.RowDescState.LOADED)) {
-            dirty.setValue(!getRows().stream().allMatch(row -> row.getState() == RowDesc.RowDescState.LOADED));
-          }
-        }
+        if (change.wasRemoved()) { change.getRemoved().forEach(changeSet::remove); }
+        if (change.wasAdded()) { change.getAddedSubList().forEach(changeSet::add); }
       }
     });
     loaded.addListener((observable, oldValue, newValue) -> {
@@ -174,26 +170,133 @@ public class TableDesc extends AbstractSavable implements Comparable<TableDesc>
   /** Cancel changes in all rows */
   @SuppressWarnings("unused")
   public void cancelChangesAction() {
-    for (Iterator<RowDesc> itt = getRows().iterator(); itt.hasNext(); ) {
-      RowDesc rowDesc = itt.next();
-      if (RowDesc.RowDescState.NEW.equals(rowDesc.getState())) { itt.remove(); }
-      else if (!RowDesc.RowDescState.LOADED.equals(rowDesc.getState())) { rowDesc.cancelChanges(); }
+    Set<RowDesc> newRows = Collections.newSetFromMap(new IdentityHashMap<>());
+    newRows.addAll(changeSet.getInserted());
+    rows.beginChange();
+    try {
+      changeSet.getUpdated().forEach(rows::cancelChanges);
+      changeSet.getRemoved().forEach(rows::cancelChanges);
+      if (!newRows.isEmpty()) { getRows().removeAll(newRows); }
+    } finally {
+      rows.commitChange();
     }
   }
 
-  /** Reload all data from database - remove changes as part of */
+  /** Reload all data from database - remove changes as part of. Only the first page of rows is read, the next
+   * pages are read by {@link #loadNextPageAction()} */
   public void reloadRowsAction() {
-    getRows().clear();
+    reloadRowsAction(Runnable::run);
+  }
+
+  /** Reload all data from database. The rows are read on calling thread and they replace the rows of table in
+   * runnable which is given to deliverer, so the rows can be read on background thread and given to platform thread
+   * by {@code Platform::runLater}.
+   * @param deliverer deliverer of change of rows */
+  public void reloadRowsAction(@Nonnull Consumer<Runnable> deliverer) {
+    PageCursor cursor = new PageCursor();
+    this.cursor = cursor;
     if (dbConfig.getConnectionProvider() == null ||
         !dbConfig.getConnectionProvider().isConnected()) {
       ConnectionProvider.notConnectedDialog(dbConfig);
     }
     if (dbConfig.getConnectionProvider() != null &&
         dbConfig.getConnectionProvider().isConnected()) {
-      dbConfig.getReader().readTableData(this, -1, -1).forEach(row -> getRows().add(row));
+      loadPage(deliverer, cursor, true);
+      cursor.loaded = true;
       this.getQueryRow().setSQL(String.format("select * from \"%s\".\"%s\"", getSchema().getName(), getName()));
-      this.loaded.setValue(Boolean.TRUE);
+      deliverer.accept(() -> this.loaded.setValue(Boolean.TRUE));
+    } else {
+      deliverer.accept(() -> clearLoadedRows(cursor));
+    }
+  }
+
+  /** Set filter and order of rows which is evaluated by database and reload rows of table
+   * @param query new filter and order of rows */
+  public void queryRowsAction(@Nonnull TableQuery query) {
+    queryRowsAction(query, Runnable::run);
+  }
+
+  /** Set filter and order of rows which is evaluated by database and reload rows of table, see
+   * {@link #reloadRowsAction(Consumer)}
+   * @param query new filter and order of rows
+   * @param deliverer deliverer of change of rows */
+  public void queryRowsAction(@Nonnull TableQuery query, @Nonnull Consumer<Runnable> deliverer) {
+    this.query = query;
+    reloadRowsAction(deliverer);
+  }
+
+  /** Read next page of rows from database and append them to rows of table
+   * @return true when some row was read */
+  public boolean loadNextPageAction() {
+    return loadNextPageAction(Runnable::run);
+  }
+
+  /** Read next page of rows from database on calling thread, the rows are appended to rows of table in runnable which
+   * is given to deliverer. Only one page can be read in same time and the pages must be read on same thread as
+   * reload, so the page follow after rows of last reload.
+   * @param deliverer deliverer of change of rows
+   * @return true when some row was read */
+  public boolean loadNextPageAction(@Nonnull Consumer<Runnable> deliverer) {
+    PageCursor cursor = this.cursor;
+    if (!cursor.loaded || cursor.allRowsLoaded) { return false; }
+    return loadPage(deliverer, cursor, false);
+  }
+
+  /** Remove all rows, when the cursor is still the actual one */
+  private void clearLoadedRows(PageCursor cursor) {
+    if (cursor != this.cursor) { return; }
+    getRows().clear();
+    allRowsLoaded.set(false);
+  }
+
+  /** Read page of rows which follow after already read rows. When table have primary key and the rows aren't ordered
+   * by query, then the rows are read by keyset, else by offset. When the paging is switched off, the whole table is
+   * streamed to rows in chunks.
+   * @param deliverer deliverer of change of rows
+   * @param cursor cursor of reload for which is page read, it's moved after the read rows on calling thread
+   * @param first when true the first page is read and it replace the read rows */
+  private boolean loadPage(Consumer<Runnable> deliverer, PageCursor cursor, boolean first) {
+    int pageSize = dbConfig.getPageSize();
+    if (pageSize <= 0) {
+      if (first) { deliverer.accept(() -> clearLoadedRows(cursor)); }
+      StreamingRowLoader loader = new StreamingRowLoader(getName(), rows.getMetaData(), getRows());
+      loader.setDeliverer(deliverer);
+      long count = dbConfig.getReader().streamTableData(this, loader);
+      cursor.loadedRowCount += count;
+      cursor.allRowsLoaded = true;
+      deliverer.accept(() -> {
+        if (cursor == this.cursor) { allRowsLoaded.set(true); }
+      });
+      return count > 0;
     }
+    int from = cursor.loadedRowCount;
+    List<RowDesc> page;
+    if (!getPKColumns().isEmpty() && query.getOrders().isEmpty()) {
+      page = dbConfig.getReader().readTableDataAfter(this, cursor.lastLoadedRow, pageSize);
+    } else { page = dbConfig.getReader().readTableData(this, from, from + pageSize); }
+    cursor.loadedRowCount += page.size();
+    if (!page.isEmpty()) { cursor.lastLoadedRow = page.get(page.size() - 1); }
+    cursor.allRowsLoaded = page.size() < pageSize;
+    deliverer.accept(() -> {
+      if (first) { clearLoadedRows(cursor); }
+      if (cursor != this.cursor) { return; }
+      getRows().addAll(page);
+      allRowsLoaded.set(cursor.allRowsLoaded);
+    });
+    return !page.isEmpty();
+  }
+
+  /** Position of reading of rows from database. The cursor is changed only by thread which read the rows, the
+   * properties of table are changed by deliverer. */
+  private static final class PageCursor {
+    /** Count of rows which was read from database */
+    private int loadedRowCount;
+    /** Last row which was read from database, the rows of next page follow after it */
+    private RowDesc lastLoadedRow;
+    /** Inform if the first page was read */
+    private volatile boolean loaded;
+    /** Inform if all rows of table was read from database */
+    private volatile boolean allRowsLoaded;
   }
 
   /** Save all changes to database */
@@ -202,6 +305,14 @@ public class TableDesc extends AbstractSavable implements Comparable<TableDesc>
     unregister();
   }
 
+  /** Save all changes of given tables to database in one transaction
+   * @param dbConfig configuration of database which contains the tables
+   * @param tables tables which are saved */
+  public static void saveChangesAction(@Nonnull DbConfig dbConfig, @Nonnull Collection<TableDesc> tables) {
+    dbConfig.getDbRowManipulator().saveChanges(tables);
+    tables.forEach(TableDesc::unregister);
+  }
+
   /** Inform if table is editable. But event the table is editable can contains some uneditable column */
   public boolean isEditable() {
     return this.getTableType() == TableType.TABLE;
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import javax.annotation.Nonnull;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Filter and order of rows of table which is evaluated by database. The filter is translated to WHERE clause with
+ * parameters and the order to ORDER BY clause. */
+public class TableQuery {
+
+  /** Condition which accept only rows with one of given values in column, or when the condition is excluding, the
+   * rows with any other value */
+  public static class ColumnCondition {
+    private final ColumnDesc column; public ColumnDesc getColumn() { return column; }
+    private final Set<Object> values; public Set<Object> getValues() { return values; }
+    /** When true, the rows with given values are rejected */
+    private final boolean excluding; public boolean isExcluding() { return excluding; }
+    public ColumnCondition(@Nonnull ColumnDesc column, @Nonnull Collection<?> values) {
+      this(column, values, false);
+    }
+    public ColumnCondition(@Nonnull ColumnDesc column, @Nonnull Collection<?> values, boolean excluding) {
+      this.column = column;
+      this.values = new LinkedHashSet<>(values);
+      this.excluding = excluding;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof ColumnCondition)) { return false; }
+      ColumnCondition other = (ColumnCondition) o;
+      return column.equals(other.column) && values.equals(other.values) && excluding == other.excluding;
+    }
+    @Override
+    public int hashCode() { return 31 * (31 * column.hashCode() + values.hashCode()) + (excluding ? 1 : 0); }
+  }
+
+  /** Order of rows by values in column */
+  public static class ColumnOrder {
+    private final ColumnDesc column; public ColumnDesc getColumn() { return column; }
+    private final boolean ascending; public boolean isAscending() { return ascending; }
+    public ColumnOrder(@Nonnull ColumnDesc column, boolean ascending) {
+      this.column = column;
+      this.ascending = ascending;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof ColumnOrder)) { return false; }
+      return column.equals(((ColumnOrder) o).column) && ascending == ((ColumnOrder) o).ascending;
+    }
+    @Override
+    public int hashCode() { return 31 * column.hashCode() + (ascending ? 1 : 0); }
+  }
+
+  private final List<ColumnCondition> conditions = new ArrayList<>(); public List<ColumnCondition> getConditions() { return conditions; }
+  private final List<ColumnOrder> orders = new ArrayList<>(); public List<ColumnOrder> getOrders() { return orders; }
+
+  /** Inform if the values of column can be compared by database, the binary and object columns can't be */
+  public static boolean isComparable(@Nonnull ColumnDesc column) {
+    switch (column.getDataType()) {
+      case BLOB:
+      case CLOB:
+      case BYTE_ARRAY:
+      case BIT_ARRAY:
+      case ARRAY:
+      case OBJECT:
+        return false;
+      default:
+        return true;
+    }
+  }
+
+  public boolean isEmpty() { return conditions.isEmpty() && orders.isEmpty(); }
+
+  /** Condition for WHERE clause, or empty string when there is no condition */
+  public String where() {
+    StringBuilder result = new StringBuilder();
+    for (ColumnCondition condition : conditions) {
+      if (result.length() > 0) { result.append(" AND "); }
+      String name = condition.getColumn().getName();
+      long count = condition.getValues().stream().filter(Objects::nonNull).count();
+      boolean withNull = condition.getValues().contains(null);
+      if (condition.isExcluding()) { result.append(excludingWhere(name, count, withNull)); continue; }
+      if (count == 0 && !withNull) { result.append("1 = 0"); continue; }
+      result.append("(");
+      if (count > 0) {
+        result.append(String.format("\"%s\" IN (", name));
+        for (int i = 0; i < count; i++) { result.append(i == 0 ? "?" : ", ?"); }
+        result.append(")");
+      }
+      if (withNull) { result.append(count > 0 ? " OR " : "").append(String.format("\"%s\" IS NULL", name)); }
+      result.append(")");
+    }
+    return result.toString();
+  }
+
+  /** Condition which reject rows with given values, the null values are accepted unless the null is rejected */
+  private static String excludingWhere(String name, long count, boolean withNull) {
+    if (count == 0) { return withNull ? String.format("\"%s\" IS NOT NULL", name) : "1 = 1"; }
+    StringBuilder result = new StringBuilder(String.format("(\"%s\" NOT IN (", name));
+    for (int i = 0; i < count; i++) { result.append(i == 0 ? "?" : ", ?"); }
+    result.append(withNull ? String.format(") AND \"%s\" IS NOT NULL)", name) : String.format(") OR \"%s\" IS NULL)", name));
+    return result.toString();
+  }
+
+  /** Columns for ORDER BY clause, or empty string when there is no order */
+  public String orderBy() {
+    StringBuilder result = new StringBuilder();
+    for (ColumnOrder order : orders) {
+      if (result.length() > 0) { result.append(", "); }
+      result.append(String.format("\"%s\" %s", order.getColumn().getName(), order.isAscending() ? "ASC" : "DESC"));
+    }
+    return result.toString();
+  }
+
+  /** Set values of conditions to prepared statement
+   * @param ps prepared statement with SQL which contains {@link #where()}
+   * @param position position of first parameter
+   * @return position of next parameter */
+  public int setParameters(PreparedStatement ps, int position) throws SQLException {
+    for (ColumnCondition condition : conditions) {
+      for (Object value : condition.getValues()) {
+        if (value != null) { RowDesc.putToPS(condition.getColumn(), value, ps, position++); }
+      }
+    }
+    return position;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof TableQuery)) { return false; }
+    return conditions.equals(((TableQuery) o).conditions) && orders.equals(((TableQuery) o).orders);
+  }
+  @Override
+  public int hashCode() { return 31 * conditions.hashCode() + orders.hashCode(); }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db.audit;
+
+import cz.lbenda.dataman.schema.exconf.AuditOverflowType;
+import cz.lbenda.dataman.schema.exconf.AuditWriterType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Writer which write audit records in own thread. The records wait in bounded queue and the thread write them in
+ * batches in same order as they was submitted. The batch is written when it has batch size, or when no next record
+ * come in flush interval after first record of batch. When the queue is full, the submitter wait or the record is
+ * dropped by overflow policy. The remaining records are written when the writer is closed or the JVM shutdown.
+ * @param <T> type of audit record */
+public class AsyncAuditWriter<T> implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncAuditWriter.class);
+
+  public static final int DEFAULT_QUEUE_SIZE = 10000;
+  public static final int DEFAULT_BATCH_SIZE = 100;
+  public static final int DEFAULT_FLUSH_INTERVAL = 200;
+  /** Time in milliseconds after which the blocked submitter check if the writer thread still run */
+  private static final long ALIVE_CHECK_INTERVAL = 100;
+
+  /** Object which write batch of audit records */
+  @FunctionalInterface
+  public interface Sink<T> {
+    /** Write records, the list is valid only inside this method */
+    void write(List<T> records) throws Exception;
+  }
+
+  /** Marker in queue on which the writer write already collected records and inform waiting thread */
+  private static final class Marker {
+    private final boolean stop;
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private Marker(boolean stop) { this.stop = stop; }
+  }
+
+  private final Sink<T> sink;
+  private final BlockingQueue<Object> queue;
+  private final int batchSize; public int getBatchSize() { return batchSize; }
+  private final long flushInterval; public long getFlushInterval() { return flushInterval; }
+  private final AuditOverflowType overflow; public AuditOverflowType getOverflow() { return overflow; }
+  private final AtomicLong dropped = new AtomicLong(); public long getDropped() { return dropped.get(); }
+  private final Thread writer;
+  private final Thread shutdownHook;
+  private volatile boolean closed; public boolean isClosed() { return closed; }
+  /** Submitters enqueue under read lock, close take write lock, so no record can come to queue after stop marker */
+  private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+  /** Create writer with configuration from audit configuration
+   * @param name name of writer thread
+   * @param config configuration of writer, when null then the default values are used
+   * @param sink object which write batches */
+  public AsyncAuditWriter(@Nonnull String name, AuditWriterType config, @Nonnull Sink<T> sink) {
+    this(name, config == null || config.getQueueSize() == null ? DEFAULT_QUEUE_SIZE : config.getQueueSize(),
+        config == null || config.getBatchSize() == null ? DEFAULT_BATCH_SIZE : config.getBatchSize(),
+        config == null || config.getFlushInterval() == null ? DEFAULT_FLUSH_INTERVAL : config.getFlushInterval(),
+        config == null || config.getOverflow() == null ? AuditOverflowType.BLOCK : config.getOverflow(), sink);
+  }
+
+  /** Create writer
+   * @param name name of writer thread
+   * @param queueSize max count of records which wait for writing
+   * @param batchSize max count of records written in one batch
+   * @param flushInterval time in milliseconds how long the writer wait for next records of batch
+   * @param overflow what happens with record when the queue is full
+   * @param sink object which write batches */
+  public AsyncAuditWriter(@Nonnull String name, int queueSize, int batchSize, long flushInterval,
+                          @Nonnull AuditOverflowType overflow, @Nonnull Sink<T> sink) {
+    this.sink = sink;
+    this.queue = new LinkedBlockingQueue<>(Math.max(1, queueSize));
+    this.batchSize = Math.max(1, batchSize);
+    this.flushInterval = Math.max(0, flushInterval);
+    this.overflow = overflow;
+    writer = new Thread(this::run, name);
+    writer.setDaemon(true);
+    writer.start();
+    shutdownHook = new Thread(this::close, name + "-shutdown");
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+  }
+
+  /** Add record to queue. When the writer is closed or its thread finished, then the record is written immediately. */
+  public void submit(@Nonnull T record) {
+    closeLock.readLock().lock();
+    try {
+      if (closed || !enqueue(record, overflow != AuditOverflowType.DROP)) {
+        writeBatch(Collections.singletonList(record));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      long count = dropped.incrementAndGet();
+      LOG.error(String.format("Waiting for audit queue of %s was interrupted, %s audit records was dropped",
+          writer.getName(), count), e);
+    } finally {
+      closeLock.readLock().unlock();
+    }
+  }
+
+  /** Put item to queue
+   * @param item item which is put to queue
+   * @param block when true, then wait until the queue have space, else the item is dropped when the queue is full
+   * @return false when the writer thread finished and the item isn't in queue, true when the item is in queue or
+   * was dropped */
+  private boolean enqueue(Object item, boolean block) throws InterruptedException {
+    if (!writer.isAlive()) { return false; }
+    if (block) {
+      while (!queue.offer(item, ALIVE_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+        if (!writer.isAlive()) { return false; }
+      }
+    } else if (!queue.offer(item)) {
+      long count = dropped.incrementAndGet();
+      LOG.warn(String.format("The audit queue of %s is full, %s audit records was dropped", writer.getName(), count));
+      return true;
+    }
+    // The writer thread can finish between check and offer, then nobody take the item from queue
+    return writer.isAlive() || !queue.remove(item);
+  }
+
+  /** Wait until all records which was submitted before are written */
+  public void flush() {
+    if (closed) { return; }
+    await(new Marker(false));
+  }
+
+  /** Write all waiting records and stop the writer thread */
+  @Override
+  public void close() {
+    closeLock.writeLock().lock();
+    try {
+      if (closed) { return; }
+      closed = true;
+    } finally {
+      closeLock.writeLock().unlock();
+    }
+    await(new Marker(true));
+    if (Thread.currentThread() != shutdownHook) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException e) {
+        LOG.debug("The JVM is shutting down, the hook can't be removed", e);
+      }
+    }
+  }
+
+  private void await(Marker marker) {
+    try {
+      if (enqueue(marker, true)) { marker.latch.await(); }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.error("Waiting for writing of audit records was interrupted", e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void run() {
+    List<T> batch = new ArrayList<>(batchSize);
+    Marker marker = null;
+    try {
+      while (marker == null || !marker.stop) {
+        marker = null;
+        Object item = queue.take();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        while (item != null) {
+          if (item instanceof Marker) { marker = (Marker) item; break; }
+          batch.add((T) item);
+          if (batch.size() >= batchSize) { break; }
+          item = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        writeBatch(batch);
+        batch.clear();
+        if (marker != null) { marker.latch.countDown(); }
+      }
+    } catch (InterruptedException e) {
+      LOG.error("The audit writer " + writer.getName() + " was interrupted", e);
+    }
+    // The records and markers which come after stop or interruption
+    List<Object> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    remaining.stream().filter(item -> !(item instanceof Marker)).forEach(item -> batch.add((T) item));
+    writeBatch(batch);
+    remaining.stream().filter(item -> item instanceof Marker).forEach(item -> ((Marker) item).latch.countDown());
+  }
+
+  private void writeBatch(List<T> batch) {
+    if (batch.isEmpty()) { return; }
+    try {
+      sink.write(batch);
+    } catch (Exception e) {
+      LOG.error(String.format("The %s audit records wasn't written", batch.size()), e);
+    }
+  }
+}
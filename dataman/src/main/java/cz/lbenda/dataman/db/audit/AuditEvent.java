@@ -0,0 +1,123 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db.audit;
+
+import javax.annotation.Nonnull;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Audit information about one execution of SQL command. The parameters are captured by {@link #captureValue(Object)}
+ * when they are given to prepared statement, they are formatted only when the auditor need text of event. */
+public final class AuditEvent {
+
+  private static final ThreadLocal<DateFormat> DATE_FORMAT = new ThreadLocal<DateFormat>() {
+    public DateFormat initialValue() {
+      return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+    }
+  };
+
+  /** User which execute the command */
+  private final String user; public String getUser() { return user; }
+  /** Time of execution in milliseconds from epoch */
+  private final long time; public long getTime() { return time; }
+  /** Executed SQL commands, more then one only when batch of SQL commands without parameters is executed */
+  private final List<String> sqls; public @Nonnull List<String> getSqls() { return sqls; }
+  /** Parameters of every row of batch of prepared statement, the parameter with index i is on position i - 1 */
+  private final List<Object[]> parameters; public @Nonnull List<Object[]> getParameters() { return parameters; }
+  /** Count of affected rows by every SQL command or row of batch */
+  private final int[] affectedRows; public @Nonnull int[] getAffectedRows() { return affectedRows; }
+  /** Cached text of event */
+  private String plainText;
+
+  public AuditEvent(String user, long time, @Nonnull List<String> sqls, @Nonnull List<Object[]> parameters,
+                    @Nonnull int[] affectedRows) {
+    this.user = user;
+    this.time = time;
+    this.sqls = Collections.unmodifiableList(sqls);
+    this.parameters = Collections.unmodifiableList(parameters);
+    this.affectedRows = affectedRows;
+  }
+
+  /** Return value of parameter which can be hold by event and formatted later. The immutable values are returned as
+   * they are, the byte arrays and dates are copied, because they can be changed after the command is executed. The
+   * other values, e.g. LOBs and streams, are formatted immediately, so the event doesn't hold them. */
+  public static Object captureValue(Object value) {
+    if (value == null || value instanceof String || value instanceof Boolean || value instanceof Character
+        || value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+        || value instanceof Double || value instanceof Float || value instanceof BigDecimal
+        || value instanceof BigInteger || value instanceof UUID || value instanceof Enum
+        || value instanceof TemporalAccessor) {
+      return value;
+    }
+    if (value instanceof byte[]) { return ((byte[]) value).clone(); }
+    if (value instanceof java.util.Date) { return ((java.util.Date) value).clone(); }
+    return formatValue(value);
+  }
+
+  /** Return value of parameter as text */
+  public static String formatValue(Object value) {
+    if (value instanceof java.util.Date) { return DATE_FORMAT.get().format((java.util.Date) value); }
+    if (value instanceof byte[]) { return Arrays.toString((byte[]) value); }
+    if (value instanceof Object[]) { return Arrays.toString((Object[]) value); }
+    return String.valueOf(value);
+  }
+
+  /** Return event as plain text. The SQL commands are followed by parameters and count of affected rows. */
+  public String toPlainText() {
+    if (plainText == null) {
+      StringBuilder sb = new StringBuilder();
+      if (sqls.size() > 1) {
+        for (int i = 0; i < sqls.size(); i++) {
+          sb.append(sqls.get(i)).append("\n");
+          sb.append("Affected rows: ").append(affectedRow(i)).append("\n");
+        }
+      } else if (sqls.size() == 1) {
+        sb.append(sqls.get(0)).append("\n");
+        int j = 0;
+        for (Object[] row : parameters) {
+          if (row.length == 0) { continue; }
+          sb.append("[");
+          for (int i = 0; i < row.length; i++) {
+            if (i > 0) { sb.append(", "); }
+            sb.append(formatValue(row[i]));
+          }
+          sb.append("]\n");
+          sb.append("Affected rows: ").append(affectedRow(j)).append("\n");
+          j++;
+        }
+        if (j == 0) { sb.append("Affected rows: ").append(affectedRow(0)).append("\n"); } // No affected row was writen
+      }
+      plainText = sb.toString();
+    }
+    return plainText;
+  }
+
+  private int affectedRow(int index) {
+    if (affectedRows.length == 0) { return 0; }
+    return index < affectedRows.length ? affectedRows[index] : affectedRows[affectedRows.length - 1];
+  }
+
+  @Override
+  public String toString() { return toPlainText(); }
+}
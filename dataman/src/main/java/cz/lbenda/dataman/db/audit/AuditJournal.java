@@ -0,0 +1,164 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Append only journal of audit records. The records are written to memory mapped file, when the record doesn't fit
+ * to the file, then next file is created. The written records are forced to disk periodically, on rotation and on
+ * close. Every file starts with {@link #MAGIC} and the records follow. Every record starts with length of record,
+ * then time, length of user, user and text of audit in UTF-8. The length is written as last, so the record with zero
+ * length is end of file. The journal is read by {@link AuditJournalReader}. */
+public class AuditJournal implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AuditJournal.class);
+
+  /** First int of every journal file */
+  static final int MAGIC = 0x44414a31;
+  /** Size of header of file */
+  static final int HEADER_SIZE = 4;
+  static final String FILE_PREFIX = "audit-";
+  static final String FILE_SUFFIX = ".journal";
+
+  public static final long DEFAULT_FILE_SIZE = 64L * 1024 * 1024;
+  public static final long DEFAULT_SYNC_INTERVAL = 1000;
+
+  private final Path directory; public Path getDirectory() { return directory; }
+  private final long fileSize; public long getFileSize() { return fileSize; }
+  private long fileNumber;
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  private boolean dirty;
+  private boolean closed;
+  private final ScheduledExecutorService syncer;
+  private final Thread shutdownHook;
+
+  /** Open journal in directory, the records are appended to last file in directory
+   * @param directory directory with journal files
+   * @param fileSize size of one file in bytes
+   * @param syncInterval interval in milliseconds in which the records are forced to disk, when is lower then one, then
+   *                     the records are forced only on rotation and close */
+  public AuditJournal(@Nonnull Path directory, long fileSize, long syncInterval) throws IOException {
+    this.directory = directory;
+    this.fileSize = Math.min(Integer.MAX_VALUE, Math.max(1024, fileSize));
+    Files.createDirectories(directory);
+    List<Path> files = AuditJournalReader.journalFiles(directory);
+    fileNumber = files.isEmpty() ? 1 : AuditJournalReader.fileNumber(files.get(files.size() - 1));
+    open(this.fileSize);
+    syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "AuditJournal " + directory);
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (syncInterval > 0) { syncer.scheduleWithFixedDelay(this::sync, syncInterval, syncInterval, TimeUnit.MILLISECONDS); }
+    shutdownHook = new Thread(this::close, "AuditJournal " + directory + "-shutdown");
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+  }
+
+  /** Open file with current number, the existing file is open for append */
+  private void open(long size) throws IOException {
+    Path file = directory.resolve(String.format("%s%010d%s", FILE_PREFIX, fileNumber, FILE_SUFFIX));
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    boolean exists = channel.size() > 0;
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, exists ? channel.size() : size);
+    if (exists) {
+      if (buffer.getInt(0) != MAGIC) {
+        channel.close();
+        throw new IOException("The file " + file + " isn't audit journal");
+      }
+      buffer.position(AuditJournalReader.readRecords(buffer, null));
+    } else {
+      buffer.putInt(MAGIC);
+    }
+  }
+
+  /** Close current file and open next one which have place at least for given count of bytes */
+  private void rotate(int recordSize) throws IOException {
+    buffer.force();
+    channel.close();
+    fileNumber++;
+    open(Math.max(fileSize, (long) HEADER_SIZE + recordSize));
+    LOG.debug("The audit journal continue in file number " + fileNumber);
+  }
+
+  /** Append record to journal
+   * @param time time of audited event in milliseconds from epoch
+   * @param user user which do audited event
+   * @param text text of audit */
+  public void append(long time, String user, @Nonnull String text) throws IOException {
+    byte[] userBytes = user == null ? new byte[0] : user.getBytes(StandardCharsets.UTF_8);
+    byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+    int length = 8 + 4 + userBytes.length + textBytes.length;
+    synchronized (this) {
+      if (closed) { throw new IOException("The audit journal " + directory + " is closed"); }
+      if (buffer.remaining() < 4 + length) { rotate(4 + length); }
+      int position = buffer.position();
+      buffer.position(position + 4);
+      buffer.putLong(time).putInt(userBytes.length).put(userBytes).put(textBytes);
+      buffer.putInt(position, length); // The record is valid only when the length is written
+      dirty = true;
+    }
+  }
+
+  /** Force written records to disk */
+  public void sync() {
+    MappedByteBuffer toSync;
+    synchronized (this) {
+      if (!dirty || closed) { return; }
+      dirty = false;
+      toSync = buffer;
+    }
+    toSync.force();
+  }
+
+  @Override
+  public void close() {
+    syncer.shutdown();
+    synchronized (this) {
+      if (closed) { return; }
+      closed = true;
+      buffer.force();
+      try {
+        channel.close();
+      } catch (IOException e) {
+        LOG.error("The audit journal " + directory + " wasn't closed", e);
+      }
+    }
+    if (Thread.currentThread() != shutdownHook) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException e) {
+        LOG.debug("The JVM is shutting down, the hook can't be removed", e);
+      }
+    }
+  }
+}
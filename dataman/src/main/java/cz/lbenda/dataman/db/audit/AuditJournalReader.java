@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db.audit;
+
+import javax.annotation.Nonnull;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Reader of journal which is written by {@link AuditJournal}. The journal can be exported as text by
+ * <code>java cz.lbenda.dataman.db.audit.AuditJournalReader directory [outputFile]</code>. */
+public final class AuditJournalReader {
+
+  private AuditJournalReader() {}
+
+  /** One record of journal */
+  public static final class Record {
+    private final long time; public long getTime() { return time; }
+    private final String user; public String getUser() { return user; }
+    private final String text; public String getText() { return text; }
+    public Record(long time, String user, String text) {
+      this.time = time;
+      this.user = user;
+      this.text = text;
+    }
+  }
+
+  /** Return journal files in directory ordered by number of file */
+  static List<Path> journalFiles(@Nonnull Path directory) throws IOException {
+    if (!Files.isDirectory(directory)) { return new ArrayList<>(); }
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> {
+        String name = file.getFileName().toString();
+        return name.startsWith(AuditJournal.FILE_PREFIX) && name.endsWith(AuditJournal.FILE_SUFFIX);
+      }).sorted((f1, f2) -> Long.compare(fileNumber(f1), fileNumber(f2))).collect(Collectors.toList());
+    }
+  }
+
+  /** Return number of journal file */
+  static long fileNumber(@Nonnull Path file) {
+    String name = file.getFileName().toString();
+    return Long.parseLong(name.substring(AuditJournal.FILE_PREFIX.length(), name.length() - AuditJournal.FILE_SUFFIX.length()));
+  }
+
+  /** Read records from buffer with content of one journal file
+   * @param buffer buffer with journal file
+   * @param consumer consumer of records, can be null when only end of records is searched
+   * @return position after last record */
+  static int readRecords(@Nonnull ByteBuffer buffer, Consumer<Record> consumer) {
+    int position = AuditJournal.HEADER_SIZE;
+    while (position + 4 <= buffer.limit()) {
+      int length = buffer.getInt(position);
+      if (length < 12 || position + 4 + length > buffer.limit()) { break; }
+      if (consumer != null) {
+        long time = buffer.getLong(position + 4);
+        int userLength = buffer.getInt(position + 12);
+        byte[] user = new byte[userLength];
+        byte[] text = new byte[length - 12 - userLength];
+        ByteBuffer record = buffer.duplicate();
+        record.position(position + 16);
+        record.get(user).get(text);
+        consumer.accept(new Record(time, new String(user, StandardCharsets.UTF_8), new String(text, StandardCharsets.UTF_8)));
+      }
+      position += 4 + length;
+    }
+    return position;
+  }
+
+  /** Read all records from journal in order in which they was written
+   * @param directory directory with journal files
+   * @param consumer consumer of records */
+  public static void read(@Nonnull Path directory, @Nonnull Consumer<Record> consumer) throws IOException {
+    for (Path file : journalFiles(directory)) {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (buffer.limit() < AuditJournal.HEADER_SIZE || buffer.getInt(0) != AuditJournal.MAGIC) {
+          throw new IOException("The file " + file + " isn't audit journal");
+        }
+        readRecords(buffer, consumer);
+      }
+    }
+  }
+
+  /** Export all records from journal as text, every record starts by line with time and user
+   * @param directory directory with journal files
+   * @param writer writer to which is text written */
+  public static void export(@Nonnull Path directory, @Nonnull Writer writer) throws IOException {
+    DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+    try {
+      read(directory, record -> {
+        try {
+          writer.write(dateFormat.format(new Date(record.getTime())) + " " + record.getUser() + "\n");
+          writer.write(record.getText());
+          if (!record.getText().endsWith("\n")) { writer.write("\n"); }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    writer.flush();
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: AuditJournalReader directory [outputFile]");
+      System.exit(1);
+    }
+    if (args.length > 1) {
+      try (Writer writer = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+        export(Paths.get(args[0]), writer);
+      }
+    } else {
+      export(Paths.get(args[0]), new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+    }
+  }
+}
@@ -23,4 +23,13 @@ public interface Auditor {
    * @param user User which changed data
    * @param plainTextAudit String which is write to audit log */
   void writePlainTextAudit(String user, String plainTextAudit);
+
+  /** Write audit information about executed SQL command. The default implementation write the event as plain text.
+   * @param event information about executed command */
+  default void writeAudit(AuditEvent event) {
+    writePlainTextAudit(event.getUser(), event.toPlainText());
+  }
+
+  /** Inform if the auditor write anything, when not then the audit information needn't be collected */
+  default boolean isEnabled() { return true; }
 }
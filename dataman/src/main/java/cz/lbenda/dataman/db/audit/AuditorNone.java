@@ -27,5 +27,11 @@ public class AuditorNone implements Auditor {
    * @param plainTextAudit String which is write to audit log */
   public void writePlainTextAudit(String user, String plainTextAudit) {}
 
+  @Override
+  public void writeAudit(AuditEvent event) {}
+
+  @Override
+  public boolean isEnabled() { return false; }
+
   public static final AuditorNone getInstance() { return AUDITOR_NONE; }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db.audit;
+
+import cz.lbenda.dataman.schema.exconf.AuditFileType;
+import cz.lbenda.dataman.schema.exconf.AuditType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Auditor which write log to local {@link AuditJournal}. All auditors with same directory share one journal. */
+public class SqlLogToFileAuditor implements Auditor {
+
+  private static final Map<Path, SqlLogToFileAuditor> CACHED_AUDITORS = new HashMap<>();
+
+  private static Logger LOG = LoggerFactory.getLogger(SqlLogToFileAuditor.class);
+
+  private final AuditJournal journal; public AuditJournal getJournal() { return journal; }
+
+  public SqlLogToFileAuditor(AuditJournal journal) {
+    this.journal = journal;
+  }
+
+  @Override
+  public void writePlainTextAudit(String user, String plainTextAudit) {
+    append(System.currentTimeMillis(), user, plainTextAudit);
+  }
+
+  @Override
+  public void writeAudit(AuditEvent event) {
+    append(event.getTime(), event.getUser(), event.toPlainText());
+  }
+
+  private void append(long time, String user, String text) {
+    try {
+      journal.append(time, user, text);
+    } catch (IOException e) {
+      LOG.error("Problem with writing log to audit journal " + journal.getDirectory(), e);
+    }
+  }
+
+  public static SqlLogToFileAuditor getInstance(AuditType auditType) {
+    AuditFileType target = auditType.getTargetLogFile();
+    if (target == null) { throw new IllegalStateException("The targetLogFile isn't configured for audit to file"); }
+    Path directory = Paths.get(target.getDirectory()).toAbsolutePath().normalize();
+    synchronized (CACHED_AUDITORS) {
+      SqlLogToFileAuditor result = CACHED_AUDITORS.get(directory);
+      if (result == null) {
+        try {
+          result = new SqlLogToFileAuditor(new AuditJournal(directory,
+              target.getFileSize() == null ? AuditJournal.DEFAULT_FILE_SIZE : target.getFileSize(),
+              target.getSyncInterval() == null ? AuditJournal.DEFAULT_SYNC_INTERVAL : target.getSyncInterval()));
+        } catch (IOException e) {
+          LOG.error("The audit journal in " + directory + " can't be open", e);
+          throw new RuntimeException("The audit journal in " + directory + " can't be open", e);
+        }
+        CACHED_AUDITORS.put(directory, result);
+      }
+      return result;
+    }
+  }
+}
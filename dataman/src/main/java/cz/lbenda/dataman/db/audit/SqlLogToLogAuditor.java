@@ -33,5 +33,14 @@ public class SqlLogToLogAuditor implements Auditor {
     LOG.debug(user + ": " + plainTextAudit);
   }
 
+  /** Write audit information to the log, the event is formatted only when the debug level is enabled */
+  @Override
+  public void writeAudit(AuditEvent event) {
+    if (LOG.isDebugEnabled()) { writePlainTextAudit(event.getUser(), event.toPlainText()); }
+  }
+
+  @Override
+  public boolean isEnabled() { return LOG.isDebugEnabled(); }
+
   public static final SqlLogToLogAuditor getInstance() { return SQL_LOG_TO_LOG_AUDITOR; }
 }
@@ -24,12 +24,11 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.util.Date;
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.*;
 
 /** Created by Lukas Benda <lbenda @ lbenda.cz> on 4.9.15.
- * Auditor which write log to database */
+ * Auditor which write log to database. The logs are written by {@link AsyncAuditWriter} in batches, every batch is
+ * committed at once. */
 public class SqlLogToTableAuditor implements Auditor {
 
   private static final Map<AuditType, SqlLogToTableAuditor> CACHED_AUDITORS = new WeakHashMap<>();
@@ -38,37 +37,82 @@ public class SqlLogToTableAuditor implements Auditor {
   @SuppressWarnings("FieldCanBeLocal")
   private static String SQL_INSERT_LOG = "insert into %s (usr, created, log) values (?, ?, ?)";
 
+  /** Log which wait for writing to table, the log is given as text or as event which is formatted by writer */
+  private static final class AuditRecord {
+    private final String user;
+    private final Timestamp created;
+    private final String log;
+    private final AuditEvent event;
+    private AuditRecord(String user, Timestamp created, String log, AuditEvent event) {
+      this.user = user;
+      this.created = created;
+      this.log = log;
+      this.event = event;
+    }
+    private String log() { return event == null ? log : event.toPlainText(); }
+  }
+
   private final ConnectionProvider connectionProvider;
   private final AuditType auditType;
+  private final AsyncAuditWriter<AuditRecord> writer; public AsyncAuditWriter<?> getWriter() { return writer; }
 
   public SqlLogToTableAuditor(ConnectionProvider connectionProvider, AuditType auditType) {
     this.connectionProvider = connectionProvider;
     this.auditType = auditType;
+    this.writer = new AsyncAuditWriter<>("SqlLogToTableAuditor " + tableName(), auditType.getWriter(), this::writeRecords);
   }
 
-  @Override
-  public void writePlainTextAudit(String user, String plainTextAudit) {
+  private String tableName() {
     String tableName = "";
     if (auditType.getTargetLogTable().getCatalog() != null
         && !"".equals(auditType.getTargetLogTable().getCatalog().trim())) {
       tableName = auditType.getTargetLogTable().getCatalog() + ".";
     }
     tableName += auditType.getTargetLogTable().getSchema() + "." + auditType.getTargetLogTable().getTable();
+    return tableName;
+  }
+
+  @Override
+  public void writePlainTextAudit(String user, String plainTextAudit) {
+    writer.submit(new AuditRecord(connectionProvider.getUser().getUsername(), new Timestamp(System.currentTimeMillis()),
+        plainTextAudit, null));
+  }
 
+  @Override
+  public void writeAudit(AuditEvent event) {
+    writer.submit(new AuditRecord(connectionProvider.getUser().getUsername(), new Timestamp(event.getTime()),
+        null, event));
+  }
+
+  /** Write batch of logs in one transaction */
+  private void writeRecords(List<AuditRecord> records) throws SQLException {
     try (Connection conn = connectionProvider.getConnection()) {
-      try (PreparedStatement ps = conn.prepareCall(String.format(SQL_INSERT_LOG, tableName))) {
-        ps.setString(1, connectionProvider.getUser().getUsername());
-        ps.setTimestamp(2, new Timestamp((new Date()).getTime()));
-        ps.setString(3, plainTextAudit);
-        ps.execute();
+      boolean autocommit = conn.getAutoCommit();
+      conn.setAutoCommit(false);
+      try (PreparedStatement ps = conn.prepareStatement(String.format(SQL_INSERT_LOG, tableName()))) {
+        for (AuditRecord record : records) {
+          ps.setString(1, record.user);
+          ps.setTimestamp(2, record.created);
+          ps.setString(3, record.log());
+          if (records.size() > 1) { ps.addBatch(); }
+        }
+        if (records.size() > 1) { ps.executeBatch(); }
+        else { ps.execute(); }
+        conn.commit();
       } catch (SQLException e) {
-        LOG.error("Problem with getting prepared statement for log", e);
+        conn.rollback();
+        throw e;
+      } finally {
+        conn.setAutoCommit(autocommit);
       }
-    } catch (SQLException e) {
-      LOG.error("Problem with creating connection for log", e);
     }
   }
 
+  /** Wait until all logs which was audited before are written to table */
+  public void flush() {
+    writer.flush();
+  }
+
   public static SqlLogToTableAuditor getInstance(ConnectionProvider connectionProvider, AuditType auditType) {
     synchronized (CACHED_AUDITORS) {
       SqlLogToTableAuditor result = CACHED_AUDITORS.get(auditType);
@@ -79,4 +123,19 @@ public class SqlLogToTableAuditor implements Auditor {
       return result;
     }
   }
+
+  /** Write all waiting logs and close auditors which write by given connection provider */
+  public static void closeAuditors(ConnectionProvider connectionProvider) {
+    List<SqlLogToTableAuditor> auditors = new ArrayList<>();
+    synchronized (CACHED_AUDITORS) {
+      for (Iterator<SqlLogToTableAuditor> itt = CACHED_AUDITORS.values().iterator(); itt.hasNext(); ) {
+        SqlLogToTableAuditor auditor = itt.next();
+        if (auditor.connectionProvider == connectionProvider) {
+          auditors.add(auditor);
+          itt.remove();
+        }
+      }
+    }
+    auditors.forEach(auditor -> auditor.writer.close());
+  }
 }
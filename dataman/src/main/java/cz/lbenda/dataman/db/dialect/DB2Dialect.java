@@ -27,4 +27,9 @@ public class DB2Dialect implements SQLDialect {
   public byte incrementFrom() { return 1; }
   @Override
   public String columnGenerated() { return null; }
+  @Override
+  public String limitSQL(String sql, long offset, int limit) {
+    if (offset > 0) { return String.format("%s OFFSET %s ROWS FETCH NEXT %s ROWS ONLY", sql, offset, limit); }
+    return String.format("%s FETCH FIRST %s ROWS ONLY", sql, limit);
+  }
 }
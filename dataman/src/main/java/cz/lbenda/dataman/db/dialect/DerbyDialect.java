@@ -28,4 +28,8 @@ public class DerbyDialect implements SQLDialect {
   public byte incrementFrom() { return 0; }
   @Override
   public boolean isIdentityEditable() { return false; }
+  @Override
+  public String limitSQL(String sql, long offset, int limit) {
+    return String.format("%s OFFSET %s ROWS FETCH NEXT %s ROWS ONLY", sql, offset, limit);
+  }
 }
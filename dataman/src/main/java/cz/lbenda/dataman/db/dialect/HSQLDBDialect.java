@@ -25,6 +25,9 @@ public class HSQLDBDialect implements SQLDialect {
     return driver != null && driver.startsWith("org.hsqldb");
   }
 
+  @Override
+  public boolean isBatchGeneratedKeysSupported() { return true; }
+
   public ColumnType columnTypeFromSQL(int dataType, String columnTypeName, int size) {
     switch (dataType) {
       case Types.TINYINT :
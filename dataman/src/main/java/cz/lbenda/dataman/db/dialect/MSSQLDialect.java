@@ -28,4 +28,10 @@ public class MSSQLDialect implements SQLDialect {
   public boolean isBooleanBitRepresent() { return true; }
   @Override
   public String columnGenerated() { return "SS_IS_COMPUTED"; }
+  @Override
+  public String limitSQL(String sql, long offset, int limit) {
+    /* The OFFSET clause must follow ORDER BY */
+    if (!sql.toUpperCase().contains(" ORDER BY ")) { sql = sql + " ORDER BY (SELECT NULL)"; }
+    return String.format("%s OFFSET %s ROWS FETCH NEXT %s ROWS ONLY", sql, offset, limit);
+  }
 }
@@ -68,6 +68,23 @@ public interface SQLDialect {
   default boolean isIdentityEditable() { return true; }
   default boolean isBooleanBitRepresent() { return false; }
 
+  /** Inform if JDBC driver return generated keys of all rows inserted by one batch, else the rows with generated
+   * keys are inserted one by one */
+  default boolean isBatchGeneratedKeysSupported() { return false; }
+
+  /** Count of rows which JDBC driver fetch from database at once, when it isn't configured in session */
+  default int fetchSize() { return 500; }
+
+  /** Limit count of rows which is returned by select
+   * @param sql select which is limited, for stable result it should be ordered
+   * @param offset count of rows which are skipped
+   * @param limit maximal count of returned rows
+   * @return SQL which return only requested rows */
+  default String limitSQL(String sql, long offset, int limit) {
+    if (offset > 0) { return String.format("%s LIMIT %s OFFSET %s", sql, limit, offset); }
+    return String.format("%s LIMIT %s", sql, limit);
+  }
+
   /** Set of names which is used to describe identity column */
   default Set<String> nameOfGeneratedIdentityColumn() { return new HashSet<>(Arrays.asList(new String[] {
       "SCOPE_IDENTITY()", "IDENTITY()", "1" })); }
@@ -19,7 +19,9 @@ import cz.lbenda.common.Constants;
 import cz.lbenda.dataman.db.*;
 import cz.lbenda.dataman.rc.ComboBoxItemTableCell;
 import cz.lbenda.gui.tableView.*;
+import javafx.application.Platform;
 import javafx.beans.InvalidationListener;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
@@ -31,6 +33,12 @@ import javafx.util.StringConverter;
 import javax.annotation.Nonnull;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 /** Created by Lukas Benda <lbenda @ lbenda.cz> on 18.9.15.
@@ -41,6 +49,24 @@ public class DataTableView extends FilterableTableView<RowDesc> {
   private final TableDesc tableDesc; public TableDesc getTableDesc() { return tableDesc; }
   private final SQLQueryRows sqlQueryRows; public SQLQueryRows getSqlQueryRows() { return sqlQueryRows; }
   private final Map<TableColumn<RowDesc, ?>, ColumnDesc> columnColumns = new WeakHashMap<>();
+  /** Maximal count of distinct values which are read from database for filter menu */
+  private static final int DISTINCT_VALUES_LIMIT = 1000;
+  /** Count of rows before end of table, when the next page of rows is read */
+  private static final int NEXT_PAGE_THRESHOLD = 20;
+  /** Flag if the next page is already requested */
+  private boolean nextPageRequested = false;
+  /** Flag if the query to database is already requested */
+  private boolean pushDownRequested = false;
+  /** Last query which was given to loader, the query of table is changed later, when the loader process it */
+  private TableQuery requestedQuery;
+  /** Thread which read rows of table from database, the requests are processed in order in which they are given. The
+   * thread ends when it's idle. */
+  private final ExecutorService loader = new ThreadPoolExecutor(0, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+      runnable -> {
+        Thread thread = new Thread(runnable, "DataTableView loader");
+        thread.setDaemon(true);
+        return thread;
+      });
 
   public DataTableView(@Nonnull TableDesc tableDesc) {
     this(tableDesc, tableDesc.getQueryRow());
@@ -55,7 +81,81 @@ public class DataTableView extends FilterableTableView<RowDesc> {
     this.tableDesc = tableDesc;
     this.sqlQueryRows = sqlQueryRows;
     this.filters().add(row -> RowDesc.RowDescState.REMOVED != row.getState());
+    sqlQueryRows.addRowsChangeListener(rows -> rows.forEach(this::rowChanged));
     this.setEditable(tableDesc != null && TableDesc.TableType.TABLE.equals(tableDesc.getTableType()));
+    if (tableDesc != null) {
+      this.filters().addListener((ListChangeListener<Predicate<RowDesc>>) change -> requestPushDownQuery());
+      this.sortProperty().addListener((observable, oldValue, newValue) -> requestPushDownQuery());
+      this.setRowFactory(tableView -> new TableRow<RowDesc>() {
+        @Override
+        public void updateIndex(int i) {
+          super.updateIndex(i);
+          if (i >= 0 && i >= DataTableView.this.getItems().size() - NEXT_PAGE_THRESHOLD) { requestNextPage(); }
+        }
+      });
+    }
+  }
+
+  /** Release resources of view when it's closed. The rows of SQL result are released, the rows of table are kept,
+   * because the table can be showed again. */
+  public void close() {
+    loader.shutdown();
+    if (tableDesc == null) { sqlQueryRows.close(); }
+  }
+
+  /** Read next page of rows when the user scroll near to end of table. The page is read on background thread and
+   * only the rows are added on platform thread. */
+  private void requestNextPage() {
+    if (nextPageRequested || !tableDesc.isLoaded() || tableDesc.isAllRowsLoaded()) { return; }
+    nextPageRequested = true;
+    loader.execute(() -> {
+      try {
+        tableDesc.loadNextPageAction(Platform::runLater);
+      } finally {
+        Platform.runLater(() -> nextPageRequested = false);
+      }
+    });
+  }
+
+  /** Request query to database, more changes of filters are joined to one query. The query is created on platform
+   * thread and the rows are read on background thread. */
+  private void requestPushDownQuery() {
+    if (pushDownRequested) { return; }
+    pushDownRequested = true;
+    Platform.runLater(() -> {
+      pushDownRequested = false;
+      TableQuery query = pushDownQuery();
+      if (query != null) {
+        requestedQuery = query;
+        loader.execute(() -> tableDesc.queryRowsAction(query, Platform::runLater));
+      }
+    });
+  }
+
+  /** Translate the column filters and sort to query of table, so they are evaluated by database. The filters and
+   * sort are still evaluated on read rows too. The filter rejects the un-chosen values, because the chosen values
+   * are only from values which was offered to user. When the table contains unsaved changes, then the rows aren't
+   * read again and the filters are evaluated only on read rows.
+   * @return query which should be evaluated, or null when the rows needn't be read again */
+  @SuppressWarnings("unchecked")
+  private TableQuery pushDownQuery() {
+    if (!tableDesc.isLoaded() || tableDesc.isDirty()) { return null; }
+    TableQuery query = new TableQuery();
+    filters().stream().filter(filter -> filter instanceof ColumnFilter).forEach(filter -> {
+      ColumnFilter<RowDesc> columnFilter = (ColumnFilter<RowDesc>) filter;
+      ColumnDesc columnDesc = columnColumns.get(columnFilter.getColumn());
+      if (columnDesc != null && TableQuery.isComparable(columnDesc)) {
+        query.getConditions().add(new TableQuery.ColumnCondition(columnDesc, columnFilter.getExcludedValues(), true));
+      }
+    });
+    if (sortProperty().getValue() instanceof ColumnComparator) {
+      ColumnComparator<RowDesc> comparator = (ColumnComparator<RowDesc>) sortProperty().getValue();
+      ColumnDesc columnDesc = columnColumns.get(comparator.getColumn());
+      if (columnDesc != null && TableQuery.isComparable(columnDesc)) {
+        query.getOrders().add(new TableQuery.ColumnOrder(columnDesc, comparator.isAscending()));
+      }
+    }
+    return query.equals(requestedQuery != null ? requestedQuery : tableDesc.getQuery()) ? null : query;
   }
 
   @SuppressWarnings("unchecked")
@@ -142,8 +242,14 @@ public class DataTableView extends FilterableTableView<RowDesc> {
   @Override
   public void setRows(ObservableList<RowDesc> rows) {
     super.setRows(rows);
-    InvalidationListener il = observable -> refilter();
+    if (rows instanceof ColumnarRowList) { return; } // The rows are read only, the rows aren't created for listener
+    InvalidationListener il = observable -> rowChanged((RowDesc) observable);
     rows.forEach(row -> row.addListener(il));
+    rows.addListener((ListChangeListener<RowDesc>) change -> {
+      while (change.next()) {
+        if (change.wasAdded()) { change.getAddedSubList().forEach(row -> row.addListener(il)); }
+      }
+    });
   }
 
   @Override
@@ -151,6 +257,51 @@ public class DataTableView extends FilterableTableView<RowDesc> {
     //noinspection unchecked
     return getItems().stream().map(row -> (T) row.getColumnValue(columnColumns.get(tableColumn)));
   }
+  /** The values of rows in {@link ColumnarRowStore} are counted from store without creating of rows, only the rows
+   * which are in memory are counted, the spilled rows are counted by
+   * {@link #refineDistinctValues(TableColumn, Consumer)}. */
+  @Override
+  public Map<Object, Long> distinctValues(@Nonnull TableColumn<RowDesc, ?> tableColumn) {
+    ColumnarRowStore store = columnarStore();
+    ColumnDesc columnDesc = columnColumns.get(tableColumn);
+    if (store == null || columnDesc == null) { return super.distinctValues(tableColumn); }
+    return store.distinctValues(columnDesc.getPosition() - 1, 0, store.getHeapSize());
+  }
+
+  /** When not all rows of table are read, then the distinct values are read from database on background thread.
+   * The most frequent values are returned. The spilled rows of SQL result are counted on background thread too. */
+  @Override
+  public void refineDistinctValues(@Nonnull TableColumn<RowDesc, ?> tableColumn,
+                                   @Nonnull Consumer<Map<Object, Long>> consumer) {
+    ColumnDesc columnDesc = columnColumns.get(tableColumn);
+    ColumnarRowStore store = columnarStore();
+    if (store != null && columnDesc != null && store.isSpilled()) {
+      int column = columnDesc.getPosition() - 1;
+      int heapSize = store.getHeapSize();
+      int size = store.size();
+      Map<Object, Long> values = store.distinctValues(column, 0, heapSize);
+      loader.execute(() -> {
+        store.distinctValues(column, heapSize, size).forEach((value, count) -> values.merge(value, count, Long::sum));
+        Platform.runLater(() -> consumer.accept(values));
+      });
+      return;
+    }
+    if (tableDesc == null || columnDesc == null || !tableDesc.isLoaded() || tableDesc.isAllRowsLoaded()
+        || tableDesc.isDirty() || !TableQuery.isComparable(columnDesc)) {
+      return;
+    }
+    loader.execute(() -> {
+      Map<Object, Long> values = tableDesc.getDbConfig().getReader().readDistinctValues(tableDesc, columnDesc,
+          DISTINCT_VALUES_LIMIT);
+      Platform.runLater(() -> consumer.accept(values));
+    });
+  }
+
+  /** Return store of rows, when the rows are hold in {@link ColumnarRowStore} */
+  private ColumnarRowStore columnarStore() {
+    return getRows() instanceof ColumnarRowList ? ((ColumnarRowList) getRows()).getStore() : null;
+  }
+
   @Override
   public <T> StringConverter<T> stringConverter(TableColumn<RowDesc, ?> tableColumn) {
     //noinspection unchecked
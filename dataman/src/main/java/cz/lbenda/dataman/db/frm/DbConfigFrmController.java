@@ -19,6 +19,7 @@ import cz.lbenda.common.*;
 import cz.lbenda.dataman.Constants;
 import cz.lbenda.dataman.rc.DbConfigFactory;
 import cz.lbenda.dataman.db.DbConfig;
+import cz.lbenda.dataman.db.DriverRegistry;
 import cz.lbenda.rcp.DialogHelper;
 import cz.lbenda.rcp.localization.Message;
 import javafx.application.Platform;
@@ -38,6 +39,7 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
@@ -103,7 +105,7 @@ public class DbConfigFrmController implements Initializable {
 
   private void findDriverClasses() {
     new Thread(() -> {
-      List<String> drivers = ClassLoaderHelper.instancesOfClass(java.sql.Driver.class, lvLibraries.getItems(), false, false);
+      List<String> drivers = DriverRegistry.getInstance().driverClasses(new ArrayList<>(lvLibraries.getItems()));
       if (!cbDriverClass.getItems().isEmpty()) { currentDriverClass = cbDriverClass.getSelectionModel().getSelectedItem(); }
       Platform.runLater(() -> {
         cbDriverClass.getItems().clear();
@@ -16,6 +16,7 @@
 package cz.lbenda.dataman.db.handler;
 
 import cz.lbenda.dataman.db.RowDesc;
+import cz.lbenda.dataman.db.SQLQueryRows;
 import cz.lbenda.dataman.db.frm.DataTableView;
 import cz.lbenda.rcp.action.AbstractAction;
 import cz.lbenda.rcp.action.ActionConfig;
@@ -23,7 +24,8 @@ import cz.lbenda.rcp.action.ActionGUIConfig;
 import cz.lbenda.rcp.localization.Message;
 import javafx.beans.property.ObjectProperty;
 import javafx.event.ActionEvent;
-import javafx.scene.control.TableView;
+
+import java.util.ArrayList;
 
 /** Created by Lukas Benda <lbenda @ lbenda.cz> on 11.9.15.
  * remove rows from table */
@@ -51,13 +53,10 @@ public class RemoveRowsHandler extends AbstractAction {
 
   @Override
   public void handle(ActionEvent e) {
-    TableView tableView = tableViewObjectProperty.getValue();
+    DataTableView tableView = tableViewObjectProperty.getValue();
     if (tableView != null && tableView.isEditable()) {
-      //noinspection unchecked
-      tableView.getSelectionModel().getSelectedItems().forEach(item -> {
-        if (item instanceof RowDesc) { ((RowDesc) item).setState(RowDesc.RowDescState.REMOVED); }
-        else { tableView.getItems().remove(item); }
-      });
+      SQLQueryRows rows = tableView.getSqlQueryRows();
+      rows.setState(new ArrayList<>(tableView.getSelectionModel().getSelectedItems()), RowDesc.RowDescState.REMOVED);
     }
   }
 }
\ No newline at end of file
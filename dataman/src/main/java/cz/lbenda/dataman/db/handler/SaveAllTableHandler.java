@@ -16,6 +16,7 @@
 package cz.lbenda.dataman.db.handler;
 
 import cz.lbenda.dataman.db.DbConfig;
+import cz.lbenda.dataman.db.TableDesc;
 import cz.lbenda.rcp.action.AbstractAction;
 import cz.lbenda.rcp.action.ActionConfig;
 import cz.lbenda.rcp.action.ActionGUIConfig;
@@ -26,6 +27,9 @@ import javafx.event.ActionEvent;
 import javafx.scene.Node;
 import javafx.stage.Stage;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 /** Created by Lukas Benda <lbenda @ lbenda.cz> on 11.9.15.
  * Action which save all changes in all tables */
 @ActionConfig(
@@ -60,7 +64,10 @@ public class SaveAllTableHandler extends AbstractAction {
   public void handle(ActionEvent event) {
     DbConfig dbConfig = dbConfigProperty.getValue();
     if (dbConfig != null) {
-      dbConfig.getConnectionProvider().close();
+      List<TableDesc> tables = dbConfig.getConnectionProvider().getSavableRegistry().dirtySavables().stream()
+          .filter(savable -> savable instanceof TableDesc).map(savable -> (TableDesc) savable)
+          .collect(Collectors.toList());
+      TableDesc.saveChangesAction(dbConfig, tables);
     }
   }
 }
\ No newline at end of file
@@ -75,6 +75,8 @@ public class SQLEditorController implements SQLSExecutor.SQLSExecutorConsumer {
   private NodeShower nodeShower;
   private ObjectProperty<Boolean> stopOnFirstError = new SimpleObjectProperty<>(Boolean.TRUE);
   public boolean isStopOnFirstError() { return  stopOnFirstError.getValue(); }
+  @Override
+  public boolean isStreamingResult() { return true; }
   @SuppressWarnings("unused")
   public void setStopOnFirstError(boolean stopOnFirstError) { this.stopOnFirstError.setValue(stopOnFirstError); }
   @SuppressWarnings("unused")
@@ -196,7 +198,7 @@ public class SQLEditorController implements SQLSExecutor.SQLSExecutorConsumer {
 
   public void addQueryResult(SQLQueryResult result) {
     StringBuilder msg = new StringBuilder();
-    if (result.getSqlQueryRows() == null) {
+    if (result.getSqlQueryRows() == null || StringUtils.isNotBlank(result.getErrorMsg())) {
       msg.append("<sql>").append(result.getSql()).append("</sql>\n");
       if (StringUtils.isNotBlank(result.getErrorMsg())) {
         msg.append("<error>").append(result.getErrorMsg()).append("</error>\n");
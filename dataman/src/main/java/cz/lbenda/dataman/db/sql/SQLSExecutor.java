@@ -28,6 +28,9 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.function.Consumer;
 
 /** Created by Lukas Benda <lbenda @ lbenda.cz> on 24.10.15.
@@ -37,6 +40,16 @@ public class SQLSExecutor {
   public interface SQLSExecutorConsumer {
     void addQueryResult(SQLQueryResult result);
     boolean isStopOnFirstError();
+    /** When true, the result with rows is added before the rows are read and the rows are delivered to it in chunks
+     * on platform thread. When the reading of rows fails, the result is added again with error message. */
+    default boolean isStreamingResult() { return false; }
+    /** When true, the rows aren't read to {@link SQLQueryRows}, but the result set is given to
+     * {@link #writeResultSet(SQLQueryResult, ResultSet)} so the rows can be written as they are fetched */
+    default boolean isDirectResult() { return false; }
+    /** Write rows of result set directly, it's called only when {@link #isDirectResult()} is true. The rows of result
+     * are empty, the result hold only SQL and metadata of columns. When the rows are written without error, the result
+     * isn't given to {@link #addQueryResult(SQLQueryResult)}. */
+    default void writeResultSet(SQLQueryResult result, ResultSet rs) throws SQLException { }
   }
 
   private static final Logger LOG = LoggerFactory.getLogger(SQLSExecutor.class);
@@ -45,12 +58,11 @@ public class SQLSExecutor {
   @Message
   public static final String STEP_FINISH = "SQL command finish";
 
+  /** Split SQL script to statements, see {@link SQLScriptReader} */
   public static String[] splitSQLS(String sqls) {
     if (StringUtils.isBlank(sqls)) { return new String[0]; }
-    String[] lines = sqls.split("\n");
-    StringBuilder sb = new StringBuilder();
-    for (String line : lines) { sb.append(line.trim()).append("\n"); }
-    return sb.toString().split(";\n");
+    List<String> result = SQLScriptReader.split(sqls);
+    return result.toArray(new String[result.size()]);
   }
 
   private DbConfig dbConfig;
@@ -64,10 +76,20 @@ public class SQLSExecutor {
   }
 
   public void executeBlocking(@Nonnull String... sqls) {
-    StatusHelper.getInstance().progressStart(this, TASK_NAME, sqls.length);
+    executeBlocking(Arrays.asList(sqls).iterator(), sqls.length);
+  }
+
+  /** Execute statements which are read one by one, so the statements needn't be all in memory
+   * @param sqls statements, for example {@link SQLScriptReader} */
+  public void executeBlocking(@Nonnull Iterator<String> sqls) {
+    executeBlocking(sqls, Double.POSITIVE_INFINITY);
+  }
+
+  private void executeBlocking(@Nonnull Iterator<String> sqls, double count) {
+    StatusHelper.getInstance().progressStart(this, TASK_NAME, count);
     int i = 0;
-    for (String sql1 : sqls) {
-      String sql = sql1.trim();
+    while (sqls.hasNext()) {
+      String sql = sqls.next().trim();
       i++;
       StatusHelper.getInstance().progressNextStep(this, i + ": " + sql, 0);
       SQLQueryResult sqlQueryResult = new SQLQueryResult();
@@ -76,7 +98,11 @@ public class SQLSExecutor {
       if (dbConfig.connectionProvider.isConnected()) {
         dbConfig.getConnectionProvider().onPreparedStatement(sql,
             tuple2 -> this.statementToSQLQueryResult(sqlQueryResult, tuple2));
-        sqlsExecutorConsumer.addQueryResult(sqlQueryResult);
+        // The result with error is added even when it was already given to consumer, so the error isn't lost when
+        // reading of rows fails
+        boolean delivered = sqlQueryResult.getSqlQueryRows() != null && sqlQueryResult.getErrorMsg() == null
+            && (sqlsExecutorConsumer.isStreamingResult() || sqlsExecutorConsumer.isDirectResult());
+        if (!delivered) { sqlsExecutorConsumer.addQueryResult(sqlQueryResult); }
       }
       if (sqlQueryResult.getErrorMsg() != null && sqlsExecutorConsumer.isStopOnFirstError()) {
         break;
@@ -100,12 +126,14 @@ public class SQLSExecutor {
       }
     } else {
       try {
+        tuple.get1().setFetchSize(dbConfig.getFetchSize());
         boolean ex = tuple.get1().execute();
         if (ex) {
           try (ResultSet rs = tuple.get1().getResultSet()) {
             ResultSetMetaData mtd = rs.getMetaData();
             SQLQueryRows sqlRows = new SQLQueryRows();
             sqlRows.setSQL(result.getSql());
+            sqlRows.setDialect(dbConfig.getDialect());
             result.setSqlQueryRows(sqlRows);
             int columnCount = mtd.getColumnCount();
             ColumnDesc columns[] = new ColumnDesc[columnCount];
@@ -113,13 +141,19 @@ public class SQLSExecutor {
               columns[i - 1] = new ColumnDesc(mtd, i, dbConfig.getDialect());
             }
             sqlRows.getMetaData().setColumns(columns);
-            while (rs.next()) {
-              RowDesc row = RowDesc.createNewRow(sqlRows.getMetaData(), RowDesc.RowDescState.LOADED);
-              for (ColumnDesc columnDesc : sqlRows.getMetaData().getColumns()) {
-                row.loadInitialColumnValue(columnDesc, rs);
-              }
-              sqlRows.getRows().add(row);
+            if (sqlsExecutorConsumer.isDirectResult()) {
+              sqlsExecutorConsumer.writeResultSet(result, rs);
+              return;
+            }
+            sqlRows.useColumnarStore(dbConfig.getSpillThreshold());
+            StreamingRowLoader loader = new StreamingRowLoader(TASK_NAME, sqlRows.getMetaData(), sqlRows.getRows());
+            loader.getDecoder().setReadOnly(true);
+            if (sqlsExecutorConsumer.isStreamingResult()) {
+              sqlsExecutorConsumer.addQueryResult(result);
+            } else {
+              loader.setDeliverer(Runnable::run);
             }
+            loader.load(rs);
           }
         } else {
           result.setAffectedRow(tuple.get1().getUpdateCount());
@@ -127,6 +161,9 @@ public class SQLSExecutor {
       } catch (SQLException e) {
         result.setErrorMsg(e.getMessage());
         LOG.debug(String.format("Problem with execute SQL '%s'", result.getSql()), e);
+        if (consoleShower != null) {
+          consoleShower.accept(this);
+        }
       }
     }
   }
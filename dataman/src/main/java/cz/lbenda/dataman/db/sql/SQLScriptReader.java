@@ -0,0 +1,281 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db.sql;
+
+import javax.annotation.Nonnull;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Reader which split SQL script to statements. The script is read from reader by parts and the statements are
+ * returned one by one, so the script of any size is read in constant memory (only one statement is hold). The
+ * delimiter is ignored inside of strings, quoted identifiers, comments and dollar quoted bodies. The delimiter can be
+ * changed inside the script by line <code>DELIMITER //</code>, and the statement can be also ended by line which
+ * contains only <code>/</code>. The line with <code>/</code> doesn't switch off the delimiter, so the body which
+ * contains the delimiter (e.g. PL/SQL block) must be written after the delimiter is changed by
+ * <code>DELIMITER</code> line. The comments before statement aren't part of statement. */
+public class SQLScriptReader implements Iterator<String>, Closeable {
+
+  public static final String DEFAULT_DELIMITER = ";";
+  private static final String DELIMITER_COMMAND = "DELIMITER";
+  private static final int BUFFER_SIZE = 8192;
+  /** Max capacity of statement buffer which is hold for next statement */
+  private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+  private enum State { NORMAL, SINGLE_QUOTE, DOUBLE_QUOTE, BACKTICK, LINE_COMMENT, BLOCK_COMMENT, DOLLAR_QUOTE }
+
+  private final Reader reader;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private int position;
+  private int limit;
+  private boolean eof;
+  private String delimiter; public String getDelimiter() { return delimiter; }
+  private StringBuilder statement = new StringBuilder();
+  /** Tag of current dollar quoted string with both dollars */
+  private String dollarTag;
+  /** Statement which is read by hasNext */
+  private String next;
+
+  public SQLScriptReader(@Nonnull Reader reader) {
+    this(reader, DEFAULT_DELIMITER);
+  }
+
+  public SQLScriptReader(@Nonnull Reader reader, @Nonnull String delimiter) {
+    this.reader = reader;
+    this.delimiter = delimiter;
+  }
+
+  /** Split SQL script to statements */
+  public static List<String> split(@Nonnull String sqls) {
+    List<String> result = new ArrayList<>();
+    new SQLScriptReader(new StringReader(sqls)).forEachRemaining(result::add);
+    return result;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null) {
+      try {
+        next = readStatement();
+      } catch (IOException e) {
+        throw new UncheckedIOException("The SQL script can't be read", e);
+      }
+    }
+    return next != null;
+  }
+
+  @Override
+  public String next() {
+    if (!hasNext()) { throw new NoSuchElementException(); }
+    String result = next;
+    next = null;
+    return result;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  /** Ensure that at least count of chars is in buffer
+   * @return false when the reader end before */
+  private boolean fill(int count) throws IOException {
+    if (count > buffer.length) { return false; }
+    while (limit - position < count) {
+      if (eof) { return false; }
+      if (position > 0) {
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        limit -= position;
+        position = 0;
+      }
+      int read = reader.read(buffer, limit, buffer.length - limit);
+      if (read < 0) { eof = true; }
+      else { limit += read; }
+    }
+    return true;
+  }
+
+  /** Return char on given offset from current position, or -1 when there isn't such char */
+  private int peek(int offset) throws IOException {
+    return fill(offset + 1) ? buffer[position + offset] : -1;
+  }
+
+  private boolean startsWith(String text, boolean ignoreCase) throws IOException {
+    if (!fill(text.length())) { return false; }
+    for (int i = 0; i < text.length(); i++) {
+      char c = buffer[position + i];
+      if (ignoreCase ? Character.toUpperCase(c) != Character.toUpperCase(text.charAt(i)) : c != text.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Inform if the chars from offset to end of line are white spaces */
+  private boolean isRestOfLineBlank(int offset) throws IOException {
+    int c;
+    while ((c = peek(offset)) != -1 && c != '\n') {
+      if (!Character.isWhitespace(c)) { return false; }
+      offset++;
+    }
+    return c != -1 || eof;
+  }
+
+  /** Read chars to end of line, the new line char is consumed but not returned */
+  private String readLine() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    int c;
+    while ((c = peek(0)) != -1) {
+      position++;
+      if (c == '\n') { break; }
+      sb.append((char) c);
+    }
+    return sb.toString();
+  }
+
+  /** Return dollar tag (with both dollars) which starts on current position or null */
+  private String dollarTag() throws IOException {
+    if (statement.length() > 0 && Character.isJavaIdentifierPart(statement.charAt(statement.length() - 1))) {
+      return null; // Dollar inside identifier
+    }
+    int i = 1;
+    int c;
+    while ((c = peek(i)) != -1 && c != '$') {
+      if (!Character.isLetterOrDigit(c) && c != '_') { return null; }
+      i++;
+    }
+    if (c != '$' || (i > 1 && Character.isDigit(peek(1)))) { return null; }
+    return new String(buffer, position, i + 1);
+  }
+
+  /** Return trimmed statement and prepare buffer for next one */
+  private String emit() {
+    String result = statement.toString().trim();
+    if (statement.capacity() > MAX_RETAINED_CAPACITY) { statement = new StringBuilder(); }
+    else { statement.setLength(0); }
+    return result;
+  }
+
+  /** Read next statement
+   * @return statement without delimiter or null when there is no other statement */
+  private String readStatement() throws IOException {
+    State state = State.NORMAL;
+    boolean content = false; // The statement contains something else then white spaces and comments
+    boolean lineStart = true; // Only white spaces from start of line
+    int c;
+    while ((c = peek(0)) != -1) {
+      switch (state) {
+        case NORMAL:
+          if (lineStart && !Character.isWhitespace(c)) {
+            if (!content && startsWith(DELIMITER_COMMAND, true)
+                && Character.isWhitespace(peek(DELIMITER_COMMAND.length()))) {
+              String newDelimiter = readLine().substring(DELIMITER_COMMAND.length()).trim();
+              if (!newDelimiter.isEmpty()) { delimiter = newDelimiter; }
+              continue;
+            }
+            if (c == '/' && isRestOfLineBlank(1)) { // Without content the statement was already ended by delimiter
+              readLine();
+              if (content) { return emit(); }
+              continue;
+            }
+            lineStart = false;
+          }
+          if (startsWith(delimiter, false)) {
+            position += delimiter.length();
+            if (content) { return emit(); }
+            statement.setLength(0);
+            continue;
+          }
+          position++;
+          if (c == '\n') {
+            lineStart = true;
+          } else if (c == '-' && peek(0) == '-') {
+            state = State.LINE_COMMENT;
+          } else if (c == '/' && peek(0) == '*') {
+            if (content) { statement.append('/'); }
+            c = '*';
+            position++;
+            state = State.BLOCK_COMMENT;
+          } else if (!Character.isWhitespace(c)) {
+            if (c == '\'') { state = State.SINGLE_QUOTE; }
+            else if (c == '"') { state = State.DOUBLE_QUOTE; }
+            else if (c == '`') { state = State.BACKTICK; }
+            else if (c == '$') {
+              position--;
+              dollarTag = dollarTag();
+              if (dollarTag != null) {
+                statement.append(dollarTag);
+                position += dollarTag.length();
+                content = true;
+                state = State.DOLLAR_QUOTE;
+                continue;
+              }
+              position++;
+            }
+            content = true;
+          }
+          if (content) { statement.append((char) c); }
+          break;
+        case SINGLE_QUOTE:
+        case DOUBLE_QUOTE:
+        case BACKTICK:
+          position++;
+          statement.append((char) c);
+          char quote = state == State.SINGLE_QUOTE ? '\'' : state == State.DOUBLE_QUOTE ? '"' : '`';
+          if (c == quote) {
+            if (peek(0) == quote) { // Escaped quote
+              statement.append(quote);
+              position++;
+            } else {
+              state = State.NORMAL;
+            }
+          }
+          break;
+        case LINE_COMMENT:
+          position++;
+          if (c == '\n') {
+            state = State.NORMAL;
+            lineStart = true;
+          }
+          if (content) { statement.append((char) c); }
+          break;
+        case BLOCK_COMMENT:
+          position++;
+          if (content) { statement.append((char) c); }
+          if (c == '*' && peek(0) == '/') {
+            position++;
+            if (content) { statement.append('/'); }
+            state = State.NORMAL;
+          }
+          break;
+        case DOLLAR_QUOTE:
+          if (startsWith(dollarTag, false)) {
+            statement.append(dollarTag);
+            position += dollarTag.length();
+            state = State.NORMAL;
+          } else {
+            position++;
+            statement.append((char) c);
+          }
+          break;
+      }
+    }
+    return content ? emit() : null;
+  }
+}
@@ -178,6 +178,7 @@ public class DatamanApp extends Application {
   public Tab addToCenter(String title, Node node, boolean closable) {
     Tab tab = new Tab(title, node);
     tab.setClosable(closable);
+    tab.setOnClosed(event -> closeNode(node));
     this.centerTabs.getTabs().add(tab);
     this.centerTabs.getSelectionModel().select(tab);
     return tab;
@@ -204,6 +205,11 @@ public class DatamanApp extends Application {
         .forEach(tab -> this.detailTabs.getSelectionModel().select(tab));
   }
 
+  /** Release resources of node which was removed from tabs */
+  private void closeNode(@Nonnull Node node) {
+    if (node instanceof DataTableView) { ((DataTableView) node).close(); }
+  }
+
   /** Add node to center pane */
   private void addRemoveToDetail(@Nonnull String title, @Nonnull Node node, boolean closable) {
     boolean removed = false;
@@ -211,12 +217,14 @@ public class DatamanApp extends Application {
       Tab tab = itt.next();
       if (node.equals(tab.getContent())) {
         itt.remove();
+        closeNode(node);
         removed = true;
       }
     }
     if (!removed) {
       Tab tab = new Tab(title, node);
       tab.setClosable(closable);
+      tab.setOnClosed(event -> closeNode(node));
       this.detailTabs.getTabs().add(tab);
       this.detailTabs.getSelectionModel().select(tab);
     }
@@ -312,5 +320,7 @@ public class DatamanApp extends Application {
   @Override
   public void stop() {
     te.stop();
+    centerTabs.getTabs().forEach(tab -> closeNode(tab.getContent()));
+    detailTabs.getTabs().forEach(tab -> closeNode(tab.getContent()));
   }
 }
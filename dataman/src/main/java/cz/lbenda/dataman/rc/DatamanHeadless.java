@@ -19,6 +19,7 @@ import cz.lbenda.dataman.db.DbConfig;
 import cz.lbenda.dataman.db.ExportTableData;
 import cz.lbenda.dataman.db.SQLQueryResult;
 import cz.lbenda.dataman.db.sql.SQLSExecutor;
+import cz.lbenda.dataman.db.sql.SQLScriptReader;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 import org.apache.commons.lang3.StringUtils;
@@ -31,6 +32,9 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import java.io.*;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -100,36 +104,20 @@ public class DatamanHeadless {
       } else {
         SQLSExecutorConsumerClass sqlEditorController = new SQLSExecutorConsumerClass(!cmd.hasOption("nos"), format(cmd));
         SQLSExecutor executor = new SQLSExecutor(dbConfig, sqlEditorController, null);
-        dbConfig.getConnectionProvider().getConnection();
+        try (Connection ignored = dbConfig.getConnectionProvider().getConnection()) {
+          LOG.debug("The connection to database is established");
+        } catch (SQLException e) {
+          LOG.error("Problem with connect to database", e);
+          System.exit(5);
+        }
         int i = 0;
         for (FileObject file : scripts) {
           if (outputs.size() > i) { sqlEditorController.setOutputFile(outputs.get(i)); }
           else { sqlEditorController.setOutputFile(null); }
           i++;
-          try {
-            InputStream is = file.getContent().getInputStream();
-            Reader reader = new InputStreamReader(is);
-            char[] buff = new char[262144];
-            int l;
-            String rest = "";
-            while ((l = reader.read(buff)) != -1) {
-              String str = rest + new String(buff, 0, l);
-              String[] strs = SQLSExecutor.splitSQLS(str);
-              if (strs.length == 1) {
-                rest = str;
-              } else {
-                rest = strs[strs.length - 1];
-                if (!str.endsWith("\n") && rest.endsWith("\n")) {
-                  rest = rest.substring(0, rest.length() - 1);
-                  rest = str.substring(str.lastIndexOf(rest), str.length());
-                }
-                String[] sqls = new String[strs.length - 1];
-                System.arraycopy(strs, 0, sqls, 0, strs.length - 1);
-                executor.executeBlocking(sqls);
-              }
-            }
-            executor.executeBlocking(SQLSExecutor.splitSQLS(rest));
-          } catch (IOException e) {
+          try (SQLScriptReader sqls = new SQLScriptReader(new InputStreamReader(file.getContent().getInputStream()))) {
+            executor.executeBlocking(sqls);
+          } catch (IOException | UncheckedIOException e) {
             LOG.error("Problem with read script file", e);
             System.exit(4);
           }
@@ -168,13 +156,30 @@ public class DatamanHeadless {
         throw new RuntimeException("The error when output file is open", e);
       }
     }
-    @Override
-    public void addQueryResult(SQLQueryResult result) {
+    private void writeSQLHeader(SQLQueryResult result) {
       if (writeSQLHeaders) {
         printStream.println("------");
         printStream.println(result.getSql());
         printStream.println("------");
       }
+    }
+    /** The formats which can be written row by row are written directly from result set */
+    @Override
+    public boolean isDirectResult() { return ExportTableData.isStreamable(format); }
+    @Override
+    public void writeResultSet(SQLQueryResult result, ResultSet rs) throws SQLException {
+      writeSQLHeader(result);
+      PrintWriter writer = new PrintWriter(printStream);
+      try {
+        ExportTableData.writeResultSet(format, result.getSqlQueryRows(), rs, writer);
+      } catch (IOException e) {
+        LOG.error("Error when result of table is write as " + format, e);
+      }
+      writer.flush();
+    }
+    @Override
+    public void addQueryResult(SQLQueryResult result) {
+      writeSQLHeader(result);
       if (!StringUtils.isBlank(result.getErrorMsg())) { LOG.error(result.getErrorMsg()); }
       else {
         if (result.getSqlQueryRows() != null) {
@@ -186,6 +191,8 @@ public class DatamanHeadless {
             // printStream.println(writer.toString());
           } catch (IOException e) {
            LOG.error("Error when result of table is write as CSV", e);
+          } finally {
+            result.getSqlQueryRows().close();
           }
         } else if (result.getAffectedRow() != null) {
           printStream.println("Affected rows <" + result.getAffectedRow() + ">");
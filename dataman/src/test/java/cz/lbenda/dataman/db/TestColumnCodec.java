@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import cz.lbenda.common.ByteArrayBinaryData;
+import cz.lbenda.dataman.db.dialect.ColumnType;
+import cz.lbenda.dataman.db.dialect.HSQLDBDialect;
+import cz.lbenda.dataman.db.dialect.MSSQLDialect;
+import org.testng.annotations.Test;
+
+import java.time.LocalDate;
+
+import static org.testng.Assert.*;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Test of codecs of column values */
+public class TestColumnCodec {
+
+  @Test
+  public void codecsAreShared() {
+    ColumnCodec codec = ColumnCodec.of(ColumnType.INTEGER, new HSQLDBDialect(), Integer.class.getName());
+    assertSame(ColumnCodec.of(ColumnType.INTEGER, new HSQLDBDialect(), Integer.class.getName()), codec);
+    assertTrue(codec.isTypedReader());
+    assertFalse(ColumnCodec.of(ColumnType.INTEGER, new HSQLDBDialect(), Long.class.getName()).isTypedReader(),
+        "The long value must be converted to integer");
+    assertFalse(ColumnCodec.of(ColumnType.INTEGER, null, null).isTypedReader());
+  }
+
+  @Test
+  public void valuesAreConverted() {
+    TableDesc td = new TableDesc(new SchemaDesc(new CatalogDesc("CATALOG"), "SCHEMA"), "TABLE", "table1");
+    ColumnDesc integer = new ColumnDesc(td, "col1", null, ColumnType.INTEGER, 10, 0, true, false, false, null);
+    ColumnDesc date = new ColumnDesc(td, "col2", null, ColumnType.DATE, 10, 0, true, false, false, null);
+    ColumnDesc bytes = new ColumnDesc(td, "col3", null, ColumnType.BYTE_ARRAY, 10, 0, true, false, false, null);
+
+    assertEquals(integer.getCodec().decode(integer, 5L), 5);
+    assertEquals(integer.getCodec().decode(integer, "text"), "text");
+    assertNull(integer.getCodec().decode(integer, null));
+    assertEquals(date.getCodec().decode(date, LocalDate.of(2015, 10, 27)), java.sql.Date.valueOf("2015-10-27"));
+    Object data = bytes.getCodec().decode(bytes, new byte[] { 1, 2 });
+    assertTrue(data instanceof ByteArrayBinaryData);
+    assertSame(bytes.getCodec().repair(bytes, data), data, "Repair don't wrap the binary data again");
+  }
+
+  @Test
+  public void valuesAreFormattedToSQL() {
+    assertEquals(ColumnCodec.of(ColumnType.STRING, null, null).toSQL("a"), "'a'");
+    assertEquals(ColumnCodec.of(ColumnType.INTEGER, null, null).toSQL(5), "5");
+    assertEquals(ColumnCodec.of(ColumnType.BOOLEAN, new MSSQLDialect(), null).toSQL(true), "1");
+    assertEquals(ColumnCodec.of(ColumnType.BOOLEAN, null, null).toSQL(null), "NULL");
+    assertEquals(ColumnCodec.of(ColumnType.DATE, null, null).toSQL(java.sql.Date.valueOf("2015-10-27")),
+        "'2015-10-27'");
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import cz.lbenda.common.ByteArrayBinaryData;
+import cz.lbenda.dataman.db.dialect.ColumnType;
+import javafx.collections.ListChangeListener;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Test of columnar store of rows */
+public class TestColumnarRowStore {
+
+  private SQLQueryMetaData metaData(ColumnType... types) {
+    TableDesc td = new TableDesc(new SchemaDesc(new CatalogDesc("CATALOG"), "SCHEMA"), "VIEW", "view1");
+    for (int i = 0; i < types.length; i++) {
+      td.addColumn(new ColumnDesc(td, "col" + i, null, types[i], 20, 0, true, false, false, null));
+    }
+    return td.getQueryRow().getMetaData();
+  }
+
+  @Test
+  public void valuesAreSame() {
+    ColumnarRowStore store = new ColumnarRowStore(metaData(ColumnType.INTEGER, ColumnType.LONG, ColumnType.DOUBLE,
+        ColumnType.BOOLEAN, ColumnType.TIMESTAMP, ColumnType.DATE, ColumnType.STRING, ColumnType.DECIMAL));
+    Timestamp timestamp = new Timestamp(1445900000123L);
+    timestamp.setNanos(123456789);
+    Object[][] rows = {
+        { 1, 2L, 3.5, true, timestamp, new java.sql.Date(1445900000000L), "a", new BigDecimal("1.25") },
+        { null, null, null, null, null, null, null, null },
+        { -1, Long.MAX_VALUE, -0.5, false, new Timestamp(-1000L), new java.sql.Date(0L), "b", BigDecimal.ZERO },
+    };
+    for (Object[] row : rows) { store.add(row.clone()); }
+
+    assertEquals(store.size(), rows.length);
+    for (int r = 0; r < rows.length; r++) { assertEquals(store.getValues(r), rows[r], "Row " + r); }
+    for (int c = 0; c < 7; c++) { assertTrue(store.isEncoded(c), "Column " + c); }
+    assertFalse(store.isEncoded(7));
+  }
+
+  @Test
+  public void columnIsConvertedToObjects() {
+    ColumnarRowStore store = new ColumnarRowStore(metaData(ColumnType.INTEGER, ColumnType.STRING));
+    for (int i = 0; i < ColumnarRowStore.MAX_DICTIONARY_SIZE + 10; i++) { store.add(new Object[] { i, "value " + i }); }
+    store.add(new Object[] { 10L, null });
+    assertFalse(store.isEncoded(0), "The long value can't be stored in int array");
+    assertFalse(store.isEncoded(1), "Too many distinct values for dictionary");
+    assertEquals(store.getValue(5, 0), 5);
+    assertEquals(store.getValue(5, 1), "value 5");
+    assertEquals(store.getValue(ColumnarRowStore.MAX_DICTIONARY_SIZE + 10, 0), 10L);
+    assertNull(store.getValue(ColumnarRowStore.MAX_DICTIONARY_SIZE + 10, 1));
+  }
+
+  @Test
+  public void rowList() {
+    SQLQueryMetaData metaData = metaData(ColumnType.INTEGER, ColumnType.STRING);
+    ColumnarRowList list = new ColumnarRowList(new ColumnarRowStore(metaData));
+    AtomicInteger added = new AtomicInteger();
+    list.addListener((ListChangeListener<RowDesc>) change -> {
+      while (change.next()) { if (change.wasAdded()) { added.addAndGet(change.getAddedSize()); } }
+    });
+    list.addAll(Arrays.asList(ReadOnlyRowDesc.create(metaData, new Object[] { 1, "a" }),
+        ReadOnlyRowDesc.create(metaData, new Object[] { 2, "b" })));
+    assertEquals(added.get(), 2);
+    assertEquals(list.size(), 2);
+    RowDesc row = list.get(1);
+    assertEquals((Object) row.getColumnValue(metaData.getColumns().get(0)), 2);
+    assertEquals(row.getColumnValue(metaData.getColumns().get(1)), "b");
+    assertEquals(list.get(1), row);
+    assertSame(list.get(1), row, "The referenced row is returned as same instance");
+    assertNotEquals(list.get(0), row);
+    Map<RowDesc, Boolean> identityMap = new IdentityHashMap<>();
+    identityMap.put(row, true);
+    assertTrue(identityMap.containsKey(list.get(1)));
+
+    list.clear();
+    assertEquals(list.size(), 0);
+  }
+
+  @Test
+  public void rowsAreSpilled() {
+    ColumnarRowStore store = new ColumnarRowStore(metaData(ColumnType.INTEGER, ColumnType.STRING, ColumnType.TIMESTAMP,
+        ColumnType.DECIMAL, ColumnType.BYTE_ARRAY), 100);
+    int rows = 100 + RowSpillFile.BLOCK_SIZE * 3 + 10;
+    for (int i = 0; i < rows; i++) {
+      store.add(new Object[] { i, i % 7 == 0 ? null : "value " + i, new Timestamp(i * 1000L + 1),
+          new BigDecimal(i).movePointLeft(2), new ByteArrayBinaryData("col4", new byte[] { (byte) i }) });
+    }
+    assertTrue(store.isSpilled());
+    assertEquals(store.size(), rows);
+    for (int i = rows - 1; i >= 0; i--) {
+      Object[] values = store.getValues(i);
+      assertEquals(values[0], i);
+      assertEquals(values[1], i % 7 == 0 ? null : "value " + i);
+      assertEquals(values[2], new Timestamp(i * 1000L + 1));
+      assertEquals(values[3], new BigDecimal(i).movePointLeft(2));
+      assertEquals(values[4], new ByteArrayBinaryData("col4", new byte[] { (byte) i }));
+    }
+    store.close();
+  }
+
+  @Test
+  public void distinctValuesAreCounted() {
+    ColumnarRowStore store = new ColumnarRowStore(metaData(ColumnType.INTEGER, ColumnType.STRING), 10);
+    for (int i = 0; i < 25; i++) { store.add(new Object[] { i % 2, i % 5 == 0 ? null : "value " + (i % 3) }); }
+    assertTrue(store.isSpilled());
+    Map<Object, Long> expected = new HashMap<>();
+    expected.put(0, 13L);
+    expected.put(1, 12L);
+    assertEquals(store.distinctValues(0, 0, store.size()), expected);
+    expected.clear();
+    expected.put(null, 2L);
+    expected.put("value 0", 3L);
+    expected.put("value 1", 3L);
+    expected.put("value 2", 2L);
+    assertEquals(store.distinctValues(1, 0, store.getHeapSize()), expected, "The rows in memory");
+    expected.put(null, 5L);
+    expected.put("value 0", 7L);
+    expected.put("value 1", 7L);
+    expected.put("value 2", 6L);
+    assertEquals(store.distinctValues(1, 0, store.size()), expected);
+    store.close();
+  }
+}
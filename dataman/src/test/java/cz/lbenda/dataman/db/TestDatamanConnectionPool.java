@@ -0,0 +1,119 @@
+package cz.lbenda.dataman.db;
+
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.testng.Assert.*;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 25.10.15. */
+public class TestDatamanConnectionPool extends TestAbstractDB {
+
+  /** Test if borrowed connections are exclusive and returned connection is reused */
+  @Test(dataProviderClass = TestAbstractDB.class, dataProvider = "databases", groups = "database")
+  public void testBorrowAndReuse(TestHelperPrepareDB.DBDriver driverClass, String url, String catalog) throws SQLException {
+    DbConfig config = TestHelperPrepareDB.createConfig(driverClass, url);
+    DatamanDataSource ds = new DatamanDataSource(config);
+    Connection first = ds.getConnection();
+    Connection second = ds.getConnection();
+    assertNotSame(first, second);
+
+    first.setAutoCommit(false);
+    first.close();
+    Connection third = ds.getConnection();
+    assertSame(third, first);
+    assertTrue(third.getAutoCommit(), "The state of returned connection must be reset");
+    third.close();
+    second.close();
+    ds.closeAllConnections();
+    assertTrue(first.isClosed());
+  }
+
+  /** Test if pool doesn't create more connections then is configured */
+  @Test(dataProviderClass = TestAbstractDB.class, dataProvider = "databases", groups = "database")
+  public void testMaxSize(TestHelperPrepareDB.DBDriver driverClass, String url, String catalog) throws SQLException {
+    DbConfig config = TestHelperPrepareDB.createConfig(driverClass, url);
+    config.getConnectionPoolConfiguration().setMaxSize(1);
+    config.getConnectionPoolConfiguration().setBorrowTimeout(100);
+    DatamanDataSource ds = new DatamanDataSource(config);
+    try (Connection ignored = ds.getConnection()) {
+      ds.getConnection();
+      fail("The second connection can't be borrowed when pool have max size 1");
+    } catch (SQLException e) {
+      assertTrue(e.getMessage().startsWith("No free connection"));
+    }
+    try (Connection connection = ds.getConnection()) {
+      assertFalse(connection.isClosed());
+    }
+    ds.closeAllConnections();
+  }
+
+  /** Test if reaper close idle connections and count them */
+  @Test(dataProviderClass = TestAbstractDB.class, dataProvider = "databases", groups = "database")
+  public void testReapIdle(TestHelperPrepareDB.DBDriver driverClass, String url, String catalog) throws SQLException, InterruptedException {
+    DbConfig config = TestHelperPrepareDB.createConfig(driverClass, url);
+    config.getConnectionPoolConfiguration().setIdleTimeout(1);
+    DatamanDataSource ds = new DatamanDataSource(config);
+    Connection connection = ds.getConnection();
+    connection.close();
+    DatamanConnectionPool pool = ds.getConnectionPool();
+    assertEquals(pool.getIdleCount(), 1);
+    Thread.sleep(10);
+    pool.reap();
+    assertEquals(pool.getIdleCount(), 0);
+    assertTrue(connection.isClosed());
+    assertEquals(pool.getOpenedCount(), 1);
+    assertEquals(pool.getClosedCount(), 1);
+    assertEquals(pool.getReapedCount(), 1);
+    ds.closeAllConnections();
+  }
+
+  /** Test if prepared statement is reused after close */
+  @Test(dataProviderClass = TestAbstractDB.class, dataProvider = "databases", groups = "database")
+  public void testStatementCache(TestHelperPrepareDB.DBDriver driverClass, String url, String catalog) throws SQLException {
+    DbConfig config = TestHelperPrepareDB.createConfig(driverClass, url);
+    DatamanDataSource ds = new DatamanDataSource(config);
+    String sql = "select * from \"test\".table1 where id = ?";
+    try (Connection connection = ds.getConnection()) {
+      PreparedStatementCache cache = ((DatamanConnection) connection).getStatementCache();
+      PreparedStatement first = connection.prepareStatement(sql);
+      PreparedStatement nested = connection.prepareStatement(sql);
+      assertNotSame(first, nested, "The used statement can't be returned twice");
+      nested.close();
+      first.close();
+      try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        assertSame(ps, first);
+        ps.setInt(1, 1);
+        try (ResultSet rs = ps.executeQuery()) {
+          assertTrue(rs.next());
+        }
+      }
+      assertEquals(cache.getHits(), 1);
+      assertEquals(cache.getMisses(), 2);
+      assertEquals(cache.getSize(), 1);
+    }
+    ds.closeAllConnections();
+  }
+
+  /** Test if read data source create read only connections and reset the flag when connection is returned */
+  @Test(dataProviderClass = TestAbstractDB.class, dataProvider = "databases", groups = "database")
+  public void testReadOnlyConnection(TestHelperPrepareDB.DBDriver driverClass, String url, String catalog) throws SQLException {
+    DbConfig config = TestHelperPrepareDB.createConfig(driverClass, url);
+    DatamanDataSource ds = new DatamanDataSource(config, true);
+    Connection connection = ds.getConnection();
+    assertTrue(connection.isReadOnly());
+    connection.setReadOnly(false);
+    connection.close();
+    try (Connection again = ds.getConnection()) {
+      assertSame(again, connection);
+      assertTrue(again.isReadOnly(), "The read only flag must be restored when connection is returned");
+    }
+    assertTrue(ds.getConnectionPool().isReadOnly());
+    assertNotSame(ds.getConnectionPool(), new DatamanDataSource(config).getConnectionPool());
+    ds.closeAllConnections();
+    new DatamanDataSource(config).closeAllConnections();
+  }
+}
@@ -3,6 +3,9 @@ package cz.lbenda.dataman.db;
 import org.testng.annotations.Test;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.testng.Assert.*;
 
@@ -39,4 +42,79 @@ public class TestDbRowManipulator extends TestAbstractDB {
       assertEquals(id, Integer.valueOf(expectedId));
     }
   }
-}
\ No newline at end of file
+
+  /** Test saving changes of more rows which are sent to database in batches */
+  @Test(dataProviderClass = TestAbstractDB.class, dataProvider = "databases", dependsOnMethods = { "testSaveInsert" })
+  public void testSaveInBatches(TestHelperPrepareDB.DBDriver driverClass, String url, String catalog) {
+    DbConfig config = TestHelperPrepareDB.createConfig(driverClass, url);
+    config.getReader().generateStructure();
+    config.setBatchSize(2);
+
+    TableDesc td = config.getCatalog(catalog).getSchema("test").getTable("TABLE3");
+    td.reloadRowsAction();
+    int originalSize = td.getRows().size();
+
+    List<RowDesc> inserted = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      RowDesc rd = td.addNewRowAction();
+      rd.setColumnValue(td.getColumn("ID1"), "batch");
+      rd.setColumnValue(td.getColumn("ID2"), i);
+      if (i != 2) { rd.setColumnValue(td.getColumn("COL"), "value" + i); } // Row with other shape of columns
+      inserted.add(rd);
+    }
+    config.getDbRowManipulator().saveChanges(td);
+    assertFalse(td.isDirty());
+    assertEquals(config.getReader().readTableData(td, -1, -1).size(), originalSize + 5);
+
+    inserted.subList(0, 3).forEach(rd -> rd.setColumnValue(td.getColumn("COL"), "changed"));
+    config.getDbRowManipulator().saveChanges(td);
+    assertEquals(config.getReader().readTableData(td, -1, -1).stream()
+        .filter(rd -> "changed".equals(rd.getColumnValue(td.getColumn("COL")))).count(), 3);
+
+    td.getQueryRow().setState(inserted, RowDesc.RowDescState.REMOVED);
+    config.getDbRowManipulator().saveChanges(td);
+    assertFalse(td.isDirty());
+    assertEquals(td.getRows().size(), originalSize);
+    assertEquals(config.getReader().readTableData(td, -1, -1).size(), originalSize);
+  }
+
+  /** Test saving changes of master and slave table in one transaction */
+  @Test(dataProviderClass = TestAbstractDB.class, dataProvider = "databases", dependsOnMethods = { "testSaveInsert" })
+  public void testSaveAllTables(TestHelperPrepareDB.DBDriver driverClass, String url, String catalog) {
+    DbConfig config = TestHelperPrepareDB.createConfig(driverClass, url);
+    config.getReader().generateStructure();
+
+    TableDesc master = config.getCatalog(catalog).getSchema("test").getTable("TABLE1");
+    TableDesc slave = config.getCatalog(catalog).getSchema("test").getTable("TABLE2");
+    assertEquals(DbRowManipulator.masterFirstOrder(Arrays.asList(slave, master)), Arrays.asList(master, slave));
+    assertEquals(DbRowManipulator.masterFirstOrder(Arrays.asList(master, slave)), Arrays.asList(master, slave));
+
+    master.reloadRowsAction();
+    slave.reloadRowsAction();
+    int masterSize = master.getRows().size();
+    int slaveSize = slave.getRows().size();
+
+    RowDesc masterRow = master.addNewRowAction();
+    masterRow.setColumnValue(master.getColumn("COL"), "master");
+    config.getDbRowManipulator().saveChanges(master);
+    Object id = masterRow.getColumnValue(master.getColumn("ID"));
+
+    RowDesc slaveRow = slave.addNewRowAction();
+    slaveRow.setColumnValue(slave.getColumn("ID"), "slave");
+    slaveRow.setColumnValue(slave.getColumn("TABLE1_ID"), id);
+    masterRow.setColumnValue(master.getColumn("COL"), "master changed");
+    config.getDbRowManipulator().saveChanges(Arrays.asList(slave, master));
+    assertFalse(master.isDirty());
+    assertFalse(slave.isDirty());
+    assertEquals(config.getReader().readTableData(slave, -1, -1).size(), slaveSize + 1);
+
+    // The slave row must be deleted before the master row
+    master.getQueryRow().setState(masterRow, RowDesc.RowDescState.REMOVED);
+    slave.getQueryRow().setState(slaveRow, RowDesc.RowDescState.REMOVED);
+    config.getDbRowManipulator().saveChanges(Arrays.asList(master, slave));
+    assertFalse(master.isDirty());
+    assertFalse(slave.isDirty());
+    assertEquals(config.getReader().readTableData(master, -1, -1).size(), masterSize);
+    assertEquals(config.getReader().readTableData(slave, -1, -1).size(), slaveSize);
+  }
+}
@@ -15,8 +15,13 @@
  */
 package cz.lbenda.dataman.db;
 
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import org.testng.annotations.Test;
 
+import java.util.*;
+import java.util.stream.Collectors;
+
 import static org.testng.Assert.*;
 
 /** Created by Lukas Benda <lbenda @ lbenda.cz> on 19.9.15.
@@ -64,4 +69,109 @@ public class TestDbStructureFactory extends TestAbstractDB {
       i++;
     }
   }
+
+  @Test(dataProviderClass = TestAbstractDB.class, dataProvider = "databases", dependsOnMethods = { "readStructureFromDatabase" })
+  public void testPagedTableData(TestHelperPrepareDB.DBDriver driverClass, String url, String catalog) {
+    DbConfig config = TestHelperPrepareDB.createConfig(driverClass, url);
+    config.getReader().generateStructure();
+    config.setPageSize(1);
+
+    for (String tableName : new String[] { "TABLE1", "TABLE3" }) {
+      TableDesc tableDesc = config.getCatalog(catalog).getSchema("test").getTable(tableName);
+      List<RowDesc> all = config.getReader().readTableData(tableDesc, -1, -1);
+      assertTrue(all.size() > 2);
+
+      List<RowDesc> page = config.getReader().readTableData(tableDesc, 1, 3);
+      assertEquals(page.size(), 2);
+      assertEquals(page.get(0), all.get(1));
+      assertEquals(page.get(1), all.get(2));
+
+      tableDesc.reloadRowsAction();
+      assertEquals(tableDesc.getRows().size(), 1);
+      assertFalse(tableDesc.isAllRowsLoaded());
+      //noinspection StatementWithEmptyBody
+      while (tableDesc.loadNextPageAction()) { }
+      assertTrue(tableDesc.isAllRowsLoaded());
+      assertEquals(tableDesc.getRows(), all);
+    }
+  }
+
+  @Test(dataProviderClass = TestAbstractDB.class, dataProvider = "databases", dependsOnMethods = { "readStructureFromDatabase" })
+  public void testQueryTableData(TestHelperPrepareDB.DBDriver driverClass, String url, String catalog) {
+    DbConfig config = TestHelperPrepareDB.createConfig(driverClass, url);
+    config.getReader().generateStructure();
+    config.setPageSize(1);
+    TableDesc tableDesc = config.getCatalog(catalog).getSchema("test").getTable("TABLE1");
+    ColumnDesc id = tableDesc.getColumn("ID");
+    ColumnDesc col = tableDesc.getColumn("COL");
+    List<RowDesc> all = config.getReader().readTableData(tableDesc, -1, -1);
+    assertTrue(all.size() > 2);
+
+    Set<Object> values = new HashSet<>(Arrays.asList(all.get(0).getColumnValue(col), all.get(2).getColumnValue(col), null));
+    //noinspection unchecked
+    List<RowDesc> expected = all.stream().filter(row -> values.contains(row.getColumnValue(col)))
+        .sorted((r1, r2) -> -((Comparable) r1.getColumnValue(id)).compareTo(r2.getColumnValue(id)))
+        .collect(Collectors.toList());
+
+    TableQuery query = new TableQuery();
+    query.getConditions().add(new TableQuery.ColumnCondition(col, values));
+    query.getOrders().add(new TableQuery.ColumnOrder(id, false));
+    tableDesc.queryRowsAction(query);
+    //noinspection StatementWithEmptyBody
+    while (tableDesc.loadNextPageAction()) { }
+    assertEquals(tableDesc.getRows(), expected);
+
+    TableQuery excluding = new TableQuery();
+    excluding.getConditions().add(new TableQuery.ColumnCondition(col, values, true));
+    tableDesc.queryRowsAction(excluding);
+    //noinspection StatementWithEmptyBody
+    while (tableDesc.loadNextPageAction()) { }
+    assertEquals(tableDesc.getRows(), all.stream().filter(row -> !values.contains(row.getColumnValue(col)))
+        .collect(Collectors.toList()));
+
+    tableDesc.queryRowsAction(new TableQuery());
+    //noinspection StatementWithEmptyBody
+    while (tableDesc.loadNextPageAction()) { }
+    assertEquals(tableDesc.getRows(), all);
+  }
+
+  @Test(dataProviderClass = TestAbstractDB.class, dataProvider = "databases", dependsOnMethods = { "readStructureFromDatabase" })
+  public void testDistinctValues(TestHelperPrepareDB.DBDriver driverClass, String url, String catalog) {
+    DbConfig config = TestHelperPrepareDB.createConfig(driverClass, url);
+    config.getReader().generateStructure();
+    TableDesc tableDesc = config.getCatalog(catalog).getSchema("test").getTable("TABLE1");
+    ColumnDesc col = tableDesc.getColumn("COL");
+    List<RowDesc> all = config.getReader().readTableData(tableDesc, -1, -1);
+
+    Map<Object, Long> expected = new HashMap<>();
+    all.forEach(row -> expected.merge(row.getColumnValue(col), 1L, Long::sum));
+    assertEquals(config.getReader().readDistinctValues(tableDesc, col, -1), expected);
+    assertEquals(config.getReader().readDistinctValues(tableDesc, col, 1).size(), 1);
+  }
+
+  @Test(dataProviderClass = TestAbstractDB.class, dataProvider = "databases", dependsOnMethods = { "readStructureFromDatabase" })
+  public void testStreamTableData(TestHelperPrepareDB.DBDriver driverClass, String url, String catalog) {
+    DbConfig config = TestHelperPrepareDB.createConfig(driverClass, url);
+    config.getReader().generateStructure();
+    TableDesc tableDesc = config.getCatalog(catalog).getSchema("test").getTable("TABLE3");
+    List<RowDesc> all = config.getReader().readTableData(tableDesc, -1, -1);
+
+    ObservableList<RowDesc> rows = FXCollections.observableArrayList();
+    List<Runnable> chunks = new ArrayList<>();
+    StreamingRowLoader loader = new StreamingRowLoader(tableDesc.getName(), tableDesc.getQueryRow().getMetaData(), rows);
+    loader.setChunkSize(2);
+    loader.getDecoder().setBatchSize(1);
+    loader.setChunkTime(Long.MAX_VALUE);
+    loader.setDeliverer(chunks::add);
+    assertEquals(config.getReader().streamTableData(tableDesc, loader), all.size());
+    assertEquals(chunks.size(), (all.size() + 1) / 2);
+    assertTrue(rows.isEmpty(), "The rows are added only by deliverer");
+    chunks.forEach(Runnable::run);
+    assertEquals(rows, all);
+
+    StreamingRowLoader cancelled = new StreamingRowLoader(tableDesc.getName(), tableDesc.getQueryRow().getMetaData(), rows);
+    cancelled.cancel();
+    assertEquals(config.getReader().streamTableData(tableDesc, cancelled), 0);
+    assertTrue(cancelled.isCancelled());
+  }
 }
@@ -19,17 +19,25 @@ import cz.lbenda.common.BitArrayBinaryData;
 import cz.lbenda.dataman.Constants;
 import cz.lbenda.dataman.db.dialect.ColumnType;
 import cz.lbenda.dataman.db.dialect.MSSQLDialect;
+import cz.lbenda.dataman.schema.export.ExportType;
+import cz.lbenda.dataman.schema.export.FieldType;
+import cz.lbenda.dataman.schema.export.ObjectFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.transform.stream.StreamSource;
 import java.io.*;
 import java.math.BigDecimal;
 import java.sql.Date;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 /** Created by Lukas Benda <lbenda @ lbenda.cz> on 20.9.15. */
 public class TestExportTableData {
@@ -158,4 +166,53 @@ public class TestExportTableData {
     SQLSExecutor sqlsExecutor = new
      */
   }
+
+  @Test
+  public void rowWriterWriteSameXMLv1() throws IOException, JAXBException {
+    CatalogDesc catalogDesc = new CatalogDesc("catalog");
+    SchemaDesc schemaDesc = new SchemaDesc(catalogDesc, "schema");
+    catalogDesc.getSchemas().add(schemaDesc);
+    TableDesc tableDesc = new TableDesc(schemaDesc, "TABLE", "table");
+    ColumnDesc cd1 = new ColumnDesc(tableDesc, "id", null, ColumnType.INTEGER, 10, 0, false, true, true, "NULL");
+    cd1.setPosition(1);
+    ColumnDesc cd2 = new ColumnDesc(tableDesc, "column2", null, ColumnType.STRING, 250, 0, true, false, false, "NULL");
+    cd2.setPosition(2);
+    tableDesc.getQueryRow().getMetaData().getColumns().addAll(cd1, cd2);
+    tableDesc.getQueryRow().setSQL("select * from \"schema\".\"table\"");
+
+    RowDesc row1 = tableDesc.addNewRowAction();
+    row1.setColumnValue(cd1, 0);
+    row1.setColumnValue(cd2, "<varchar> & column");
+    row1 = tableDesc.addNewRowAction();
+    row1.setColumnValue(cd1, 1);
+    row1.setColumnValue(cd2, null);
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    ExportTableData.writeSqlQueryRowsToXMLv1(tableDesc.getQueryRow(), expected);
+    StringWriter writer = new StringWriter();
+    ExportTableData.RowWriter rowWriter = ExportTableData.rowWriter(ExportTableData.SpreadsheetFormat.XMLv1,
+        tableDesc.getQueryRow(), writer);
+    rowWriter.writeRow(new Object[] { 0, "<varchar> & column" });
+    rowWriter.writeRow(new Object[] { 1, null });
+    rowWriter.finish();
+
+    ExportType exp = readExport(new StringReader(expected.toString("UTF-8")));
+    ExportType act = readExport(new StringReader(writer.toString()));
+    Assert.assertEquals(act.getSql(), exp.getSql());
+    Assert.assertEquals(act.getVersion(), exp.getVersion());
+    Assert.assertEquals(act.getColumns().getColumn().size(), 2);
+    Assert.assertEquals(act.getRow().size(), exp.getRow().size());
+    for (int i = 0; i < exp.getRow().size(); i++) {
+      Assert.assertEquals(fields(act.getRow().get(i).getField()), fields(exp.getRow().get(i).getField()), "Row " + i);
+    }
+  }
+
+  private static ExportType readExport(Reader reader) throws JAXBException {
+    return JAXBContext.newInstance(ObjectFactory.class).createUnmarshaller()
+        .unmarshal(new StreamSource(reader), ExportType.class).getValue();
+  }
+
+  private static List<String> fields(List<FieldType> fields) {
+    return fields.stream().map(f -> Boolean.TRUE.equals(f.isNull()) ? "NULL" : f.getValue()).collect(Collectors.toList());
+  }
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import cz.lbenda.dataman.db.dialect.HSQLDBDialect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Test of pipelined decoding of rows and benchmark which compare it with decoding on one thread */
+public class TestPipelinedRowDecoder {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TestPipelinedRowDecoder.class);
+
+  private static final String URL = "jdbc:hsqldb:mem:wideTest";
+  private static final int COLUMNS = 40;
+  private static final int ROWS = 20000;
+
+  @BeforeClass
+  public void setUp() throws SQLException {
+    try (Connection connection = TestHelperPrepareDB.getConnection(TestHelperPrepareDB.DBDriver.HSQL, URL);
+         Statement st = connection.createStatement()) {
+      StringBuilder create = new StringBuilder("create table wide (id integer primary key");
+      StringBuilder insert = new StringBuilder("insert into wide values (?");
+      for (int i = 0; i < COLUMNS; i++) {
+        create.append(String.format(", s%s varchar(40), n%s decimal(12, 2), t%s timestamp", i, i, i));
+        insert.append(", ?, ?, ?");
+      }
+      st.execute(create.append(")").toString());
+      try (PreparedStatement ps = connection.prepareStatement(insert.append(")").toString())) {
+        for (int r = 0; r < ROWS; r++) {
+          ps.setInt(1, r);
+          for (int i = 0; i < COLUMNS; i++) {
+            ps.setString(2 + i * 3, "value " + r + " " + i);
+            ps.setBigDecimal(3 + i * 3, new java.math.BigDecimal(r * 100 + i).movePointLeft(2));
+            ps.setTimestamp(4 + i * 3, new Timestamp(r * 1000L + i));
+          }
+          ps.addBatch();
+          if (r % 1000 == 999) { ps.executeBatch(); }
+        }
+        ps.executeBatch();
+      }
+    }
+  }
+
+  private SQLQueryMetaData metaData(ResultSet rs) throws SQLException {
+    ResultSetMetaData mtd = rs.getMetaData();
+    ColumnDesc columns[] = new ColumnDesc[mtd.getColumnCount()];
+    for (int i = 1; i <= columns.length; i++) { columns[i - 1] = new ColumnDesc(mtd, i, new HSQLDBDialect()); }
+    SQLQueryMetaData result = new SQLQueryMetaData();
+    result.setColumns(columns);
+    return result;
+  }
+
+  private List<RowDesc> readSequential() throws SQLException {
+    try (Connection connection = TestHelperPrepareDB.getConnection(TestHelperPrepareDB.DBDriver.HSQL, URL);
+         Statement st = connection.createStatement();
+         ResultSet rs = st.executeQuery("select * from wide order by id")) {
+      SQLQueryMetaData metaData = metaData(rs);
+      List<RowDesc> result = new ArrayList<>(ROWS);
+      while (rs.next()) {
+        RowDesc row = RowDesc.createNewRow(metaData, RowDesc.RowDescState.LOADED);
+        for (ColumnDesc columnDesc : metaData.getColumns()) { row.loadInitialColumnValue(columnDesc, rs); }
+        result.add(row);
+      }
+      return result;
+    }
+  }
+
+  private List<RowDesc> readPipelined(PipelinedRowDecoder decoder) throws SQLException {
+    try (Connection connection = TestHelperPrepareDB.getConnection(TestHelperPrepareDB.DBDriver.HSQL, URL);
+         Statement st = connection.createStatement();
+         ResultSet rs = st.executeQuery("select * from wide order by id")) {
+      List<RowDesc> result = new ArrayList<>(ROWS);
+      assertEquals(decoder.decode(rs, metaData(rs), result::addAll, () -> false), ROWS);
+      return result;
+    }
+  }
+
+  @Test
+  public void testOrderIsPreserved() throws SQLException {
+    PipelinedRowDecoder decoder = new PipelinedRowDecoder();
+    decoder.setBatchSize(7);
+    decoder.setCapacity(3);
+    List<RowDesc> rows = readPipelined(decoder);
+    assertEquals(rows.size(), ROWS);
+    assertEquals(rows, readSequential(), "The rows must be in same order as in result set");
+  }
+
+  @Test
+  public void testCancel() throws SQLException {
+    try (Connection connection = TestHelperPrepareDB.getConnection(TestHelperPrepareDB.DBDriver.HSQL, URL);
+         Statement st = connection.createStatement();
+         ResultSet rs = st.executeQuery("select * from wide order by id")) {
+      List<RowDesc> result = new ArrayList<>();
+      PipelinedRowDecoder decoder = new PipelinedRowDecoder();
+      decoder.setBatchSize(10);
+      long count = decoder.decode(rs, metaData(rs), result::addAll, () -> result.size() >= 100);
+      assertTrue(count < ROWS);
+      assertEquals(result.size(), count);
+    }
+  }
+
+  /** Benchmark which compare decoding on one thread with pipelined decoding of wide table */
+  @Test(groups = "benchmark", dependsOnMethods = "testOrderIsPreserved")
+  public void benchmarkWideTable() throws SQLException {
+    for (int i = 0; i < 2; i++) { readSequential(); readPipelined(new PipelinedRowDecoder()); } // warm up
+    int rounds = 3;
+    long sequential = 0;
+    long pipelined = 0;
+    for (int i = 0; i < rounds; i++) {
+      long start = System.nanoTime();
+      readSequential();
+      sequential += System.nanoTime() - start;
+      start = System.nanoTime();
+      readPipelined(new PipelinedRowDecoder());
+      pipelined += System.nanoTime() - start;
+    }
+    double seqRowsPerSec = ROWS * rounds / (sequential / 1e9);
+    double pipRowsPerSec = ROWS * rounds / (pipelined / 1e9);
+    LOG.info(String.format("Decoding of %s rows with %s columns: sequential %.0f rows/s, pipelined %.0f rows/s with %s workers (%.2fx)",
+        ROWS, 1 + COLUMNS * 3, seqRowsPerSec, pipRowsPerSec, PipelinedRowDecoder.WORKERS, pipRowsPerSec / seqRowsPerSec));
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db;
+
+import cz.lbenda.dataman.db.dialect.ColumnType;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.testng.Assert.*;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Test of index of unsaved rows */
+public class TestRowChangeSet {
+
+  @Test
+  public void changedRowsAreTracked() {
+    TableDesc td = new TableDesc(new SchemaDesc(new CatalogDesc("CATALOG"), "SCHEMA"), "TABLE", "table1");
+    ColumnDesc cd = new ColumnDesc(td, "col1", null, ColumnType.STRING, 20, 0, true, false, false, null);
+    td.addColumn(cd);
+    RowDesc loaded1 = RowDesc.createNewRow(td.getQueryRow().getMetaData(), RowDesc.RowDescState.LOADED);
+    RowDesc loaded2 = RowDesc.createNewRow(td.getQueryRow().getMetaData(), RowDesc.RowDescState.LOADED);
+    td.getRows().addAll(loaded1, loaded2);
+    RowChangeSet changeSet = td.getChangeSet();
+    assertFalse(changeSet.isDirty());
+    assertFalse(td.isDirty());
+
+    RowDesc inserted = td.addNewRowAction();
+    loaded2.setColumnValue(cd, "changed");
+    loaded1.setState(RowDesc.RowDescState.REMOVED);
+    assertTrue(td.isDirty());
+    assertEquals(changeSet.size(), 3);
+    assertEquals(changeSet.getInserted(), Collections.singletonList(inserted));
+    assertEquals(changeSet.getUpdated(), Collections.singletonList(loaded2));
+    assertEquals(changeSet.getRemoved(), Collections.singletonList(loaded1));
+
+    td.getRows().remove(inserted);
+    assertTrue(changeSet.getInserted().isEmpty());
+    loaded2.cancelChanges();
+    assertTrue(changeSet.getUpdated().isEmpty());
+    loaded1.savedChanges();
+    assertEquals(changeSet.size(), 0);
+    assertFalse(td.isDirty());
+
+    td.getRows().removeAll(Arrays.asList(loaded1, loaded2));
+    loaded1.setState(RowDesc.RowDescState.REMOVED);
+    assertFalse(td.isDirty(), "Rows removed from table aren't tracked");
+  }
+}
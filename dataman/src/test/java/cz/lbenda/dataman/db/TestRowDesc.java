@@ -17,10 +17,17 @@ package cz.lbenda.dataman.db;
 
 import static org.testng.Assert.*;
 
+import cz.lbenda.dataman.db.dialect.ColumnType;
 import cz.lbenda.dataman.db.dialect.HSQLDBDialect;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.value.ObservableValue;
 import org.testng.annotations.Test;
 
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /** Created by Lukas Benda <lbenda @ lbenda.cz> on 20.9.15.
  * Test RowDesc implementation */
@@ -58,4 +65,103 @@ public class TestRowDesc {
     assertEquals(row.getState(), RowDesc.RowDescState.LOADED);
     */
   }
+
+  @Test
+  public void readOnlyRow() {
+    SchemaDesc schemaDesc = new SchemaDesc(new CatalogDesc("CATALOG"), "SCHEMA");
+    TableDesc td = new TableDesc(schemaDesc, "VIEW", "view1");
+    ColumnDesc cd = new ColumnDesc(td, "col1", null, ColumnType.STRING, 20, 0, true, false, false, null);
+    ColumnDesc cd1 = new ColumnDesc(td, "col2", null, ColumnType.INTEGER, 10, 0, true, false, false, null);
+    td.addColumn(cd);
+    td.addColumn(cd1);
+
+    RowDesc row = ReadOnlyRowDesc.create(td.getQueryRow().getMetaData(), new Object[] { "value", 5L });
+    assertEquals(row.getColumnValue(cd), "value");
+    assertEquals((Object) row.getColumnValue(cd1), 5);
+    assertEquals(row.getState(), RowDesc.RowDescState.LOADED);
+    assertFalse(row.isColumnChanged(cd));
+    assertEquals(row.valueProperty(cd).getValue(), "value");
+    assertNotSame(row.valueProperty(cd), row.valueProperty(cd), "The property is created only for showed cell");
+    try {
+      row.setColumnValue(cd, "other");
+      fail("The read only row can't be changed");
+    } catch (UnsupportedOperationException e) { /* expected */ }
+    assertEquals(row.getColumnValue(cd), "value");
+  }
+
+  @Test
+  public void copyOnWriteChanges() {
+    SchemaDesc schemaDesc = new SchemaDesc(new CatalogDesc("CATALOG"), "SCHEMA");
+    TableDesc td = new TableDesc(schemaDesc, "TABLE", "table1");
+    ColumnDesc cd = new ColumnDesc(td, "col1", null, ColumnType.STRING, 20, 0, true, false, false, null);
+    ColumnDesc cd1 = new ColumnDesc(td, "col2", null, ColumnType.INTEGER, 10, 0, true, false, false, null);
+    td.addColumn(cd);
+    td.addColumn(cd1);
+
+    RowDesc row = RowDesc.createNewRow(td.getQueryRow().getMetaData(), RowDesc.RowDescState.LOADED);
+    row.setInitialColumnValue(cd, "value");
+    row.setInitialColumnValue(cd1, 5L);
+    int hashCode = row.hashCode();
+    assertFalse(row.isColumnChanged(cd));
+
+    row.setColumnValue(cd, "other");
+    assertEquals(row.getState(), RowDesc.RowDescState.CHANGED);
+    assertTrue(row.isColumnChanged(cd));
+    assertFalse(row.isColumnChanged(cd1));
+    assertEquals(row.getColumnValue(cd), "other");
+    assertEquals(row.getInitialColumnValue(cd), "value");
+    assertEquals(row.hashCode(), hashCode, "The hash code is calculated from initial values");
+
+    ObservableValue property = row.valueProperty(cd);
+    assertSame(row.valueProperty(cd), property, "The property is created only once");
+    assertEquals(property.getValue(), "other");
+    //noinspection unchecked
+    ((SimpleStringProperty) property).setValue("third");
+    assertEquals(row.getColumnValue(cd), "third");
+
+    row.cancelChanges();
+    assertEquals(row.getState(), RowDesc.RowDescState.LOADED);
+    assertFalse(row.isColumnChanged(cd));
+    assertEquals(row.getColumnValue(cd), "value");
+    assertEquals(property.getValue(), "value");
+
+    row.setColumnValue(cd1, 6);
+    row.savedChanges();
+    assertFalse(row.isColumnChanged(cd1));
+    assertEquals((Object) row.getInitialColumnValue(cd1), 6);
+  }
+
+  @Test
+  public void changeBlock() {
+    SchemaDesc schemaDesc = new SchemaDesc(new CatalogDesc("CATALOG"), "SCHEMA");
+    TableDesc td = new TableDesc(schemaDesc, "TABLE", "table1");
+    ColumnDesc cd = new ColumnDesc(td, "col1", null, ColumnType.STRING, 20, 0, true, false, false, null);
+    td.addColumn(cd);
+    List<RowDesc> rows = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      RowDesc row = RowDesc.createNewRow(td.getQueryRow().getMetaData(), RowDesc.RowDescState.LOADED);
+      row.setInitialColumnValue(cd, "value" + i);
+      rows.add(row);
+    }
+    td.getRows().addAll(rows);
+    AtomicInteger invalidations = new AtomicInteger();
+    rows.forEach(row -> row.addListener(observable -> invalidations.incrementAndGet()));
+    List<Collection<RowDesc>> events = new ArrayList<>();
+    td.getQueryRow().addRowsChangeListener(events::add);
+
+    td.getQueryRow().beginChange();
+    td.getQueryRow().setState(rows.subList(0, 5), RowDesc.RowDescState.REMOVED);
+    assertTrue(events.isEmpty(), "The nested block don't announce changes");
+    td.getQueryRow().setState(rows.get(5), RowDesc.RowDescState.REMOVED);
+    td.getQueryRow().commitChange();
+    assertEquals(invalidations.get(), 0);
+    assertEquals(events.size(), 1);
+    assertEquals(events.get(0).size(), 6);
+    assertTrue(td.isDirty());
+
+    td.cancelChangesAction();
+    assertEquals(events.size(), 2);
+    assertTrue(rows.stream().allMatch(row -> row.getState() == RowDesc.RowDescState.LOADED));
+    assertFalse(td.isDirty());
+  }
 }
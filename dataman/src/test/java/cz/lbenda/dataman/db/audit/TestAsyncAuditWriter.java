@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db.audit;
+
+import cz.lbenda.dataman.schema.exconf.AuditOverflowType;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.*;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Test of asynchronous writer of audit records */
+public class TestAsyncAuditWriter {
+
+  @Test
+  public void recordsAreWrittenInOrderInBatches() {
+    List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+    List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    AsyncAuditWriter<Integer> writer = new AsyncAuditWriter<>("test", 1000, 10, 1000, AuditOverflowType.BLOCK,
+        records -> {
+          batchSizes.add(records.size());
+          written.addAll(records);
+        });
+    List<Integer> expected = IntStream.range(0, 95).boxed().collect(Collectors.toList());
+    expected.forEach(writer::submit);
+    writer.flush();
+    assertEquals(written, expected);
+    assertTrue(batchSizes.stream().allMatch(size -> size <= 10));
+    assertTrue(batchSizes.size() < expected.size(), "The records are written in batches");
+
+    writer.submit(95);
+    writer.close();
+    assertTrue(writer.isClosed());
+    assertEquals(written.size(), 96, "The records are written on close");
+    writer.submit(96);
+    assertEquals(written.get(96), (Integer) 96, "The record after close is written immediately");
+  }
+
+  @Test
+  public void recordsAreDroppedWhenQueueIsFull() throws InterruptedException {
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+    AsyncAuditWriter<Integer> writer = new AsyncAuditWriter<>("test", 2, 1, 0, AuditOverflowType.DROP,
+        records -> {
+          blocked.countDown();
+          release.await();
+          written.addAll(records);
+        });
+    writer.submit(0);
+    blocked.await(); // The writer is waiting in sink with first record
+    for (int i = 1; i <= 5; i++) { writer.submit(i); }
+    assertEquals(writer.getDropped(), 3);
+    release.countDown();
+    writer.close();
+    assertEquals(written, Arrays.asList(0, 1, 2));
+  }
+
+  @Test(timeOut = 10000)
+  public void noRecordIsLostWhenSubmitRaceWithClose() throws InterruptedException {
+    List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+    AsyncAuditWriter<Integer> writer = new AsyncAuditWriter<>("test", 1, 1, 0, AuditOverflowType.BLOCK,
+        written::addAll);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> submitters = IntStream.range(0, 4).mapToObj(t -> new Thread(() -> {
+      try { start.await(); } catch (InterruptedException e) { return; }
+      for (int i = 0; i < 500; i++) { writer.submit(t * 500 + i); }
+    })).collect(Collectors.toList());
+    submitters.forEach(Thread::start);
+    start.countDown();
+    writer.close();
+    for (Thread submitter : submitters) { submitter.join(); }
+    assertEquals(written.stream().sorted().collect(Collectors.toList()),
+        IntStream.range(0, 2000).boxed().collect(Collectors.toList()));
+  }
+}
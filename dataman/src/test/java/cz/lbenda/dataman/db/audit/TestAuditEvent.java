@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db.audit;
+
+import org.testng.annotations.Test;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.testng.Assert.*;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Test of formatting of audit event */
+public class TestAuditEvent {
+
+  @Test
+  public void plainText() {
+    AuditEvent event = new AuditEvent("user", 0, Collections.singletonList("insert into t (a, b, c) values (?, ?, ?)"),
+        Arrays.asList(new Object[] { 1, "a", null }, new Object[] { 2L, new byte[] { 1, 2 }, "c" }), new int[] { 1, 1 });
+    assertEquals(event.toPlainText(), "insert into t (a, b, c) values (?, ?, ?)\n"
+        + "[1, a, null]\nAffected rows: 1\n"
+        + "[2, [1, 2], c]\nAffected rows: 1\n");
+    assertSame(event.toPlainText(), event.toPlainText(), "The text is formatted only once");
+
+    event = new AuditEvent("user", 0, Collections.singletonList("delete from t"), Collections.emptyList(), new int[] { 5 });
+    assertEquals(event.toPlainText(), "delete from t\nAffected rows: 5\n");
+
+    event = new AuditEvent("user", 0, Arrays.asList("delete from t", "delete from u"), Collections.emptyList(),
+        new int[] { 2, 3 });
+    assertEquals(event.toPlainText(), "delete from t\nAffected rows: 2\ndelete from u\nAffected rows: 3\n");
+  }
+
+  @Test
+  public void captureValue() {
+    byte[] bytes = { 1, 2 };
+    Object captured = AuditEvent.captureValue(bytes);
+    bytes[0] = 5;
+    assertEquals((byte[]) captured, new byte[] { 1, 2 });
+    Timestamp timestamp = new Timestamp(1000);
+    timestamp.setNanos(123);
+    captured = AuditEvent.captureValue(timestamp);
+    timestamp.setTime(2000);
+    Timestamp expected = new Timestamp(1000);
+    expected.setNanos(123);
+    assertEquals(captured, expected);
+    assertSame(AuditEvent.captureValue("a"), "a");
+    assertEquals(AuditEvent.captureValue(new Object[] { 1, "a" }), "[1, a]");
+  }
+
+  @Test
+  public void formatValue() {
+    Timestamp timestamp = new Timestamp(0);
+    assertEquals(AuditEvent.formatValue(timestamp).substring(0, 4), timestamp.toLocalDateTime().getYear() + "");
+    assertEquals(AuditEvent.formatValue(new Object[] { 1, "a" }), "[1, a]");
+    assertEquals(AuditEvent.formatValue(null), "null");
+  }
+}
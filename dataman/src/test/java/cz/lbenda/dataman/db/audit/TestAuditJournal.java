@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db.audit;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Test of journal of audit records */
+public class TestAuditJournal {
+
+  @Test
+  public void recordsAreRotatedAndRead() throws IOException {
+    Path directory = Files.createTempDirectory("auditJournal");
+    try {
+      AuditJournal journal = new AuditJournal(directory, 1024, 10);
+      for (int i = 0; i < 50; i++) { journal.append(i, "user", "insert into t values (" + i + ")\nAffected rows: 1\n"); }
+      journal.close();
+      assertTrue(AuditJournalReader.journalFiles(directory).size() > 1, "The journal is rotated");
+
+      journal = new AuditJournal(directory, 1024, 0);
+      journal.append(50, "user2", "\u011b\u0161\u010d\u0159");
+      journal.append(51, null, new String(new char[2000]).replace('\0', 'x')); // Bigger then file
+      journal.close();
+
+      List<AuditJournalReader.Record> records = new ArrayList<>();
+      AuditJournalReader.read(directory, records::add);
+      assertEquals(records.size(), 52);
+      for (int i = 0; i < 50; i++) {
+        assertEquals(records.get(i).getTime(), i);
+        assertEquals(records.get(i).getUser(), "user");
+        assertEquals(records.get(i).getText(), "insert into t values (" + i + ")\nAffected rows: 1\n");
+      }
+      assertEquals(records.get(50).getUser(), "user2");
+      assertEquals(records.get(50).getText(), "\u011b\u0161\u010d\u0159");
+      assertEquals(records.get(51).getUser(), "");
+      assertEquals(records.get(51).getText().length(), 2000);
+
+      StringWriter writer = new StringWriter();
+      AuditJournalReader.export(directory, writer);
+      assertTrue(writer.toString().contains("insert into t values (49)\nAffected rows: 1\n"));
+      assertTrue(writer.toString().contains(" user2\n\u011b\u0161\u010d\u0159\n"));
+    } finally {
+      //noinspection ResultOfMethodCallIgnored
+      Files.walk(directory).sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+}
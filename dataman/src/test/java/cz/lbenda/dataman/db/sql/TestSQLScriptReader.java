@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.dataman.db.sql;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.testng.Assert.*;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Test of splitting of SQL script to statements */
+public class TestSQLScriptReader {
+
+  @Test
+  public void split() {
+    assertEquals(SQLScriptReader.split("select 1;\n  select 2 ;\nselect 3"),
+        Arrays.asList("select 1", "select 2", "select 3"));
+    assertEquals(SQLScriptReader.split("select 1; select 2;;\n"), Arrays.asList("select 1", "select 2"));
+    assertEquals(SQLScriptReader.split("insert into t values ('a;b', 'it''s;');\nselect \"x;y\", `z;` from t;"),
+        Arrays.asList("insert into t values ('a;b', 'it''s;')", "select \"x;y\", `z;` from t"));
+    assertEquals(SQLScriptReader.split("-- comment;\nselect 1 /* inner; */ from t; -- end;\n/* last; */"),
+        Arrays.asList("select 1 /* inner; */ from t"));
+    assertEquals(SQLScriptReader.split("select a - -1, 4/2 from t;"), Collections.singletonList("select a - -1, 4/2 from t"));
+    assertEquals(SQLScriptReader.split("  \n-- only comment\n"), Collections.emptyList());
+  }
+
+  @Test
+  public void procedureBodies() {
+    assertEquals(SQLScriptReader.split("create function f() returns int as $body$ begin return 1; end; $body$ language plpgsql;\nselect f();"),
+        Arrays.asList("create function f() returns int as $body$ begin return 1; end; $body$ language plpgsql", "select f()"));
+    assertEquals(SQLScriptReader.split("DELIMITER //\ncreate procedure p() begin select 1; select 2; end//\nDELIMITER ;\nselect 3;"),
+        Arrays.asList("create procedure p() begin select 1; select 2; end", "select 3"));
+    assertEquals(SQLScriptReader.split("select 1 from dual\n /  \nselect 2\n/ 2 from dual;"),
+        Arrays.asList("select 1 from dual", "select 2\n/ 2 from dual"));
+  }
+
+  @Test
+  public void plsqlBlockNeedsDelimiter() {
+    assertEquals(SQLScriptReader.split("DELIMITER //\ncreate or replace procedure p is\n  x int;\nbegin\n  x := 1;\nend;\n/\n"
+            + "DELIMITER ;\nselect 1 from dual;"),
+        Arrays.asList("create or replace procedure p is\n  x int;\nbegin\n  x := 1;\nend;", "select 1 from dual"));
+    assertEquals(SQLScriptReader.split("begin\n  null;\nend;\n/\n"), Arrays.asList("begin\n  null", "end"),
+        "The slash line doesn't switch off the delimiter");
+  }
+
+  @Test
+  public void slashAfterDelimiter() {
+    assertEquals(SQLScriptReader.split("create table t (a int);\n/\nselect 1 from dual;"),
+        Arrays.asList("create table t (a int)", "select 1 from dual"));
+    assertEquals(SQLScriptReader.split("create table t2 (b int);\r\n/\r\nselect 1 from dual;\r\n/\r\n"),
+        Arrays.asList("create table t2 (b int)", "select 1 from dual"));
+  }
+
+  @Test
+  public void readByParts() {
+    int count = 100000;
+    Reader reader = new Reader() {
+      private int statement;
+      private String current = "";
+      private int pos;
+      @Override
+      public int read(char[] cbuf, int off, int len) throws IOException {
+        if (pos >= current.length()) {
+          if (statement >= count) { return -1; }
+          current = "insert into t values (" + statement + ", 'text; " + statement + "');\n";
+          pos = 0;
+          statement++;
+        }
+        int l = Math.min(len, Math.min(7, current.length() - pos)); // Short reads which split the tokens
+        current.getChars(pos, pos + l, cbuf, off);
+        pos += l;
+        return l;
+      }
+      @Override
+      public void close() {}
+    };
+    SQLScriptReader sqls = new SQLScriptReader(reader);
+    int i = 0;
+    while (sqls.hasNext()) {
+      assertEquals(sqls.next(), "insert into t values (" + i + ", 'text; " + i + "')");
+      i++;
+    }
+    assertEquals(i, count);
+  }
+}
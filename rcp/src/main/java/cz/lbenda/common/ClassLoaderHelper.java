@@ -16,10 +16,10 @@
 package cz.lbenda.common;
 
 import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.IOException;
-import java.lang.reflect.Modifier;
+import java.io.*;
 import java.net.*;
 import java.util.*;
 import java.util.jar.JarFile;
@@ -29,13 +29,75 @@ import java.util.zip.ZipFile;
  * Helper for class loader */
 public class ClassLoaderHelper {
 
+  private static final Logger LOG = LoggerFactory.getLogger(ClassLoaderHelper.class);
+
+  /** Shared class loader with count of references */
+  private static class SharedClassLoader {
+    private final String key;
+    private final URLClassLoader classLoader;
+    private int references;
+    SharedClassLoader(String key, URLClassLoader classLoader) {
+      this.key = key;
+      this.classLoader = classLoader;
+    }
+  }
+
+  private static final Map<String, SharedClassLoader> SHARED_CLASS_LOADERS = new HashMap<>();
+
+  private static String classLoaderKey(List<String> libs, boolean useSystemClassPath) {
+    return useSystemClassPath + "|" + String.join(File.pathSeparator, libs);
+  }
+
+  /** Return class from libraries. The class is loaded by shared class loader for given libraries, the reference to class
+   * loader can be released by {@link #releaseClassLoader(ClassLoader)}. */
   public static <T> Class<T> getClassFromLibs(String className, List<String> libs, boolean useSystemClassPath) throws ClassNotFoundException {
-    ClassLoader clr = createClassLoader(libs, useSystemClassPath);
-    //noinspection unchecked
-    return (Class<T>) clr.loadClass(className);
+    ClassLoader clr = acquireClassLoader(libs, useSystemClassPath);
+    try {
+      //noinspection unchecked
+      return (Class<T>) clr.loadClass(className);
+    } catch (ClassNotFoundException | RuntimeException e) {
+      releaseClassLoader(clr);
+      throw e;
+    }
   }
 
-  public static ClassLoader createClassLoader(List<String> libs, boolean useSystemClassPath) {
+  /** Return class loader which is shared by everyone who work with same libraries. Every acquired class loader must be
+   * released by {@link #releaseClassLoader(ClassLoader)}, when last reference is released the class loader is closed. */
+  public static ClassLoader acquireClassLoader(List<String> libs, boolean useSystemClassPath) {
+    String key = classLoaderKey(libs, useSystemClassPath);
+    synchronized (SHARED_CLASS_LOADERS) {
+      SharedClassLoader shared = SHARED_CLASS_LOADERS.get(key);
+      if (shared == null) {
+        shared = new SharedClassLoader(key, createClassLoader(libs, useSystemClassPath));
+        SHARED_CLASS_LOADERS.put(key, shared);
+      }
+      shared.references++;
+      return shared.classLoader;
+    }
+  }
+
+  /** Release reference to shared class loader. If class loader isn't shared, nothing happened. */
+  public static void releaseClassLoader(ClassLoader classLoader) {
+    if (classLoader == null) { return; }
+    synchronized (SHARED_CLASS_LOADERS) {
+      for (SharedClassLoader shared : SHARED_CLASS_LOADERS.values()) {
+        if (shared.classLoader == classLoader) {
+          shared.references--;
+          if (shared.references <= 0) {
+            SHARED_CLASS_LOADERS.remove(shared.key);
+            try {
+              shared.classLoader.close();
+            } catch (IOException e) {
+              LOG.warn("The class loader can't be closed", e);
+            }
+          }
+          return;
+        }
+      }
+    }
+  }
+
+  public static URLClassLoader createClassLoader(List<String> libs, boolean useSystemClassPath) {
     List<URL> urls = new ArrayList<>(libs.size());
     libs.forEach(lib -> {
       try {
@@ -52,25 +114,62 @@ public class ClassLoaderHelper {
     return urlCl;
   }
 
-  @SuppressWarnings("unchecked")
+  /** Return names of classes which are in given libraries and which extends or implements given class. The classes
+   * aren't loaded, the implementations are read from META-INF/services and from headers of class files. */
   public static List<String> instancesOfClass(Class clazz, List<String> libs, boolean abstractClass, boolean interf) {
-    List<String> classNames = new ArrayList<>();
-    ClassLoader clr = createClassLoader(libs, false);
+    return instancesOfClass(clazz, libs, abstractClass, interf, null);
+  }
+
+  /** Return names of classes which are in given libraries and which extends or implements given class. The classes
+   * aren't loaded, the implementations are read from META-INF/services and from headers of class files.
+   * @param index index where are stored already found implementations, can be null */
+  public static List<String> instancesOfClass(Class clazz, List<String> libs, boolean abstractClass, boolean interf,
+                                              ImplementationIndex index) {
+    String indexKey = clazz.getName() + "|" + abstractClass + "|" + interf;
     List<String> result = new ArrayList<>();
-    libs.forEach(lib -> {
+    Map<String, String> notIndexed = new LinkedHashMap<>(); // lib -> hash
+    for (String lib : libs) {
+      if (index != null) {
+        try {
+          String hash = index.hash(lib);
+          List<String> indexed = index.get(hash, indexKey);
+          if (indexed != null) {
+            indexed.stream().filter(cn -> !result.contains(cn)).forEach(result::add);
+          } else { notIndexed.put(lib, hash); }
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      } else { notIndexed.put(lib, null); }
+    }
+    if (notIndexed.isEmpty()) { return result; }
+
+    Map<String, ClassHeader> headers = new HashMap<>();
+    Map<String, List<String>> found = new LinkedHashMap<>();
+    notIndexed.keySet().forEach(lib -> {
+      List<String> libResult = new ArrayList<>();
+      found.put(lib, libResult);
       try (ZipFile file = new ZipFile(lib)) {
         file.stream().forEach(entry -> {
           if (entry.getName().equals("META-INF/services/" + clazz.getName())) {
-            try {
-              String string = IOUtils.toString(file.getInputStream(entry));
-              String[] lines = string.split("\n");
-              for (String line : lines) { result.add(line.trim()); }
+            try (InputStream is = file.getInputStream(entry)) {
+              for (String line : IOUtils.readLines(is)) {
+                int comment = line.indexOf('#');
+                String className = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                if (!className.isEmpty() && !libResult.contains(className)) { libResult.add(className); }
+              }
             } catch (IOException e) {
               throw new RuntimeException(e);
             }
           } else if (entry.getName().endsWith(".class")) {
-            String className = entry.getName().substring(0, entry.getName().length() - 6).replace("/", ".");
-            classNames.add(className);
+            try (InputStream is = file.getInputStream(entry)) {
+              ClassHeader header = ClassHeader.read(is);
+              if (header != null) {
+                header.lib = lib;
+                headers.put(header.name, header);
+              }
+            } catch (IOException e) {
+              LOG.debug("The class header can't be read: " + entry.getName(), e);
+            }
           }
         });
       } catch (IOException e) {
@@ -78,21 +177,106 @@ public class ClassLoaderHelper {
       }
     });
 
-    classNames.forEach(cc -> {
-      try {
-        Class cla = clr.loadClass(cc);
-        if ((interf || !cla.isInterface())
-            && (abstractClass || !Modifier.isAbstract(cla.getModifiers()))
-            && clazz.isAssignableFrom(cla)) {
-          if (!result.contains(cc)) {
-            result.add(cc);
-          }
-        }
-      } catch (ClassNotFoundException | NoClassDefFoundError e) { /* It's common to try to create class which haven't class which need*/ }
+    Map<String, Boolean> assignable = new HashMap<>();
+    headers.values().forEach(header -> {
+      if ((interf || !header.isInterface())
+          && (abstractClass || !header.isAbstract())
+          && isAssignable(header.name, clazz, headers, assignable)) {
+        List<String> libResult = found.get(header.lib);
+        if (!libResult.contains(header.name)) { libResult.add(header.name); }
+      }
+    });
+
+    found.forEach((lib, libResult) -> {
+      if (index != null) { index.put(notIndexed.get(lib), indexKey, libResult); }
+      libResult.stream().filter(cn -> !result.contains(cn)).forEach(result::add);
     });
+    if (index != null) { index.save(); }
     return result;
   }
 
+  /** Check if class with given name is assignable to given class. Only headers of classes are used, classes from
+   * java and javax packages are loaded by system class loader. */
+  private static boolean isAssignable(String className, Class clazz, Map<String, ClassHeader> headers,
+                                      Map<String, Boolean> cache) {
+    if (className == null) { return false; }
+    if (className.equals(clazz.getName())) { return true; }
+    Boolean result = cache.get(className);
+    if (result != null) { return result; }
+    cache.put(className, Boolean.FALSE); // Protection against cycles
+    ClassHeader header = headers.get(className);
+    if (header == null) {
+      result = false;
+      if (className.startsWith("java.") || className.startsWith("javax.")) {
+        try {
+          //noinspection unchecked
+          result = clazz.isAssignableFrom(Class.forName(className, false, ClassLoaderHelper.class.getClassLoader()));
+        } catch (ClassNotFoundException | LinkageError e) { /* Class isn't in system class path */ }
+      }
+    } else {
+      result = isAssignable(header.superName, clazz, headers, cache);
+      for (int i = 0; !result && i < header.interfaces.length; i++) {
+        result = isAssignable(header.interfaces[i], clazz, headers, cache);
+      }
+    }
+    cache.put(className, result);
+    return result;
+  }
+
+  /** Header of class file: name, access flags, super class and interfaces */
+  private static class ClassHeader {
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_ABSTRACT = 0x0400;
+
+    private String lib;
+    private String name;
+    private int access;
+    private String superName;
+    private String[] interfaces;
+
+    boolean isInterface() { return (access & ACC_INTERFACE) != 0; }
+    boolean isAbstract() { return (access & ACC_ABSTRACT) != 0; }
+
+    /** Read header of class file, the constant pool is read only for names of classes
+     * @return header or null, when stream isn't class file */
+    static ClassHeader read(InputStream is) throws IOException {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+      if (in.readInt() != 0xCAFEBABE) { return null; }
+      in.readUnsignedShort(); // minor version
+      in.readUnsignedShort(); // major version
+      int cpCount = in.readUnsignedShort();
+      String[] utf8 = new String[cpCount];
+      int[] classNameIndex = new int[cpCount];
+      for (int i = 1; i < cpCount; i++) {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+          case 1: utf8[i] = in.readUTF(); break; // Utf8
+          case 7: classNameIndex[i] = in.readUnsignedShort(); break; // Class
+          case 8: case 16: case 19: case 20: in.skipBytes(2); break; // String, MethodType, Module, Package
+          case 15: in.skipBytes(3); break; // MethodHandle
+          case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18: in.skipBytes(4); break;
+          case 5: case 6: in.skipBytes(8); i++; break; // Long and Double take two entries
+          default: throw new IOException("Unknown tag of constant pool: " + tag);
+        }
+      }
+      ClassHeader result = new ClassHeader();
+      result.access = in.readUnsignedShort();
+      result.name = className(in.readUnsignedShort(), utf8, classNameIndex);
+      result.superName = className(in.readUnsignedShort(), utf8, classNameIndex);
+      result.interfaces = new String[in.readUnsignedShort()];
+      for (int i = 0; i < result.interfaces.length; i++) {
+        result.interfaces[i] = className(in.readUnsignedShort(), utf8, classNameIndex);
+      }
+      return result.name == null ? null : result;
+    }
+
+    private static String className(int classIndex, String[] utf8, int[] classNameIndex) {
+      if (classIndex == 0) { return null; }
+      String internalName = utf8[classNameIndex[classIndex]];
+      return internalName == null ? null : internalName.replace('/', '.');
+    }
+  }
+
   private static List<File> subClasses(File file) {
     if (file != null) {
       if (file.isDirectory()) {
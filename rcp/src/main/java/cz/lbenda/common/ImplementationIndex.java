@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.common;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 26.10.15.
+ * Index of implementations of class found in libraries. The index is keyed by hash of library content, so when library
+ * is changed the implementations are searched again. When file is given, the index is persisted to it. */
+public class ImplementationIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ImplementationIndex.class);
+
+  private final File file;
+  private final Properties index = new Properties();
+  /** Hashes of libraries, the key is path with time of last modification and size */
+  private final Map<String, String> hashes = new HashMap<>();
+
+  /** Create index which isn't persisted */
+  public ImplementationIndex() {
+    this(null);
+  }
+
+  /** Create index which is persisted in given file
+   * @param file file where the index is stored, can be null */
+  public ImplementationIndex(File file) {
+    this.file = file;
+    if (file != null && file.exists()) {
+      try (InputStream is = new FileInputStream(file)) {
+        index.load(is);
+      } catch (IOException e) {
+        LOG.warn("The index of implementations can't be read: " + file, e);
+      }
+    }
+  }
+
+  private static String key(String libHash, String className) { return libHash + ":" + className; }
+
+  /** Return implementations of class in library with given hash
+   * @return list of class names, or null when library isn't indexed yet */
+  public synchronized List<String> get(String libHash, String className) {
+    String value = index.getProperty(key(libHash, className));
+    if (value == null) { return null; }
+    if ("".equals(value)) { return Collections.emptyList(); }
+    return Arrays.asList(value.split(","));
+  }
+
+  /** Store implementations of class in library with given hash */
+  public synchronized void put(String libHash, String className, List<String> implementations) {
+    index.setProperty(key(libHash, className), StringUtils.join(implementations, ","));
+  }
+
+  /** Write index to file if the file is defined */
+  public synchronized void save() {
+    if (file == null) { return; }
+    if (file.getParentFile() != null && !file.getParentFile().exists()) {
+      //noinspection ResultOfMethodCallIgnored
+      file.getParentFile().mkdirs();
+    }
+    try (OutputStream os = new FileOutputStream(file)) {
+      index.store(os, "Index of implementations in libraries");
+    } catch (IOException e) {
+      LOG.warn("The index of implementations can't be written: " + file, e);
+    }
+  }
+
+  /** Return SHA-1 hash of content of library. The hash is computed only once for every version of file. */
+  public String hash(String lib) throws IOException {
+    File libFile = new File(lib);
+    String fileKey = libFile.getAbsolutePath() + "|" + libFile.lastModified() + "|" + libFile.length();
+    synchronized (hashes) {
+      String result = hashes.get(fileKey);
+      if (result != null) { return result; }
+    }
+    try (InputStream is = new BufferedInputStream(new FileInputStream(libFile))) {
+      MessageDigest md = MessageDigest.getInstance("SHA-1");
+      byte[] buffer = new byte[65536];
+      int l;
+      while ((l = is.read(buffer)) != -1) { md.update(buffer, 0, l); }
+      StringBuilder sb = new StringBuilder();
+      for (byte b : md.digest()) { sb.append(String.format("%02x", b)); }
+      String result = sb.toString();
+      synchronized (hashes) { hashes.put(fileKey, result); }
+      return result;
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("The SHA-1 algorithm isn't supported", e);
+    }
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.gui.tableView;
+
+import javafx.scene.control.TableColumn;
+
+import javax.annotation.Nonnull;
+import java.util.Comparator;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Comparator which order rows by values in one column. The table which read rows from server can translate it to
+ * order of query. */
+public class ColumnComparator<S> implements Comparator<S> {
+
+  private final TableColumn<S, ?> column; public TableColumn<S, ?> getColumn() { return column; }
+  private final boolean ascending; public boolean isAscending() { return ascending; }
+  private final Comparator<S> comparator;
+
+  /** Create comparator
+   * @param column column by which are rows ordered
+   * @param ascending true when the rows are ordered ascending
+   * @param comparator comparator which is used when rows are ordered in memory */
+  public ColumnComparator(@Nonnull TableColumn<S, ?> column, boolean ascending, @Nonnull Comparator<S> comparator) {
+    this.column = column;
+    this.ascending = ascending;
+    this.comparator = comparator;
+  }
+
+  @Override
+  public int compare(S o1, S o2) { return comparator.compare(o1, o2); }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.gui.tableView;
+
+import javafx.scene.control.TableColumn;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Filter which reject rows with values in column which the user un-chose. The values which wasn't offered to user
+ * are accepted. The table which read rows from server can translate it to condition of query. */
+public class ColumnFilter<S> implements Predicate<S> {
+
+  private final TableColumn<S, ?> column; public TableColumn<S, ?> getColumn() { return column; }
+  private final Set<Object> values; public Set<Object> getValues() { return values; }
+  private final Set<Object> excludedValues; public Set<Object> getExcludedValues() { return excludedValues; }
+  private final Predicate<S> predicate;
+
+  /** Create filter
+   * @param column column which values are filtered
+   * @param values chosen values, can contains null
+   * @param excludedValues un-chosen values, can contains null
+   * @param predicate predicate which is used when rows are filtered in memory */
+  public ColumnFilter(@Nonnull TableColumn<S, ?> column, @Nonnull Set<?> values, @Nonnull Set<?> excludedValues,
+                      @Nonnull Predicate<S> predicate) {
+    this.column = column;
+    this.values = Collections.unmodifiableSet(new HashSet<>(values));
+    this.excludedValues = Collections.unmodifiableSet(new HashSet<>(excludedValues));
+    this.predicate = predicate;
+  }
+
+  @Override
+  public boolean test(S row) { return predicate.test(row); }
+}
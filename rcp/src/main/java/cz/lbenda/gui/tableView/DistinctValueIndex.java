@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.gui.tableView;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Index of distinct values of one column with count of rows which contains them. The index is maintained
+ * incrementally when rows are added, removed or changed, so the values aren't read from all rows again. The index
+ * hold only values of rows by their index in list, not the rows. */
+public class DistinctValueIndex<S> {
+
+  private final Function<S, Object> valueOf;
+  /** Count of rows for every value */
+  private final Map<Object, Long> counts = new HashMap<>();
+  /** Value which was counted for row by index of row in list, it's used when row is removed or changed */
+  private final List<Object> rowValues = new ArrayList<>();
+
+  /** Create index
+   * @param valueOf function which return value of column from row */
+  public DistinctValueIndex(@Nonnull Function<S, Object> valueOf) {
+    this.valueOf = valueOf;
+  }
+
+  /** Add rows which was inserted to list
+   * @param from index of first inserted row
+   * @param rows inserted rows */
+  public void addAll(int from, @Nonnull Collection<? extends S> rows) {
+    List<Object> values = new ArrayList<>(rows.size());
+    rows.forEach(row -> {
+      Object value = valueOf.apply(row);
+      values.add(value);
+      counts.merge(value, 1L, Long::sum);
+    });
+    rowValues.addAll(from, values);
+  }
+
+  /** Remove rows which was removed from list
+   * @param from index of first removed row
+   * @param count count of removed rows */
+  public void remove(int from, int count) {
+    List<Object> removed = rowValues.subList(from, from + count);
+    removed.forEach(this::decrement);
+    removed.clear();
+  }
+
+  /** Move values of rows which was permuted in list
+   * @param from index of first permuted row
+   * @param to index after last permuted row
+   * @param permutation new index of row with given old index */
+  public void permute(int from, int to, @Nonnull IntUnaryOperator permutation) {
+    List<Object> values = new ArrayList<>(rowValues.subList(from, to));
+    for (int i = from; i < to; i++) { rowValues.set(permutation.applyAsInt(i), values.get(i - from)); }
+  }
+
+  /** Update index after values of row was changed
+   * @param index index of row in list
+   * @param row changed row */
+  public void update(int index, @Nonnull S row) {
+    if (index < 0 || index >= rowValues.size()) { return; }
+    Object value = valueOf.apply(row);
+    Object old = rowValues.set(index, value);
+    if (!Objects.equals(old, value)) {
+      decrement(old);
+      counts.merge(value, 1L, Long::sum);
+    }
+  }
+
+  private void decrement(Object value) {
+    Long count = counts.get(value);
+    if (count == null) { return; }
+    if (count <= 1) { counts.remove(value); }
+    else { counts.put(value, count - 1); }
+  }
+
+  /** Remove all rows from index */
+  public void clear() {
+    counts.clear();
+    rowValues.clear();
+  }
+
+  /** Return distinct values with count of rows which contains them */
+  public Map<Object, Long> counts() {
+    return Collections.unmodifiableMap(counts);
+  }
+}
@@ -38,7 +38,6 @@ import org.apache.commons.lang3.StringUtils;
 
 import javax.annotation.Nonnull;
 import java.util.*;
-import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.function.Predicate;
 
 /** Created by Lukas Benda <lbenda @ lbenda.cz> on 18.9.15.
@@ -63,10 +62,6 @@ public class FilterMenuItem extends MenuItem {
   private final HBox buttonBar = new HBox();
   private final BorderPane quickFilter = new BorderPane();
   private final HBox okCancelBar = new HBox();
-  /** Set of names of items which already exist in items list */
-  private final Set<String> existingItemNames = new ConcurrentSkipListSet<>();
-  /** Set of names of chosen items */
-  private final Set<String> chosenItemNames = new ConcurrentSkipListSet<>();
   /** List of all items which can be choose */
   private final ObservableMap<Object, Item> itemsMap = FXCollections.observableMap(new WeakHashMap<>());
   private final ObservableList<Item> items = FXCollections.observableArrayList();
@@ -163,7 +158,7 @@ public class FilterMenuItem extends MenuItem {
     //noinspection unchecked
     final StringConverter converter = filterableTableView.stringConverter(tableColumn);
 
-    comparatorAsc = (o1, o2) -> {
+    Comparator comparator = (o1, o2) -> {
       //noinspection unchecked
       Object value1 = filterableTableView.valueForColumn(o1, tableColumn);
       //noinspection unchecked
@@ -184,7 +179,10 @@ public class FilterMenuItem extends MenuItem {
       //noinspection unchecked
       return converter.toString(value1).compareTo(converter.toString(value2));
     };
-    comparatorDsc = comparatorAsc.reversed();
+    //noinspection unchecked
+    comparatorAsc = new ColumnComparator(tableColumn, true, comparator);
+    //noinspection unchecked
+    comparatorDsc = new ColumnComparator(tableColumn, false, comparator.reversed());
 
     sortToggleGroup.getToggles().addAll(sortAsc, sortDsc);
 
@@ -224,8 +222,18 @@ public class FilterMenuItem extends MenuItem {
       if (!isFilter()) { tableColumn.removeLeftIndicator(filterIndicator);
       } else {
         tableColumn.addLeftIndicator(filterIndicator);
+        Set<Object> values = new HashSet<>();
+        Set<Object> excludedValues = new HashSet<>();
+        Set<String> excludedNames = new HashSet<>();
+        items.forEach(item -> {
+          if (item.isOn()) { values.add(item.getValue()); }
+          else {
+            excludedValues.add(item.getValue());
+            excludedNames.add(item.getName());
+          }
+        });
         //noinspection unchecked
-        filter = row -> {
+        filter = new ColumnFilter(tableColumn, values, excludedValues, row -> {
           //noinspection unchecked
           Object value = filterableTableView.valueForColumn(row, tableColumn);
           String text;
@@ -233,45 +241,58 @@ public class FilterMenuItem extends MenuItem {
           else { //noinspection unchecked
             text = converter.toString(value);
           }
-          return chosenItemNames.contains(text);
-        };
+          return !excludedNames.contains(text);
+        });
         //noinspection unchecked
         filterableTableView.filters().add(filter);
       }
     });
   }
 
-  /** Init menu item before is showed to user */
+  /** Init menu item before is showed to user. The items are created from values which the table know immediately
+   * and they are replaced when the table read more precise values in background. */
   @SuppressWarnings("unchecked")
   public void beforeOpenInit() {
+    setDistinctValues(filterableTableView.distinctValues(tableColumn));
+    filterableTableView.refineDistinctValues(tableColumn, this::setDistinctValues);
+  }
 
+  /** Replace the items by given distinct values, the un-chosen items are kept even when they are missing in values */
+  @SuppressWarnings("unchecked")
+  private void setDistinctValues(Map<Object, Long> distinctValues) {
     StringConverter converter = filterableTableView.stringConverter(tableColumn);
-    items.clear();
-    existingItemNames.clear();
-    filterableTableView.valuesForColumn(tableColumn).filter(value -> {
-      if (value == null) { return existingItemNames.add(""); }
-      return existingItemNames.add(converter.toString(value));
-    }).forEach(value -> {
-      Item item = itemsMap.get(value);
-      if (item != null) { items.add(item); }
-      else {
-        if (value == null) { item = new Item(null, true); }
-        else { item = new Item(converter.toString(value), true); }
-        items.add(item);
+    Map<String, Item> itemsByName = new HashMap<>();
+    List<Item> newItems = new ArrayList<>();
+    distinctValues.forEach((value, count) -> {
+      String name = value == null ? "" : converter.toString(value);
+      Item item = itemsByName.get(name);
+      if (item != null) {
+        item.setCount(item.getCount() + count);
+        return;
+      }
+      item = itemsMap.get(value);
+      if (item == null) {
+        item = new Item(value, name, true);
         itemsMap.put(value, item);
       }
+      item.setCount(count);
+      itemsByName.put(name, item);
+      newItems.add(item);
     });
+    items.stream().filter(item -> !item.isOn() && !itemsByName.containsKey(item.getName())).forEach(newItems::add);
+    items.setAll(newItems);
   }
 
   public class Item implements Comparable<Item> {
     private final StringProperty nameProperty = new SimpleStringProperty();
     private final BooleanProperty onProperty = new SimpleBooleanProperty();
+    /** Value of column which is showed by this item */
+    private final Object value; public final Object getValue() { return value; }
+    /** Count of rows which contains the value */
+    private long count; public final long getCount() { return count; } public final void setCount(long count) { this.count = count; }
 
-    public Item(String name, boolean on) {
-      onProperty.addListener((observable, oldValue, newValue) -> {
-        if (newValue) { chosenItemNames.add(getName()); }
-        else { chosenItemNames.remove(getName()); }
-      });
+    public Item(Object value, String name, boolean on) {
+      this.value = value;
       setName(name);
       setOn(on);
     }
@@ -289,7 +310,8 @@ public class FilterMenuItem extends MenuItem {
 
     @Override
     public String toString() {
-      return getName();
+      if (count <= 0) { return getName(); }
+      return String.format("%s (%s)", getName(), count);
     }
 
     @Override
@@ -15,6 +15,7 @@
  */
 package cz.lbenda.gui.tableView;
 
+import javafx.application.Platform;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
@@ -27,7 +28,8 @@ import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.util.StringConverter;
 
-import java.util.Comparator;
+import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -38,11 +40,37 @@ public abstract class FilterableTableView<S> extends TableView<S> {
   private ObservableList<Predicate<S>> filters = FXCollections.observableArrayList();
 
   private ObservableList<S> items = FXCollections.observableArrayList();
-  private FilteredList<S> filteredList = new FilteredList<>(items);
+  private RowUpdateList<S> updateList = new RowUpdateList<>(items);
+  private FilteredList<S> filteredList = new FilteredList<>(updateList);
   private SortedList<S> sortedList = new SortedList<>(filteredList);
   private ObjectProperty<Comparator<? super S>> sortProperty = new SimpleObjectProperty<>();
+  /** Indexes of distinct values of columns, the index is created when the values of column are first time needed */
+  private final Map<TableColumn<S, ?>, DistinctValueIndex<S>> distinctIndexes = new HashMap<>();
+  /** Rows which was changed from last update of filtered and sorted rows, the rows are compared by identity */
+  private Set<S> changedRows = Collections.newSetFromMap(new IdentityHashMap<>());
+  /** Listener which keep the indexes of distinct values actual */
+  private final ListChangeListener<S> indexesUpdater = change -> {
+    if (distinctIndexes.isEmpty()) { return; }
+    if (change.getList().isEmpty()) {
+      distinctIndexes.values().forEach(DistinctValueIndex::clear);
+      return;
+    }
+    while (change.next()) {
+      if (change.wasPermutated()) {
+        distinctIndexes.values().forEach(index -> index.permute(change.getFrom(), change.getTo(), change::getPermutation));
+      } else if (!change.wasUpdated()) {
+        if (change.wasRemoved()) {
+          distinctIndexes.values().forEach(index -> index.remove(change.getFrom(), change.getRemovedSize()));
+        }
+        if (change.wasAdded()) {
+          distinctIndexes.values().forEach(index -> index.addAll(change.getFrom(), change.getAddedSubList()));
+        }
+      }
+    }
+  };
 
   public FilterableTableView() {
+    items.addListener(indexesUpdater);
     setItems(sortedList);
     filters.addListener((ListChangeListener<Predicate<S>>) change ->
         filteredList.setPredicate(object -> filters.stream().allMatch(p -> p.test(object))));
@@ -62,7 +90,7 @@ public abstract class FilterableTableView<S> extends TableView<S> {
     return sortProperty;
   }
 
-  /** Refresh viewed data - rexecute filter */
+  /** Refresh viewed data - rexecute filter on all rows. When only some rows was changed use {@link #rowChanged(Object)} */
   public void refilter() {
     filteredList.setPredicate(object -> filters.stream().allMatch(p -> p.test(object)));
   }
@@ -78,8 +106,13 @@ public abstract class FilterableTableView<S> extends TableView<S> {
   }
 
   public void setRows(ObservableList<S> items) {
+    this.items.removeListener(indexesUpdater);
+    distinctIndexes.clear();
+    changedRows.clear();
     this.items = items;
-    filteredList = new FilteredList<>(items);
+    items.addListener(indexesUpdater);
+    updateList = new RowUpdateList<>(items);
+    filteredList = new FilteredList<>(updateList);
     sortedList = new SortedList<>(filteredList);
     super.setItems(sortedList);
   }
@@ -88,6 +121,50 @@ public abstract class FilterableTableView<S> extends TableView<S> {
     return items;
   }
 
+  /** Return distinct values in given column with count of rows which contains them. The values are read from all rows,
+   * not only from filtered. The subclass can count the values from storage of rows, without reading of rows.
+   * @param tableColumn column which values are returned
+   * @return map with value as key and count of rows as value */
+  public Map<Object, Long> distinctValues(TableColumn<S, ?> tableColumn) {
+    flushChangedRows();
+    DistinctValueIndex<S> index = distinctIndexes.get(tableColumn);
+    if (index == null) {
+      index = new DistinctValueIndex<>(row -> valueForColumn(row, tableColumn));
+      index.addAll(0, items);
+      distinctIndexes.put(tableColumn, index);
+    }
+    return index.counts();
+  }
+
+  /** Read distinct values which are more precise then values returned by {@link #distinctValues(TableColumn)}, for
+   * example from database. The method shouldn't block, the values are given to consumer later on platform thread.
+   * The default implementation do nothing, because all values are known.
+   * @param tableColumn column which values are returned
+   * @param consumer consumer of map with value as key and count of rows as value */
+  public void refineDistinctValues(TableColumn<S, ?> tableColumn, Consumer<Map<Object, Long>> consumer) {
+  }
+
+  /** Inform the table that values or state of row was changed. The filters are evaluated again only on changed rows
+   * and the rows are moved to right place in sorted rows. More changes are joined and processed together later. */
+  protected void rowChanged(S row) {
+    if (changedRows.isEmpty()) { Platform.runLater(this::flushChangedRows); }
+    changedRows.add(row);
+  }
+
+  /** Update the indexes of distinct values and the filtered and sorted rows by changed rows */
+  private void flushChangedRows() {
+    if (changedRows.isEmpty()) { return; }
+    Set<S> rows = changedRows;
+    changedRows = Collections.newSetFromMap(new IdentityHashMap<>());
+    if (!distinctIndexes.isEmpty()) {
+      rows.forEach(row -> {
+        int i = updateList.indexOfRow(row);
+        distinctIndexes.values().forEach(index -> index.update(i, row));
+      });
+    }
+    updateList.rowsUpdated(rows);
+  }
+
   /** List with all predicates which is used as filter */
   public ObservableList<Predicate<S>> filters() { return filters; }
 
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.gui.tableView;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.TransformationList;
+
+import javax.annotation.Nonnull;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * List which pass all rows and changes of source list and which can inform about rows which values was changed. The
+ * change is fired as update change, so the {@link javafx.collections.transformation.FilteredList} test again only
+ * the changed rows and the {@link javafx.collections.transformation.SortedList} move only them, the view isn't
+ * created again. The changed rows are found by index of rows, so only the changed rows are processed. */
+public class RowUpdateList<S> extends TransformationList<S, S> {
+
+  /** Index of rows in source by identity. It's created when it's first needed and it's kept actual when rows are
+   * appended, the other changes of source drop it. */
+  private Map<S, Integer> rowIndexes;
+  /** Count of rows of source which are in index of rows */
+  private int indexedSize;
+
+  public RowUpdateList(@Nonnull ObservableList<? extends S> source) {
+    super(source);
+  }
+
+  /** Fire one update change for all given rows which are in list
+   * @param rows changed rows, the set should compare rows by identity */
+  public void rowsUpdated(@Nonnull Set<S> rows) {
+    if (rows.isEmpty()) { return; }
+    int[] indexes = rows.stream().mapToInt(this::indexOfRow).filter(i -> i >= 0).sorted().toArray();
+    if (indexes.length == 0) { return; }
+    beginChange();
+    for (int i : indexes) { nextUpdate(i); }
+    endChange();
+  }
+
+  /** Return index of row in source, the row is compared by identity
+   * @param row searched row
+   * @return index of row or -1 when the row isn't in list */
+  public int indexOfRow(S row) {
+    if (rowIndexes == null) {
+      rowIndexes = new IdentityHashMap<>();
+      indexedSize = 0;
+      indexRows(0, getSource().size());
+    }
+    Integer result = rowIndexes.get(row);
+    return result == null ? -1 : result;
+  }
+
+  private void indexRows(int from, int to) {
+    for (int i = from; i < to; i++) { rowIndexes.putIfAbsent(getSource().get(i), i); }
+    indexedSize = to;
+  }
+
+  @Override
+  protected void sourceChanged(ListChangeListener.Change<? extends S> c) {
+    beginChange();
+    while (c.next()) {
+      if (rowIndexes != null && !c.wasUpdated()) {
+        if (c.wasAdded() && !c.wasRemoved() && c.getFrom() == indexedSize) { indexRows(c.getFrom(), c.getTo()); }
+        else { rowIndexes = null; }
+      }
+      if (c.wasPermutated()) {
+        int[] permutation = new int[c.getTo() - c.getFrom()];
+        for (int i = c.getFrom(); i < c.getTo(); i++) { permutation[i - c.getFrom()] = c.getPermutation(i); }
+        nextPermutation(c.getFrom(), c.getTo(), permutation);
+      } else if (c.wasUpdated()) {
+        for (int i = c.getFrom(); i < c.getTo(); i++) { nextUpdate(i); }
+      } else {
+        if (c.wasRemoved()) { nextRemove(c.getFrom(), c.getRemoved()); }
+        if (c.wasAdded()) { nextAdd(c.getFrom(), c.getTo()); }
+      }
+    }
+    endChange();
+  }
+
+  @Override
+  public int getSourceIndex(int index) { return index; }
+
+  public int getViewIndex(int index) { return index; }
+
+  @Override
+  public S get(int index) { return getSource().get(index); }
+
+  @Override
+  public int size() { return getSource().size(); }
+}
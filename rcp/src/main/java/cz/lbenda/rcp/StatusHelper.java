@@ -16,6 +16,7 @@
 package cz.lbenda.rcp;
 
 import javafx.application.Platform;
+import javafx.scene.control.Button;
 import org.controlsfx.control.StatusBar;
 
 import java.util.Map;
@@ -79,6 +80,30 @@ public class StatusHelper {
     progressStepRows.put(key, rows);
     progressStepRow.put(key, row);
   }
+  private final Map<Object, Button> cancelButtons = new ConcurrentHashMap<>();
+
+  /** Show button in status bar which cancel running task
+   * @param key key of task
+   * @param text text of button
+   * @param onCancel action which is called when user press the button */
+  public void showCancel(Object key, String text, Runnable onCancel) {
+    if (statusBar == null) { return; }
+    Button button = new Button(text);
+    button.setOnAction(event -> {
+      button.setDisable(true);
+      onCancel.run();
+    });
+    cancelButtons.put(key, button);
+    Platform.runLater(() -> statusBar.getRightItems().add(button));
+  }
+  /** Remove cancel button of task from status bar */
+  public void hideCancel(Object key) {
+    Button button = cancelButtons.remove(key);
+    if (button != null && statusBar != null) {
+      Platform.runLater(() -> statusBar.getRightItems().remove(button));
+    }
+  }
+
   /** Finish the progress */
   public void progressFinish(Object key, String message) {
     StatusHelper.getInstance().setProgress(1);
@@ -31,6 +31,29 @@ public class TestClassLoaderHelper {
     assertEquals(clazzs.size(), 2);
   }
 
+  @Test
+  public void testInstancesOfClassWithIndex() throws Exception {
+    ImplementationIndex index = new ImplementationIndex();
+    List<String> clazzs = ClassLoaderHelper.instancesOfClass(java.sql.Driver.class, Arrays.asList(HSQL_LIBRARY),
+        false, false, index);
+    assertEquals(clazzs.size(), 2);
+    assertNotNull(index.get(index.hash(HSQL_LIBRARY), java.sql.Driver.class.getName() + "|false|false"));
+    assertEquals(ClassLoaderHelper.instancesOfClass(java.sql.Driver.class, Arrays.asList(HSQL_LIBRARY),
+        false, false, index), clazzs);
+  }
+
+  @Test
+  public void testSharedClassLoader() throws Exception {
+    ClassLoader first = ClassLoaderHelper.acquireClassLoader(Arrays.asList(HSQL_LIBRARY), false);
+    ClassLoader second = ClassLoaderHelper.acquireClassLoader(Arrays.asList(HSQL_LIBRARY), false);
+    assertSame(first, second);
+    ClassLoaderHelper.releaseClassLoader(first);
+    ClassLoaderHelper.releaseClassLoader(second);
+    ClassLoader third = ClassLoaderHelper.acquireClassLoader(Arrays.asList(HSQL_LIBRARY), false);
+    assertNotSame(first, third);
+    ClassLoaderHelper.releaseClassLoader(third);
+  }
+
   @Test
   public void testClassInPackage() throws Exception {
     List<String> result = ClassLoaderHelper.classInPackage("cz.lbenda", getClass().getClassLoader());
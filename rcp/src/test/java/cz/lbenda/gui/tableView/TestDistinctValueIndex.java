@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.gui.tableView;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Test of incremental index of distinct values */
+public class TestDistinctValueIndex {
+
+  @Test
+  public void countsAreMaintained() {
+    String[] row1 = { "a" }, row2 = { "a" }, row3 = { null };
+    DistinctValueIndex<String[]> index = new DistinctValueIndex<>(row -> row[0]);
+    index.addAll(0, Arrays.asList(row1, row2, row3));
+    Map<Object, Long> expected = new HashMap<>();
+    expected.put("a", 2L);
+    expected.put(null, 1L);
+    assertEquals(index.counts(), expected);
+
+    row2[0] = "b";
+    index.update(1, row2);
+    expected.put("a", 1L);
+    expected.put("b", 1L);
+    assertEquals(index.counts(), expected);
+
+    index.addAll(1, Collections.singletonList(new String[] { "c" }));
+    expected.put("c", 1L);
+    assertEquals(index.counts(), expected);
+
+    index.permute(0, 4, i -> 3 - i); // rows: null, b, c, a
+    index.remove(2, 2);
+    expected.remove("a");
+    expected.remove("c");
+    assertEquals(index.counts(), expected);
+
+    index.clear();
+    assertTrue(index.counts().isEmpty());
+  }
+}
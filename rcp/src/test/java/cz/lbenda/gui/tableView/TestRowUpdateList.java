@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 Lukas Benda <lbenda at lbenda.cz>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cz.lbenda.gui.tableView;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+/** Created by Lukas Benda <lbenda @ lbenda.cz> on 27.10.15.
+ * Test of incremental filtering of changed rows */
+public class TestRowUpdateList {
+
+  @Test
+  public void changedRowsAreFiltered() {
+    int[] row1 = { 1 }, row2 = { 2 }, row3 = { 3 };
+    ObservableList<int[]> rows = FXCollections.observableArrayList(row1, row2, row3);
+    RowUpdateList<int[]> updateList = new RowUpdateList<>(rows);
+    FilteredList<int[]> filtered = new FilteredList<>(updateList, row -> row[0] > 1);
+    AtomicInteger changes = new AtomicInteger();
+    filtered.addListener((ListChangeListener<int[]>) change -> changes.incrementAndGet());
+    assertEquals(filtered, Arrays.asList(row2, row3));
+
+    row1[0] = 5;
+    row3[0] = 0;
+    Set<int[]> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+    changed.add(row1);
+    changed.add(row3);
+    updateList.rowsUpdated(changed);
+    assertEquals(filtered, Arrays.asList(row1, row2));
+    assertEquals(changes.get(), 1, "All changed rows are announced by one change");
+
+    rows.add(0, new int[] { 7 });
+    assertEquals(filtered.size(), 3);
+    rows.remove(row2);
+    assertEquals(filtered.size(), 2);
+  }
+
+  @Test
+  public void onlyChangedRowsAreUpdated() {
+    int[] row1 = { 1 }, row2 = { 2 }, row3 = { 3 }, row4 = { 4 };
+    ObservableList<int[]> rows = FXCollections.observableArrayList(row1, row2, row3);
+    RowUpdateList<int[]> updateList = new RowUpdateList<>(rows);
+    List<Integer> updated = new ArrayList<>();
+    updateList.addListener((ListChangeListener<int[]>) change -> {
+      while (change.next()) {
+        if (change.wasUpdated()) { for (int i = change.getFrom(); i < change.getTo(); i++) { updated.add(i); } }
+      }
+    });
+    updateList.rowsUpdated(Collections.singleton(row2));
+    assertEquals(updated, Collections.singletonList(1));
+
+    rows.add(row4);
+    updated.clear();
+    updateList.rowsUpdated(Collections.singleton(row4));
+    assertEquals(updated, Collections.singletonList(3), "The appended row is indexed");
+
+    rows.remove(row1);
+    updated.clear();
+    updateList.rowsUpdated(Collections.singleton(row4));
+    assertEquals(updated, Collections.singletonList(2), "The index of row is moved after remove");
+    assertEquals(updateList.indexOfRow(row1), -1);
+
+    updated.clear();
+    updateList.rowsUpdated(Collections.singleton(row1));
+    assertTrue(updated.isEmpty(), "The row which isn't in list isn't updated");
+  }
+}